@@ -0,0 +1,115 @@
+package me.monst.pluginutil.benchmark;
+
+import me.monst.pluginutil.configuration.ConfigurationValue;
+import me.monst.pluginutil.configuration.IntConfigurationValue;
+import me.monst.pluginutil.configuration.exception.ArgumentParseException;
+import me.monst.pluginutil.configuration.transform.IntTransformer;
+import me.monst.pluginutil.configuration.transform.Transformer;
+import me.monst.pluginutil.configuration.validation.Bound;
+import me.monst.pluginutil.configuration.validation.IntBound;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares reading and converting {@code int} configuration values through the primitive {@link IntConfigurationValue}
+ * and {@link IntTransformer} API against the baseline a plugin would otherwise write: a {@link ConfigurationValue}
+ * with a plain {@code Transformer<Integer>}, which converts YAML data through {@link Transformer#parse(String)}.
+ * <p>
+ * The read benchmarks model an event handler reading a setting on every event. Each event reads a different value,
+ * all outside the {@link Integer} cache, so that the JIT cannot hoist the reads out of the loop and the boxed reads
+ * have to dereference a separate {@code Integer} each. Scores are per event or per converted value.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ConfigurationValueBenchmark {
+    
+    private static final int VALUES = 64;
+    private static final int EVENTS = 1024;
+    
+    private ConfigurationValue<Integer>[] boxed;
+    private IntConfigurationValue[] primitive;
+    private int[] events;
+    private Transformer<Integer> baselineTransformer;
+    private IntTransformer primitiveTransformer;
+    private Object[] yaml;
+    
+    /**
+     * The transformer a plugin would write without {@link IntTransformer}: only {@link #parse(String)} is
+     * implemented, so YAML data is converted to a string and parsed back.
+     */
+    private static class BaselineTransformer implements Transformer<Integer> {
+        
+        @Override
+        public Integer parse(String input) throws ArgumentParseException {
+            try {
+                return Integer.parseInt(input);
+            } catch (NumberFormatException e) {
+                throw new ArgumentParseException("'" + input + "' is not an integer.");
+            }
+        }
+        
+    }
+    
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        baselineTransformer = new BaselineTransformer().bounded(Bound.atLeast(0));
+        primitiveTransformer = new IntTransformer().boundedInt(IntBound.atLeast(0));
+        boxed = new ConfigurationValue[VALUES];
+        primitive = new IntConfigurationValue[VALUES];
+        for (int i = 0; i < VALUES; i++) {
+            boxed[i] = new ConfigurationValue<>("boxed-" + i, 1000 + i, baselineTransformer);
+            primitive[i] = new IntConfigurationValue("primitive-" + i, 1000 + i);
+        }
+        Random random = new Random(42);
+        events = new int[EVENTS];
+        yaml = new Object[EVENTS];
+        for (int i = 0; i < EVENTS; i++) {
+            events[i] = random.nextInt(VALUES);
+            yaml[i] = 1000 + random.nextInt(1_000_000); // As SnakeYAML loads it
+        }
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public long readBoxed() {
+        long sum = 0;
+        for (int event : events)
+            sum += boxed[event].get();
+        return sum;
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public long readPrimitive() {
+        long sum = 0;
+        for (int event : events)
+            sum += primitive[event].getInt();
+        return sum;
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public long convertBaseline() throws Exception {
+        long sum = 0;
+        for (Object data : yaml)
+            sum += baselineTransformer.convert(data);
+        return sum;
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public long convertPrimitive() throws Exception {
+        long sum = 0;
+        for (Object data : yaml)
+            sum += primitiveTransformer.convertInt(data);
+        return sum;
+    }
+    
+}
@@ -0,0 +1,83 @@
+package me.monst.pluginutil.benchmark;
+
+import me.monst.pluginutil.persistence.Query;
+import me.monst.pluginutil.persistence.TableArchive;
+import org.h2.jdbcx.JdbcDataSource;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how many rows per second {@link TableArchive} exports from and imports into an in-memory H2 database.
+ * The scores are in rows per second, since every invocation moves the whole table.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class TableArchiveBenchmark {
+    
+    private static final int ROWS = 100_000;
+    
+    private Connection con;
+    private Path dir;
+    private Path archive;
+    
+    @Setup
+    public void setup() throws SQLException, IOException {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:archive;DB_CLOSE_DELAY=-1");
+        con = dataSource.getConnection();
+        for (String table : new String[] { "accounts", "restored" })
+            Query.of("CREATE TABLE " + table + " (id INT PRIMARY KEY, owner VARCHAR(36), balance DECIMAL(12, 2), "
+                    + "frozen BOOLEAN, opened TIMESTAMP)").executeUpdate(con);
+        List<Integer> ids = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++)
+            ids.add(i);
+        Query.of("INSERT INTO accounts VALUES (?, ?, ?, ?, ?)").batch(ids)
+                .with(id -> Arrays.asList(id, id % 7 == 0 ? null : "owner-" + id,
+                        new BigDecimal(id).movePointLeft(2), id % 2 == 0, new Timestamp(1_600_000_000_000L + id)))
+                .executeUpdate(con);
+        dir = Files.createTempDirectory("table-archive-benchmark");
+        archive = dir.resolve("accounts.bin");
+        TableArchive.export(con, Query.of("SELECT * FROM accounts"), archive, 4096);
+    }
+    
+    @Setup(Level.Invocation)
+    public void emptyRestoredTable() throws SQLException {
+        Query.of("TRUNCATE TABLE restored").executeUpdate(con);
+    }
+    
+    @TearDown
+    public void tearDown() throws SQLException, IOException {
+        Query.of("SHUTDOWN").executeUpdate(con);
+        con.close();
+        Files.deleteIfExists(archive);
+        Files.deleteIfExists(dir);
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public long export() throws SQLException, IOException {
+        return TableArchive.export(con, Query.of("SELECT * FROM accounts"), archive, 4096);
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public long importInto() throws SQLException, IOException {
+        return TableArchive.importInto(con, archive, Query.of("INSERT INTO restored VALUES (?, ?, ?, ?, ?)"), 500);
+    }
+    
+}
@@ -0,0 +1,102 @@
+package me.monst.pluginutil.benchmark;
+
+import me.monst.pluginutil.collection.UUIDMap;
+import me.monst.pluginutil.collection.UUIDRecordStore;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares lookups and inserts of {@link UUIDMap} and {@link UUIDRecordStore} against a {@code HashMap<UUID, Long>}.
+ * Every invocation touches all keys, in a random order, so that the tables do not stay in the CPU cache.
+ * See {@link UUIDMapFootprint} for the memory comparison.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class UUIDMapBenchmark {
+    
+    private static final int KEYS = 100_000;
+    private static final int BALANCE = 0;
+    
+    private UUID[] keys;
+    private UUID[] lookups;
+    private HashMap<UUID, Long> hashMap;
+    private UUIDMap<Long> uuidMap;
+    private UUIDRecordStore recordStore;
+    
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        keys = new UUID[KEYS];
+        hashMap = new HashMap<>();
+        uuidMap = new UUIDMap<>();
+        recordStore = new UUIDRecordStore(8, 16);
+        for (int i = 0; i < KEYS; i++) {
+            keys[i] = new UUID(random.nextLong(), random.nextLong());
+            hashMap.put(keys[i], (long) i);
+            uuidMap.put(keys[i], (long) i);
+            recordStore.putLong(keys[i], BALANCE, i);
+        }
+        lookups = keys.clone();
+        for (int i = lookups.length - 1; i > 0; i--) { // Shuffle, so lookups do not follow insertion order
+            int j = random.nextInt(i + 1);
+            UUID swap = lookups[i];
+            lookups[i] = lookups[j];
+            lookups[j] = swap;
+        }
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(KEYS)
+    public long getHashMap() {
+        long sum = 0;
+        for (UUID key : lookups)
+            sum += hashMap.get(key);
+        return sum;
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(KEYS)
+    public long getUUIDMap() {
+        long sum = 0;
+        for (UUID key : lookups)
+            sum += uuidMap.get(key);
+        return sum;
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(KEYS)
+    public long getRecordStore() {
+        long sum = 0;
+        for (UUID key : lookups)
+            sum += recordStore.getLong(key, BALANCE);
+        return sum;
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(KEYS)
+    public Map<UUID, Long> putHashMap() {
+        HashMap<UUID, Long> map = new HashMap<>();
+        for (int i = 0; i < KEYS; i++)
+            map.put(keys[i], (long) i);
+        return map;
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(KEYS)
+    public UUIDMap<Long> putUUIDMap() {
+        UUIDMap<Long> map = new UUIDMap<>();
+        for (int i = 0; i < KEYS; i++)
+            map.put(keys[i], (long) i);
+        return map;
+    }
+    
+}
@@ -0,0 +1,68 @@
+package me.monst.pluginutil.benchmark;
+
+import me.monst.pluginutil.collection.UUIDMap;
+import me.monst.pluginutil.collection.UUIDRecordStore;
+
+import java.util.HashMap;
+import java.util.Random;
+import java.util.UUID;
+import java.util.function.IntFunction;
+
+/**
+ * Measures the memory footprint of {@link UUIDMap} and {@link UUIDRecordStore} against a {@code HashMap<UUID, Long>}
+ * holding the same number of keys, as the growth of the used heap after a full garbage collection.
+ * The keys are generated on the fly, so only the structures themselves keep them alive.
+ * <p>
+ * Run with {@code java -cp target/benchmarks.jar me.monst.pluginutil.benchmark.UUIDMapFootprint [keys]}.
+ */
+public final class UUIDMapFootprint {
+    
+    private UUIDMapFootprint() {}
+    
+    public static void main(String[] args) throws InterruptedException {
+        int keys = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        measure("HashMap<UUID, Long>", keys, size -> {
+            HashMap<UUID, Long> map = new HashMap<>();
+            Random random = new Random(42);
+            for (int i = 0; i < size; i++)
+                map.put(new UUID(random.nextLong(), random.nextLong()), (long) i);
+            return map;
+        });
+        measure("UUIDMap<Long>", keys, size -> {
+            UUIDMap<Long> map = new UUIDMap<>();
+            Random random = new Random(42);
+            for (int i = 0; i < size; i++)
+                map.put(new UUID(random.nextLong(), random.nextLong()), (long) i);
+            return map;
+        });
+        UUIDRecordStore[] store = new UUIDRecordStore[1];
+        measure("UUIDRecordStore (8-byte records, heap only)", keys, size -> {
+            store[0] = new UUIDRecordStore(8, 16);
+            Random random = new Random(42);
+            for (int i = 0; i < size; i++)
+                store[0].putLong(new UUID(random.nextLong(), random.nextLong()), 0, i);
+            return store[0];
+        });
+        System.out.printf("UUIDRecordStore off-heap: %d bytes (%.1f bytes/key)%n",
+                store[0].getOffHeapBytes(), (double) store[0].getOffHeapBytes() / keys);
+    }
+    
+    private static void measure(String name, int keys, IntFunction<Object> build) throws InterruptedException {
+        long before = usedHeap();
+        Object structure = build.apply(keys);
+        long after = usedHeap();
+        System.out.printf("%s: %d bytes (%.1f bytes/key)%n", name, after - before, (double) (after - before) / keys);
+        if (structure.hashCode() == 42) // Keeps the structure reachable until it has been measured
+            System.out.print("");
+    }
+    
+    private static long usedHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+    
+}
@@ -0,0 +1,83 @@
+package me.monst.pluginutil.benchmark;
+
+import me.monst.pluginutil.configuration.YamlFile;
+import org.bukkit.plugin.Plugin;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Compares loading a large YAML file at startup by parsing it against loading it from its binary snapshot.
+ * Every invocation loads the file through a new {@link YamlFile}, as a server starting up would, so the in-memory
+ * cache of {@link YamlFile#load()} never applies.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class YamlSnapshotBenchmark {
+    
+    @Param({ "10000" })
+    private int accounts;
+    
+    private Path dir;
+    private Path path;
+    private Plugin plugin;
+    
+    @Setup
+    public void setup() throws IOException {
+        dir = Files.createTempDirectory("yaml-snapshot-benchmark");
+        path = dir.resolve("accounts.yml");
+        StringBuilder yaml = new StringBuilder("accounts:\n");
+        for (int i = 0; i < accounts; i++) {
+            yaml.append("  account-").append(i).append(":\n")
+                    .append("    owner: ").append(new UUID(i, -i)).append('\n')
+                    .append("    balance: ").append(i * 1.25).append('\n')
+                    .append("    frozen: ").append(i % 10 == 0).append('\n')
+                    .append("    trusted: [alice, bob, carol]\n");
+        }
+        Files.write(path, yaml.toString().getBytes(StandardCharsets.UTF_8));
+        Logger logger = Logger.getLogger("YamlSnapshotBenchmark");
+        plugin = (Plugin) Proxy.newProxyInstance(Plugin.class.getClassLoader(), new Class<?>[] { Plugin.class },
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getLogger": return logger;
+                        case "getDataFolder": return dir.toFile();
+                        case "isEnabled": return true;
+                        default: return null;
+                    }
+                });
+        snapshot(); // Writes the snapshot
+    }
+    
+    @TearDown
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+    
+    @Benchmark
+    public Object parse() {
+        return new YamlFile(plugin, path).load();
+    }
+    
+    @Benchmark
+    public Object snapshot() {
+        YamlFile file = new YamlFile(plugin, path);
+        file.setSnapshotCaching(true);
+        return file.load();
+    }
+    
+}
@@ -0,0 +1,147 @@
+package me.monst.pluginutil;
+
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.Plugin;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * A {@link Promise} which is settled from the outside, by calling {@link #resolve(Object)} or {@link #reject(Exception)}.
+ * This is useful when the result is produced by some shared piece of work, such as a batched query, rather than
+ * by a task of its own.
+ * Like {@link Promise#async(Plugin, java.util.concurrent.Callable)}, callbacks are run on the main thread.
+ * Any number of callbacks may be registered, and a {@code null} result is a valid result.
+ * @param <T> the type of the result
+ */
+public class Deferred<T> implements Promise<T> {
+    
+    private final Plugin plugin;
+    private final Object lock = new Object();
+    
+    private boolean settled;
+    private T result;
+    private Exception exception;
+    
+    private final List<Consumer<T>> onFulfilled = new ArrayList<>(1);
+    private final List<Consumer<Exception>> onRejected = new ArrayList<>(1);
+    private final List<Runnable> finallyDo = new ArrayList<>(1);
+    
+    /**
+     * Creates a new, unsettled promise.
+     * @param plugin the plugin used to schedule callbacks on the main thread
+     */
+    public Deferred(Plugin plugin) {
+        this.plugin = plugin;
+    }
+    
+    /**
+     * Fulfills this promise with the given result. Has no effect if this promise is already settled.
+     * @param result the result
+     * @return true if this call settled the promise
+     */
+    public boolean resolve(T result) {
+        List<Consumer<T>> callbacks;
+        List<Runnable> finallyCallbacks;
+        synchronized (lock) {
+            if (settled)
+                return false;
+            settled = true;
+            this.result = result;
+            callbacks = new ArrayList<>(onFulfilled);
+            finallyCallbacks = new ArrayList<>(finallyDo);
+            clearCallbacks();
+        }
+        runOnMainThread(() -> {
+            callbacks.forEach(callback -> callback.accept(result));
+            finallyCallbacks.forEach(Runnable::run);
+        });
+        return true;
+    }
+    
+    /**
+     * Rejects this promise with the given exception. Has no effect if this promise is already settled.
+     * @param exception the exception
+     * @return true if this call settled the promise
+     */
+    public boolean reject(Exception exception) {
+        List<Consumer<Exception>> callbacks;
+        List<Runnable> finallyCallbacks;
+        synchronized (lock) {
+            if (settled)
+                return false;
+            settled = true;
+            this.exception = exception;
+            callbacks = new ArrayList<>(onRejected);
+            finallyCallbacks = new ArrayList<>(finallyDo);
+            clearCallbacks();
+        }
+        runOnMainThread(() -> {
+            callbacks.forEach(callback -> callback.accept(exception));
+            finallyCallbacks.forEach(Runnable::run);
+        });
+        return true;
+    }
+    
+    /**
+     * @return true if this promise has been resolved or rejected
+     */
+    public boolean isSettled() {
+        synchronized (lock) {
+            return settled;
+        }
+    }
+    
+    @Override
+    public Promise<T> then(Consumer<T> onFulfilled) {
+        synchronized (lock) {
+            if (!settled) {
+                this.onFulfilled.add(onFulfilled);
+                return this;
+            }
+        }
+        if (exception == null)
+            onFulfilled.accept(result);
+        return this;
+    }
+    
+    @Override
+    public Promise<T> catchError(Consumer<Exception> onRejected) {
+        synchronized (lock) {
+            if (!settled) {
+                this.onRejected.add(onRejected);
+                return this;
+            }
+        }
+        if (exception != null)
+            onRejected.accept(exception);
+        return this;
+    }
+    
+    @Override
+    public Promise<T> finallyDo(Runnable finallyDo) {
+        synchronized (lock) {
+            if (!settled) {
+                this.finallyDo.add(finallyDo);
+                return this;
+            }
+        }
+        finallyDo.run();
+        return this;
+    }
+    
+    private void clearCallbacks() {
+        onFulfilled.clear();
+        onRejected.clear();
+        finallyDo.clear();
+    }
+    
+    private void runOnMainThread(Runnable runnable) {
+        if (Bukkit.isPrimaryThread())
+            runnable.run();
+        else
+            Bukkit.getScheduler().runTask(plugin, runnable);
+    }
+    
+}
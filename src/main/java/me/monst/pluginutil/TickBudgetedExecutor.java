@@ -0,0 +1,76 @@
+package me.monst.pluginutil;
+
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.Plugin;
+
+import java.time.Duration;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+
+/**
+ * An {@link Executor} that runs its tasks on the main server thread, spread out over as many ticks as necessary.
+ * Each tick, tasks are run in submission order until the time budget for that tick is used up. The remaining tasks
+ * are carried over to the next tick. At least one task is run every tick, so progress is always made.
+ * Tasks may be submitted from any thread.
+ */
+public class TickBudgetedExecutor implements Executor {
+    
+    private final Plugin plugin;
+    private final long budgetNanos;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    
+    /**
+     * Creates a new executor which spends at most the given amount of time per tick running tasks.
+     * @param plugin the plugin
+     * @param budgetPerTick the amount of main thread time that may be spent per tick
+     */
+    public TickBudgetedExecutor(Plugin plugin, Duration budgetPerTick) {
+        this.plugin = plugin;
+        this.budgetNanos = budgetPerTick.toNanos();
+    }
+    
+    /**
+     * Submits a task to be run on the main thread in one of the upcoming ticks.
+     * @param task the task to run
+     */
+    @Override
+    public void execute(Runnable task) {
+        tasks.add(task);
+        scheduleIfIdle();
+    }
+    
+    /**
+     * @return the number of tasks that have been submitted but not run yet
+     */
+    public int getPendingTasks() {
+        return tasks.size();
+    }
+    
+    private void scheduleIfIdle() {
+        if (scheduled.compareAndSet(false, true))
+            Bukkit.getScheduler().runTask(plugin, this::runSlice);
+    }
+    
+    private void runSlice() {
+        long deadline = System.nanoTime() + budgetNanos;
+        Runnable task;
+        do {
+            task = tasks.poll();
+            if (task == null)
+                break;
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                plugin.getLogger().log(Level.SEVERE, "Failed to run scheduled task", e);
+            }
+        } while (System.nanoTime() < deadline);
+        scheduled.set(false);
+        if (!tasks.isEmpty()) // Carry the remaining tasks over to the next tick
+            scheduleIfIdle();
+    }
+    
+}
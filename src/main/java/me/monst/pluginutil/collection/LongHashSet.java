@@ -0,0 +1,259 @@
+package me.monst.pluginutil.collection;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.function.LongConsumer;
+
+/**
+ * A set of primitive {@code long} values, backed by an open-addressing hash table with linear probing.
+ * Unlike a {@code HashSet<Long>}, this set does not box its elements or allocate an entry object per element,
+ * which makes it considerably smaller for large sets of ids.
+ * This set is not thread-safe.
+ */
+public class LongHashSet {
+    
+    private static final long EMPTY = 0L;
+    private static final float LOAD_FACTOR = 0.5f;
+    private static final int MAX_CAPACITY = 1 << 30;
+    private static final int MAX_SIZE = (int) (MAX_CAPACITY * LOAD_FACTOR);
+    
+    private long[] table;
+    private int size;
+    private boolean containsEmpty; // The value used to mark empty slots is tracked separately
+    
+    /**
+     * Creates a new, empty set.
+     */
+    public LongHashSet() {
+        this(16);
+    }
+    
+    /**
+     * Creates a new, empty set with room for the given number of elements before it needs to grow.
+     * @param expectedSize the expected number of elements
+     * @throws IllegalArgumentException if the expected size is more than {@code 2^29}, the most this set can hold
+     */
+    public LongHashSet(int expectedSize) {
+        this.table = new long[tableSizeFor(expectedSize)];
+    }
+    
+    /**
+     * Adds a value to this set.
+     * @param value the value to add
+     * @return true if the value was added, false if it was already present
+     * @throws IllegalStateException if this set already holds {@code 2^29} elements
+     */
+    public boolean add(long value) {
+        if (value == EMPTY) {
+            if (containsEmpty)
+                return false;
+            containsEmpty = true;
+            size++;
+            return true;
+        }
+        int mask = table.length - 1;
+        int slot = hash(value) & mask;
+        while (table[slot] != EMPTY) {
+            if (table[slot] == value)
+                return false;
+            slot = (slot + 1) & mask;
+        }
+        if (size >= MAX_SIZE)
+            throw new IllegalStateException("Set is full");
+        table[slot] = value;
+        if (++size > table.length * LOAD_FACTOR && table.length < MAX_CAPACITY)
+            rehash(table.length << 1);
+        return true;
+    }
+    
+    /**
+     * Checks whether this set contains a value.
+     * @param value the value to look for
+     * @return true if the value is present
+     */
+    public boolean contains(long value) {
+        if (value == EMPTY)
+            return containsEmpty;
+        int mask = table.length - 1;
+        int slot = hash(value) & mask;
+        while (table[slot] != EMPTY) {
+            if (table[slot] == value)
+                return true;
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+    
+    /**
+     * Removes a value from this set.
+     * @param value the value to remove
+     * @return true if the value was removed, false if it was not present
+     */
+    public boolean remove(long value) {
+        if (value == EMPTY) {
+            if (!containsEmpty)
+                return false;
+            containsEmpty = false;
+            size--;
+            return true;
+        }
+        int mask = table.length - 1;
+        int slot = hash(value) & mask;
+        while (table[slot] != value) {
+            if (table[slot] == EMPTY)
+                return false;
+            slot = (slot + 1) & mask;
+        }
+        // Shift the following entries of the probe sequence back, so that no tombstones are needed
+        int gap = slot;
+        slot = (slot + 1) & mask;
+        while (table[slot] != EMPTY) {
+            int home = hash(table[slot]) & mask;
+            if (((slot - home) & mask) >= ((slot - gap) & mask)) {
+                table[gap] = table[slot];
+                gap = slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        table[gap] = EMPTY;
+        size--;
+        return true;
+    }
+    
+    /**
+     * @return the number of values in this set
+     */
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * @return true if this set contains no values
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+    
+    /**
+     * Removes all values from this set.
+     */
+    public void clear() {
+        Arrays.fill(table, EMPTY);
+        containsEmpty = false;
+        size = 0;
+    }
+    
+    /**
+     * Performs the given action for every value in this set, in no particular order.
+     * @param action the action to perform
+     */
+    public void forEach(LongConsumer action) {
+        if (containsEmpty)
+            action.accept(EMPTY);
+        for (long value : table) {
+            if (value != EMPTY)
+                action.accept(value);
+        }
+    }
+    
+    /**
+     * @return an iterator over the values in this set, in no particular order
+     */
+    public PrimitiveIterator.OfLong iterator() {
+        return new PrimitiveIterator.OfLong() {
+            
+            private int slot = containsEmpty ? -1 : nextSlot(0);
+            
+            private int nextSlot(int from) {
+                while (from < table.length && table[from] == EMPTY)
+                    from++;
+                return from;
+            }
+            
+            @Override
+            public boolean hasNext() {
+                return slot < table.length;
+            }
+            
+            @Override
+            public long nextLong() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                long value = slot < 0 ? EMPTY : table[slot];
+                slot = nextSlot(slot + 1);
+                return value;
+            }
+        };
+    }
+    
+    /**
+     * @return a new array containing the values in this set, in no particular order
+     */
+    public long[] toArray() {
+        long[] array = new long[size];
+        int i = 0;
+        if (containsEmpty)
+            array[i++] = EMPTY;
+        for (long value : table) {
+            if (value != EMPTY)
+                array[i++] = value;
+        }
+        return array;
+    }
+    
+    private void rehash(int newCapacity) {
+        long[] oldTable = table;
+        table = new long[newCapacity];
+        int mask = newCapacity - 1;
+        for (long value : oldTable) {
+            if (value == EMPTY)
+                continue;
+            int slot = hash(value) & mask;
+            while (table[slot] != EMPTY)
+                slot = (slot + 1) & mask;
+            table[slot] = value;
+        }
+    }
+    
+    private static int tableSizeFor(int expectedSize) {
+        if (expectedSize > MAX_SIZE)
+            throw new IllegalArgumentException("Expected size " + expectedSize + " is too large");
+        int capacity = 16;
+        while (capacity * LOAD_FACTOR < expectedSize)
+            capacity <<= 1;
+        return capacity;
+    }
+    
+    /**
+     * Spreads the bits of the value, so that sequential ids do not cluster in the table.
+     */
+    static int hash(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        return (int) value;
+    }
+    
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        LongHashSet that = (LongHashSet) o;
+        if (size != that.size || containsEmpty != that.containsEmpty) return false;
+        for (long value : table) {
+            if (value != EMPTY && !that.contains(value))
+                return false;
+        }
+        return true;
+    }
+    
+    @Override
+    public int hashCode() {
+        int hash = 0;
+        for (long value : table)
+            hash += Long.hashCode(value); // Empty slots contribute nothing
+        return hash;
+    }
+    
+}
@@ -0,0 +1,36 @@
+package me.monst.pluginutil.collection;
+
+/**
+ * Hashing helpers shared by the UUID-keyed hash tables in this package.
+ */
+final class UUIDHashing {
+    
+    private UUIDHashing() {}
+    
+    /**
+     * Hashes the two halves of a UUID. Random UUIDs are already well distributed, but name-based and
+     * hand-made UUIDs are not, so the bits are mixed regardless, with the same mixer as {@link LongHashSet}.
+     */
+    static int hash(long msb, long lsb) {
+        return LongHashSet.hash(msb ^ (lsb * 0x9e3779b97f4a7c15L));
+    }
+    
+    /**
+     * The largest power of two an array can hold, beyond which the tables cannot grow.
+     */
+    static final int MAX_CAPACITY = 1 << 30;
+    
+    /**
+     * Gets the table size for the expected number of keys.
+     * @throws IllegalArgumentException if the keys would not fit in a table of {@link #MAX_CAPACITY}
+     */
+    static int tableSizeFor(int expectedSize, float loadFactor) {
+        if (expectedSize > MAX_CAPACITY * (double) loadFactor)
+            throw new IllegalArgumentException("Expected size " + expectedSize + " is too large");
+        int capacity = 16;
+        while (capacity * loadFactor < expectedSize)
+            capacity <<= 1;
+        return capacity;
+    }
+    
+}
@@ -0,0 +1,203 @@
+package me.monst.pluginutil.collection;
+
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+
+/**
+ * A map keyed by {@link UUID}, backed by an open-addressing hash table with linear probing.
+ * The keys are stored as the two {@code long}s of the UUID in parallel arrays, so unlike a {@code HashMap<UUID, V>},
+ * this map neither keeps a {@link UUID} object nor allocates an entry object per mapping.
+ * Lookups can also be made with the two halves of a UUID directly, without allocating a {@link UUID} at all.
+ * <p>
+ * {@code null} values are not permitted. This map is not thread-safe.
+ * @param <V> the type of the values
+ */
+public class UUIDMap<V> {
+    
+    private static final float LOAD_FACTOR = 0.5f;
+    
+    private long[] mostSigBits;
+    private long[] leastSigBits;
+    private Object[] values; // A null value marks an empty slot
+    private int size;
+    
+    /**
+     * Creates a new, empty map.
+     */
+    public UUIDMap() {
+        this(16);
+    }
+    
+    /**
+     * Creates a new, empty map with room for the given number of mappings before it needs to grow.
+     * @param expectedSize the expected number of mappings
+     * @throws IllegalArgumentException if the expected size is more than {@code 2^29}, the most this map can hold
+     */
+    public UUIDMap(int expectedSize) {
+        allocate(UUIDHashing.tableSizeFor(expectedSize, LOAD_FACTOR));
+    }
+    
+    /**
+     * Gets the value mapped to the given key.
+     * @param key the key
+     * @return the value, or {@code null} if there is no mapping for the key
+     */
+    public V get(UUID key) {
+        return get(key.getMostSignificantBits(), key.getLeastSignificantBits());
+    }
+    
+    /**
+     * Gets the value mapped to the UUID with the given halves.
+     * @param msb the most significant bits of the key
+     * @param lsb the least significant bits of the key
+     * @return the value, or {@code null} if there is no mapping for the key
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long msb, long lsb) {
+        int slot = find(msb, lsb);
+        return slot < 0 ? null : (V) values[slot];
+    }
+    
+    /**
+     * @param key the key
+     * @return true if there is a mapping for the key
+     */
+    public boolean containsKey(UUID key) {
+        return find(key.getMostSignificantBits(), key.getLeastSignificantBits()) >= 0;
+    }
+    
+    /**
+     * Maps the given key to the given value.
+     * @param key the key
+     * @param value the value, which must not be {@code null}
+     * @return the previous value, or {@code null} if there was no mapping for the key
+     * @throws IllegalStateException if the key is new and this map already holds {@code 2^29} mappings
+     */
+    @SuppressWarnings("unchecked")
+    public V put(UUID key, V value) {
+        if (value == null)
+            throw new NullPointerException("Null values are not permitted");
+        long msb = key.getMostSignificantBits();
+        long lsb = key.getLeastSignificantBits();
+        int mask = values.length - 1;
+        int slot = UUIDHashing.hash(msb, lsb) & mask;
+        while (values[slot] != null) {
+            if (mostSigBits[slot] == msb && leastSigBits[slot] == lsb) {
+                V previous = (V) values[slot];
+                values[slot] = value;
+                return previous;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (size >= UUIDHashing.MAX_CAPACITY * LOAD_FACTOR)
+            throw new IllegalStateException("Too many keys");
+        mostSigBits[slot] = msb;
+        leastSigBits[slot] = lsb;
+        values[slot] = value;
+        if (++size > values.length * LOAD_FACTOR && values.length < UUIDHashing.MAX_CAPACITY)
+            rehash(values.length << 1);
+        return null;
+    }
+    
+    /**
+     * Removes the mapping for the given key.
+     * @param key the key
+     * @return the removed value, or {@code null} if there was no mapping for the key
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(UUID key) {
+        int slot = find(key.getMostSignificantBits(), key.getLeastSignificantBits());
+        if (slot < 0)
+            return null;
+        V previous = (V) values[slot];
+        // Shift the following entries of the probe sequence back, so that no tombstones are needed
+        int mask = values.length - 1;
+        int gap = slot;
+        slot = (slot + 1) & mask;
+        while (values[slot] != null) {
+            int home = UUIDHashing.hash(mostSigBits[slot], leastSigBits[slot]) & mask;
+            if (((slot - home) & mask) >= ((slot - gap) & mask)) {
+                mostSigBits[gap] = mostSigBits[slot];
+                leastSigBits[gap] = leastSigBits[slot];
+                values[gap] = values[slot];
+                gap = slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        values[gap] = null;
+        size--;
+        return previous;
+    }
+    
+    /**
+     * @return the number of mappings in this map
+     */
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * @return true if this map contains no mappings
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+    
+    /**
+     * Removes all mappings from this map.
+     */
+    public void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+    
+    /**
+     * Performs the given action for every mapping in this map, in no particular order.
+     * A {@link UUID} is allocated for every mapping.
+     * @param action the action to perform
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(BiConsumer<UUID, V> action) {
+        for (int slot = 0; slot < values.length; slot++) {
+            if (values[slot] != null)
+                action.accept(new UUID(mostSigBits[slot], leastSigBits[slot]), (V) values[slot]);
+        }
+    }
+    
+    private int find(long msb, long lsb) {
+        int mask = values.length - 1;
+        int slot = UUIDHashing.hash(msb, lsb) & mask;
+        while (values[slot] != null) {
+            if (mostSigBits[slot] == msb && leastSigBits[slot] == lsb)
+                return slot;
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+    
+    private void allocate(int capacity) {
+        mostSigBits = new long[capacity];
+        leastSigBits = new long[capacity];
+        values = new Object[capacity];
+    }
+    
+    private void rehash(int newCapacity) {
+        long[] oldMostSigBits = mostSigBits;
+        long[] oldLeastSigBits = leastSigBits;
+        Object[] oldValues = values;
+        allocate(newCapacity);
+        int mask = newCapacity - 1;
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] == null)
+                continue;
+            int slot = UUIDHashing.hash(oldMostSigBits[i], oldLeastSigBits[i]) & mask;
+            while (values[slot] != null)
+                slot = (slot + 1) & mask;
+            mostSigBits[slot] = oldMostSigBits[i];
+            leastSigBits[slot] = oldLeastSigBits[i];
+            values[slot] = oldValues[i];
+        }
+    }
+    
+}
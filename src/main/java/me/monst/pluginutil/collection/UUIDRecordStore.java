@@ -0,0 +1,275 @@
+package me.monst.pluginutil.collection;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+
+/**
+ * A store of fixed-size records keyed by {@link UUID}, kept off the Java heap.
+ * Every key owns one record of {@code recordSize} bytes in a direct buffer, whose fields are read and written at
+ * byte offsets chosen by the caller, for example a balance at offset 0 and a counter at offset 8.
+ * The records do not add to the garbage collector's workload, and the index only holds the two {@code long}s of
+ * every key, so per-player state for a large number of players takes little more than the bytes of its records.
+ * <p>
+ * Records of new keys start out zeroed. At most {@code 2^29} keys can be stored. This store is not thread-safe.
+ */
+public class UUIDRecordStore {
+    
+    private static final float LOAD_FACTOR = 0.5f;
+    
+    private final int recordSize;
+    
+    private long[] mostSigBits;
+    private long[] leastSigBits;
+    private int[] records; // Record number + 1 of each slot, 0 marks an empty slot
+    private int size;
+    
+    private ByteBuffer buffer;
+    private int recordCount; // Number of records ever handed out, including freed ones
+    private int[] freeRecords = new int[16];
+    private int freeCount;
+    
+    /**
+     * Creates a new, empty store.
+     * @param recordSize the size of every record in bytes
+     * @param expectedSize the expected number of keys
+     * @throws IllegalArgumentException if the record size is not positive, or the expected size is more than
+     *                                  {@code 2^29}, the most this store can hold
+     */
+    public UUIDRecordStore(int recordSize, int expectedSize) {
+        if (recordSize <= 0)
+            throw new IllegalArgumentException("Record size must be positive");
+        this.recordSize = recordSize;
+        allocateIndex(UUIDHashing.tableSizeFor(expectedSize, LOAD_FACTOR));
+        this.buffer = ByteBuffer.allocateDirect(Math.max(1, expectedSize) * recordSize);
+    }
+    
+    /**
+     * @param key the key
+     * @return true if the store contains a record for the key
+     */
+    public boolean contains(UUID key) {
+        return find(key.getMostSignificantBits(), key.getLeastSignificantBits()) >= 0;
+    }
+    
+    /**
+     * Reads a {@code long} field of the record of the given key.
+     * @param key the key
+     * @param field the byte offset of the field within the record
+     * @return the value of the field
+     * @throws NoSuchElementException if there is no record for the key
+     * @throws IndexOutOfBoundsException if the field does not lie within the record
+     */
+    public long getLong(UUID key, int field) {
+        checkField(field, Long.BYTES);
+        return buffer.getLong(offsetOf(key) + field);
+    }
+    
+    /**
+     * Reads a {@code int} field of the record of the given key.
+     * @param key the key
+     * @param field the byte offset of the field within the record
+     * @return the value of the field
+     * @throws NoSuchElementException if there is no record for the key
+     * @throws IndexOutOfBoundsException if the field does not lie within the record
+     */
+    public int getInt(UUID key, int field) {
+        checkField(field, Integer.BYTES);
+        return buffer.getInt(offsetOf(key) + field);
+    }
+    
+    /**
+     * Reads a {@code double} field of the record of the given key.
+     * @param key the key
+     * @param field the byte offset of the field within the record
+     * @return the value of the field
+     * @throws NoSuchElementException if there is no record for the key
+     * @throws IndexOutOfBoundsException if the field does not lie within the record
+     */
+    public double getDouble(UUID key, int field) {
+        checkField(field, Double.BYTES);
+        return buffer.getDouble(offsetOf(key) + field);
+    }
+    
+    /**
+     * Writes a {@code long} field of the record of the given key, creating the record if necessary.
+     * @param key the key
+     * @param field the byte offset of the field within the record
+     * @param value the new value of the field
+     * @throws IndexOutOfBoundsException if the field does not lie within the record
+     */
+    public void putLong(UUID key, int field, long value) {
+        checkField(field, Long.BYTES);
+        int offset = offsetOrAllocate(key); // May replace the buffer, so it must be called first
+        buffer.putLong(offset + field, value);
+    }
+    
+    /**
+     * Writes a {@code int} field of the record of the given key, creating the record if necessary.
+     * @param key the key
+     * @param field the byte offset of the field within the record
+     * @param value the new value of the field
+     * @throws IndexOutOfBoundsException if the field does not lie within the record
+     */
+    public void putInt(UUID key, int field, int value) {
+        checkField(field, Integer.BYTES);
+        int offset = offsetOrAllocate(key); // May replace the buffer, so it must be called first
+        buffer.putInt(offset + field, value);
+    }
+    
+    /**
+     * Writes a {@code double} field of the record of the given key, creating the record if necessary.
+     * @param key the key
+     * @param field the byte offset of the field within the record
+     * @param value the new value of the field
+     * @throws IndexOutOfBoundsException if the field does not lie within the record
+     */
+    public void putDouble(UUID key, int field, double value) {
+        checkField(field, Double.BYTES);
+        int offset = offsetOrAllocate(key); // May replace the buffer, so it must be called first
+        buffer.putDouble(offset + field, value);
+    }
+    
+    /**
+     * Removes the record of the given key. Its memory is reused for the next new key.
+     * @param key the key
+     * @return true if a record was removed
+     */
+    public boolean remove(UUID key) {
+        int slot = find(key.getMostSignificantBits(), key.getLeastSignificantBits());
+        if (slot < 0)
+            return false;
+        if (freeCount == freeRecords.length)
+            freeRecords = Arrays.copyOf(freeRecords, freeCount << 1);
+        freeRecords[freeCount++] = records[slot] - 1;
+        // Shift the following entries of the probe sequence back, so that no tombstones are needed
+        int mask = records.length - 1;
+        int gap = slot;
+        slot = (slot + 1) & mask;
+        while (records[slot] != 0) {
+            int home = UUIDHashing.hash(mostSigBits[slot], leastSigBits[slot]) & mask;
+            if (((slot - home) & mask) >= ((slot - gap) & mask)) {
+                mostSigBits[gap] = mostSigBits[slot];
+                leastSigBits[gap] = leastSigBits[slot];
+                records[gap] = records[slot];
+                gap = slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        records[gap] = 0;
+        size--;
+        return true;
+    }
+    
+    /**
+     * @return the number of keys in this store
+     */
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * @return the number of bytes allocated off-heap for records
+     */
+    public long getOffHeapBytes() {
+        return buffer.capacity();
+    }
+    
+    /**
+     * Removes all records from this store. The off-heap memory is kept for reuse.
+     */
+    public void clear() {
+        Arrays.fill(records, 0);
+        size = 0;
+        recordCount = 0;
+        freeCount = 0;
+    }
+    
+    /**
+     * Checks that a field lies within a record, so that an access cannot spill into the neighbouring record.
+     */
+    private void checkField(int field, int width) {
+        if (field < 0 || field > recordSize - width)
+            throw new IndexOutOfBoundsException("Field at " + field + " of " + width + " bytes does not fit in a "
+                    + recordSize + "-byte record");
+    }
+    
+    private int offsetOf(UUID key) {
+        int slot = find(key.getMostSignificantBits(), key.getLeastSignificantBits());
+        if (slot < 0)
+            throw new NoSuchElementException("No record for " + key);
+        return (records[slot] - 1) * recordSize;
+    }
+    
+    private int offsetOrAllocate(UUID key) {
+        long msb = key.getMostSignificantBits();
+        long lsb = key.getLeastSignificantBits();
+        int mask = records.length - 1;
+        int slot = UUIDHashing.hash(msb, lsb) & mask;
+        while (records[slot] != 0) {
+            if (mostSigBits[slot] == msb && leastSigBits[slot] == lsb)
+                return (records[slot] - 1) * recordSize;
+            slot = (slot + 1) & mask;
+        }
+        if (size >= UUIDHashing.MAX_CAPACITY * LOAD_FACTOR)
+            throw new IllegalStateException("Too many keys");
+        int record = allocateRecord();
+        mostSigBits[slot] = msb;
+        leastSigBits[slot] = lsb;
+        records[slot] = record + 1;
+        if (++size > records.length * LOAD_FACTOR && records.length < UUIDHashing.MAX_CAPACITY)
+            rehash(records.length << 1);
+        return record * recordSize;
+    }
+    
+    private int allocateRecord() {
+        int record = freeCount > 0 ? freeRecords[--freeCount] : recordCount++;
+        int offset = record * recordSize;
+        if (offset + recordSize > buffer.capacity()) {
+            ByteBuffer grown = ByteBuffer.allocateDirect(Math.max(buffer.capacity() << 1, offset + recordSize));
+            buffer.clear();
+            grown.put(buffer);
+            buffer = grown;
+        }
+        for (int i = 0; i < recordSize; i++) // Records are reused, so they must be zeroed
+            buffer.put(offset + i, (byte) 0);
+        return record;
+    }
+    
+    private int find(long msb, long lsb) {
+        int mask = records.length - 1;
+        int slot = UUIDHashing.hash(msb, lsb) & mask;
+        while (records[slot] != 0) {
+            if (mostSigBits[slot] == msb && leastSigBits[slot] == lsb)
+                return slot;
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+    
+    private void allocateIndex(int capacity) {
+        mostSigBits = new long[capacity];
+        leastSigBits = new long[capacity];
+        records = new int[capacity];
+    }
+    
+    private void rehash(int newCapacity) {
+        long[] oldMostSigBits = mostSigBits;
+        long[] oldLeastSigBits = leastSigBits;
+        int[] oldRecords = records;
+        allocateIndex(newCapacity);
+        int mask = newCapacity - 1;
+        for (int i = 0; i < oldRecords.length; i++) {
+            if (oldRecords[i] == 0)
+                continue;
+            int slot = UUIDHashing.hash(oldMostSigBits[i], oldLeastSigBits[i]) & mask;
+            while (records[slot] != 0)
+                slot = (slot + 1) & mask;
+            mostSigBits[slot] = oldMostSigBits[i];
+            leastSigBits[slot] = oldLeastSigBits[i];
+            records[slot] = oldRecords[i];
+        }
+    }
+    
+}
@@ -0,0 +1,46 @@
+package me.monst.pluginutil.configuration;
+
+import me.monst.pluginutil.configuration.transform.BooleanTransformer;
+
+/**
+ * A configuration value of type {@code boolean}, which can be read without unboxing through {@link #getBoolean()}.
+ * This suits values which are read very often, such as on every event.
+ */
+public class BooleanConfigurationValue extends ConfigurationValue<Boolean> {
+    
+    private boolean value;
+    
+    /**
+     * Creates a new {@code boolean} configuration value with the given key and default value.
+     * @param key the key of the value
+     * @param defaultValue the default value
+     * @param transformer the transformer used to convert the file data, which may be bounded
+     */
+    public BooleanConfigurationValue(String key, boolean defaultValue, BooleanTransformer transformer) {
+        super(key, defaultValue, transformer);
+        this.value = defaultValue;
+    }
+    
+    /**
+     * Creates a new {@code boolean} configuration value with the given key and default value.
+     * @param key the key of the value
+     * @param defaultValue the default value
+     */
+    public BooleanConfigurationValue(String key, boolean defaultValue) {
+        this(key, defaultValue, new BooleanTransformer());
+    }
+    
+    /**
+     * Gets the current value of this configuration value without unboxing it.
+     * @return the current value
+     */
+    public final boolean getBoolean() {
+        return value;
+    }
+    
+    @Override
+    final void onSet(Boolean newValue) {
+        value = newValue;
+    }
+    
+}
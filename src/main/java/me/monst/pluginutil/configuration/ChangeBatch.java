@@ -0,0 +1,90 @@
+package me.monst.pluginutil.configuration;
+
+import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Collects the changes made to configuration values on one thread while a feed is in progress, so that listeners
+ * are notified once the outermost feed is done: once per changed value, and once per branch above them.
+ * A value which changes and then changes back within the same feed is not reported.
+ * If a feed fails partway, the values it set before failing keep their new values, so listeners are still notified
+ * of those once the outermost feed ends, before the exception propagates any further.
+ */
+final class ChangeBatch {
+    
+    private static final ThreadLocal<ChangeBatch> CURRENT = ThreadLocal.withInitial(ChangeBatch::new);
+    private static final Logger LOGGER = Logger.getLogger(ChangeBatch.class.getName());
+    
+    private int depth;
+    private final Map<ConfigurationValue<?>, Object> oldValues = new IdentityHashMap<>();
+    private final List<ConfigurationValue<?>> order = new ArrayList<>();
+    
+    private ChangeBatch() {}
+    
+    static void begin() {
+        CURRENT.get().depth++;
+    }
+    
+    /**
+     * Ends a feed, whether it completed or failed. Listeners are notified if this was the outermost feed.
+     */
+    static void end() {
+        ChangeBatch batch = CURRENT.get();
+        if (--batch.depth > 0)
+            return;
+        CURRENT.remove(); // Listeners which change values themselves start a new batch
+        batch.fire();
+    }
+    
+    /**
+     * Logs an exception thrown by a listener, so that it does not keep the remaining listeners from being notified.
+     */
+    static void listenerFailed(ConfigurationNode node, RuntimeException e) {
+        LOGGER.log(Level.SEVERE, "A change listener of " + node.getKey() + " threw an exception!", e);
+    }
+    
+    /**
+     * Records that the value was changed from the given old value. Changes made outside of a feed are fired at once.
+     */
+    static void record(ConfigurationValue<?> value, Object oldValue) {
+        begin();
+        try {
+            ChangeBatch batch = CURRENT.get();
+            if (!batch.oldValues.containsKey(value)) {
+                batch.oldValues.put(value, oldValue); // Only the value from before the first change counts
+                batch.order.add(value);
+            }
+        } finally {
+            end();
+        }
+    }
+    
+    private void fire() {
+        List<ConfigurationValue<?>> changed = new ArrayList<>();
+        for (ConfigurationValue<?> value : order) {
+            Object oldValue = oldValues.get(value);
+            if (!Objects.equals(oldValue, value.get()))
+                changed.add(value);
+        }
+        if (changed.isEmpty())
+            return;
+        Map<ConfigurationBranch, List<ConfigurationValue<?>>> changedByBranch = new IdentityHashMap<>();
+        List<ConfigurationBranch> branches = new ArrayList<>();
+        for (ConfigurationValue<?> value : changed) {
+            value.fireChange(oldValues.get(value));
+            for (ConfigurationBranch branch = value.getParent(); branch != null; branch = branch.getParent()) {
+                List<ConfigurationValue<?>> values = changedByBranch.get(branch);
+                if (values == null) {
+                    values = new ArrayList<>();
+                    changedByBranch.put(branch, values);
+                    branches.add(branch);
+                }
+                values.add(value);
+            }
+        }
+        for (ConfigurationBranch branch : branches)
+            branch.fireChanges(Collections.unmodifiableList(changedByBranch.get(branch)));
+    }
+    
+}
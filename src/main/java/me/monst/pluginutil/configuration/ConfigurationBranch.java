@@ -1,6 +1,8 @@
 package me.monst.pluginutil.configuration;
 
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 
 /**
  * A node in the configuration tree that can have children.
@@ -10,7 +12,25 @@ import java.util.*;
  */
 public abstract class ConfigurationBranch extends ConfigurationNode {
     
+    private static final ClassValue<Boolean> OVERRIDES_FEED = new ClassValue<Boolean>() {
+        @Override
+        protected Boolean computeValue(Class<?> type) {
+            for (Class<?> c = type; c != ConfigurationBranch.class; c = c.getSuperclass()) {
+                try {
+                    c.getDeclaredMethod("feed", Object.class);
+                    return true;
+                } catch (NoSuchMethodException ignored) {}
+            }
+            return false;
+        }
+    };
+    
     protected final Map<String, ConfigurationNode> children;
+    private final Map<String, ConfigurationNode> childrenView;
+    private final Map<String, ConfigurationNode> index = new HashMap<>(); // Dotted path -> descendant
+    private final NavigableSet<String> paths = new TreeSet<>();
+    private volatile ConfigurationSnapshot snapshot; // Null until snapshots are enabled
+    private final List<Consumer<? super List<ConfigurationValue<?>>>> listeners = new CopyOnWriteArrayList<>();
     
     /**
      * Creates a new branch with the given key.
@@ -19,19 +39,75 @@ public abstract class ConfigurationBranch extends ConfigurationNode {
     public ConfigurationBranch(String key) {
         super(key);
         this.children = new LinkedHashMap<>();
+        this.childrenView = Collections.unmodifiableMap(children);
     }
     
     /**
-     * Adds a child node to this branch.
+     * Adds a child node to this branch, replacing any child with the same key.
+     * The child and all of its descendants are added to the path index of this branch and all of its ancestors.
+     * Children must be added through this method, not through the {@link #children} map, to be indexed.
      * @param child the child node to add
      * @return the child node that was added
      * @param <Node> the type of the child node
+     * @throws IllegalArgumentException if the key of the child contains a {@code '.'}, which would make its
+     *                                  dotted path ambiguous
      */
     public <Node extends ConfigurationNode> Node addChild(Node child) {
-        children.put(child.getKey(), child);
+        if (child.getKey().indexOf('.') >= 0)
+            throw new IllegalArgumentException("Key must not contain '.': " + child.getKey());
+        ConfigurationNode replaced = children.put(child.getKey(), child);
+        if (replaced != null && replaced != child)
+            replaced.setParent(null); // So that later changes below it are no longer indexed here
+        child.setParent(this);
+        Map<String, ConfigurationNode> entries = new HashMap<>();
+        entries.put(child.getKey(), child);
+        if (child instanceof ConfigurationBranch)
+            ((ConfigurationBranch) child).index.forEach((path, node) -> entries.put(child.getKey() + "." + path, node));
+        reindex(child.getKey(), entries);
         return child;
     }
     
+    /**
+     * Replaces the indexed subtree at the given path with the given entries, here and in every ancestor.
+     */
+    private void reindex(String path, Map<String, ConfigurationNode> entries) {
+        // '/' is the character after '.', so this range is exactly the descendants of the path
+        NavigableSet<String> replaced = paths.subSet(path + ".", true, path + "/", false);
+        replaced.forEach(index::remove);
+        replaced.clear();
+        index.remove(path);
+        paths.remove(path);
+        index.putAll(entries);
+        paths.addAll(entries.keySet());
+        ConfigurationBranch parent = getParent();
+        if (parent == null)
+            return;
+        Map<String, ConfigurationNode> prefixed = new HashMap<>();
+        entries.forEach((entryPath, node) -> prefixed.put(getKey() + "." + entryPath, node));
+        parent.reindex(getKey() + "." + path, prefixed);
+    }
+    
+    /**
+     * Gets the descendant of this branch at the given dotted path, such as {@code "database.pool.size"},
+     * in constant time.
+     * @param path the path of the descendant, relative to this branch
+     * @return the descendant at the given path, or null if no such node exists
+     */
+    public ConfigurationNode getNode(String path) {
+        return index.get(path);
+    }
+    
+    /**
+     * Gets the dotted paths of all descendants of this branch which start with the given string, in sorted order.
+     * This is meant for completing paths as they are typed, for example {@code "database.p"} gives
+     * {@code "database.pool"}, {@code "database.pool.size"} and {@code "database.port"}.
+     * @param prefix the beginning of the paths, relative to this branch
+     * @return an unmodifiable view of the matching paths
+     */
+    public SortedSet<String> getPaths(String prefix) {
+        return Collections.unmodifiableSortedSet(paths.subSet(prefix, true, prefix + Character.MAX_VALUE, false));
+    }
+    
     /**
      * Gets the child node with the given key, or null if no such child exists.
      * @param key the key of the child
@@ -42,11 +118,11 @@ public abstract class ConfigurationBranch extends ConfigurationNode {
     }
     
     /**
-     * Gets a map of all children of this branch.
-     * @return a map of all children of this branch
+     * Gets a map of all children of this branch. Use {@link #addChild(ConfigurationNode)} to add children.
+     * @return an unmodifiable view of the children of this branch, by key
      */
     public Map<String, ConfigurationNode> getChildren() {
-        return children;
+        return childrenView;
     }
     
     /**
@@ -78,7 +154,140 @@ public abstract class ConfigurationBranch extends ConfigurationNode {
     @Override
     protected void feed(Object object) {
         Map<?, ?> map = object instanceof Map ? (Map<?, ?>) object : Collections.emptyMap();
-        children.forEach((key, node) -> node.feed(map.get(key)));
+        ChangeBatch.begin();
+        try {
+            children.forEach((key, node) -> node.feed(map.get(key)));
+            publishSnapshot();
+        } finally {
+            ChangeBatch.end(); // Also after a failure, for the values which were set before it
+        }
+    }
+    
+    /**
+     * Feeds the given object to this branch like {@link #feed(Object)}, but skips every value whose raw data
+     * is equal to the data it was fed last time, so that only the parts of the tree which differ are converted.
+     * Values changed through commands since they were last fed are always fed again.
+     * <p>
+     * Branches which override {@link #feed(Object)} are fed their whole data through their override instead, since
+     * it may read the data differently, and the values below them are compared before and after.
+     * @param object the object to feed the branch
+     * @return the values which were changed, in tree order
+     */
+    protected List<ConfigurationValue<?>> feedChanges(Object object) {
+        List<ConfigurationValue<?>> changed = new ArrayList<>();
+        feedChanges(object, changed);
+        return changed;
+    }
+    
+    @Override
+    void feedChanges(Object object, List<ConfigurationValue<?>> changed) {
+        if (overridesFeed()) {
+            feedThroughOverride(object, changed);
+            return;
+        }
+        // Comparing whole subtrees here would compare deep data once per level, so only leaves are compared
+        Map<?, ?> map = object instanceof Map ? (Map<?, ?>) object : Collections.emptyMap();
+        ChangeBatch.begin();
+        try {
+            children.forEach((key, node) -> node.feedChanges(map.get(key), changed));
+            publishSnapshot();
+        } finally {
+            ChangeBatch.end(); // Also after a failure, for the values which were set before it
+        }
+    }
+    
+    private void feedThroughOverride(Object object, List<ConfigurationValue<?>> changed) {
+        List<ConfigurationValue<?>> values = new ArrayList<>();
+        collectValues(values);
+        List<Object> oldValues = new ArrayList<>(values.size());
+        for (ConfigurationValue<?> value : values)
+            oldValues.add(value.get());
+        feed(object);
+        for (int i = 0; i < values.size(); i++) {
+            if (!Objects.equals(oldValues.get(i), values.get(i).get()))
+                changed.add(values.get(i));
+        }
+    }
+    
+    private void collectValues(List<ConfigurationValue<?>> values) {
+        for (ConfigurationNode child : children.values()) {
+            if (child instanceof ConfigurationValue)
+                values.add((ConfigurationValue<?>) child);
+            else if (child instanceof ConfigurationBranch)
+                ((ConfigurationBranch) child).collectValues(values);
+        }
+    }
+    
+    /**
+     * @return true if this branch overrides {@link #feed(Object)}, and must be fed through it
+     */
+    boolean overridesFeed() {
+        return OVERRIDES_FEED.get(getClass());
+    }
+    
+    /**
+     * Enables snapshots for this branch, and builds the first one from the current values.
+     * <p>
+     * This must be called on the same thread that feeds the tree, usually the main thread, before any other thread
+     * calls {@link #snapshot()}; otherwise the first snapshot could be built while a reload is setting the values.
+     * From then on, every time this branch is fed, a new snapshot is built once all of its values are set and
+     * published with a single volatile write, so that readers never see a half-applied reload. Changes made through
+     * commands are published right away.
+     * Branches which override {@link #feed(Object)} without calling it must call {@link #publishSnapshot()} instead.
+     */
+    public void enableSnapshots() {
+        if (snapshot == null)
+            snapshot = ConfigurationSnapshot.of(this);
+    }
+    
+    /**
+     * Gets an immutable snapshot of all values below this branch, which can be read consistently from any thread.
+     * @return the latest published snapshot
+     * @throws IllegalStateException if snapshots have not been enabled by {@link #enableSnapshots()}
+     */
+    public ConfigurationSnapshot snapshot() {
+        ConfigurationSnapshot current = snapshot;
+        if (current == null)
+            throw new IllegalStateException("Snapshots of " + getKey() + " have not been enabled");
+        return current;
+    }
+    
+    /**
+     * Builds and publishes a new snapshot of this branch, if snapshots have been enabled by {@link #enableSnapshots()}.
+     */
+    protected void publishSnapshot() {
+        if (snapshot != null)
+            snapshot = ConfigurationSnapshot.of(this);
+    }
+    
+    /**
+     * Adds a listener which is called with the values below this branch which changed, once per feed of the tree,
+     * after all of the values have been set. The listener is not called if no value below this branch changed.
+     * If the feed fails with an exception, the listener is still called with the values which were changed before the
+     * failure, although the {@link #snapshot() snapshot} keeps the values from before the feed. An exception thrown by
+     * a listener is logged, and does not keep the other listeners from being called.
+     * @param listener the listener, called with the changed values in tree order
+     */
+    public void addListener(Consumer<? super List<ConfigurationValue<?>>> listener) {
+        listeners.add(listener);
+    }
+    
+    /**
+     * Removes a listener added by {@link #addListener(Consumer)}.
+     * @param listener the listener to remove
+     */
+    public void removeListener(Consumer<? super List<ConfigurationValue<?>>> listener) {
+        listeners.remove(listener);
+    }
+    
+    void fireChanges(List<ConfigurationValue<?>> changed) {
+        for (Consumer<? super List<ConfigurationValue<?>>> listener : listeners) {
+            try {
+                listener.accept(changed);
+            } catch (RuntimeException e) {
+                ChangeBatch.listenerFailed(this, e);
+            }
+        }
     }
     
     /**
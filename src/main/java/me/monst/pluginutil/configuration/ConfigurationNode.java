@@ -1,5 +1,8 @@
 package me.monst.pluginutil.configuration;
 
+import java.util.List;
+import java.util.Objects;
+
 /**
  * A node in a configuration tree. This node can be fed an arbitrary object and will attempt to make sense of
  * it and store it in a way that makes sense for the node.
@@ -7,7 +10,11 @@ package me.monst.pluginutil.configuration;
  */
 public abstract class ConfigurationNode {
     
+    private static final Object NEVER_FED = new Object();
+    
     private final String key;
+    private ConfigurationBranch parent;
+    private Object lastFed = NEVER_FED;
     
     public ConfigurationNode(String key) {
         this.key = key;
@@ -17,6 +24,18 @@ public abstract class ConfigurationNode {
         return key;
     }
     
+    /**
+     * Gets the branch this node was last added to.
+     * @return the parent of this node, or null if this node is the root of its tree
+     */
+    public ConfigurationBranch getParent() {
+        return parent;
+    }
+    
+    void setParent(ConfigurationBranch parent) {
+        this.parent = parent;
+    }
+    
     /**
      * Feeds the given object to this node. The node will attempt to make sense of the object and
      * store it in a way that makes sense for the node. This may not be possible, in which case
@@ -25,6 +44,34 @@ public abstract class ConfigurationNode {
      */
     protected abstract void feed(Object object);
     
+    /**
+     * Feeds the given object to this node only if it differs from the object this node was last fed.
+     * Values which changed as a result are added to the given list.
+     * @param object the object to feed the node
+     * @param changed the list to add changed values to
+     */
+    void feedChanges(Object object, List<ConfigurationValue<?>> changed) {
+        if (isLastFed(object))
+            return;
+        feed(object);
+        setLastFed(object);
+    }
+    
+    /**
+     * Remembers the raw object this node was last fed, so that feeding an equal object again can be skipped.
+     */
+    void setLastFed(Object object) {
+        lastFed = object;
+    }
+    
+    void forgetLastFed() {
+        lastFed = NEVER_FED;
+    }
+    
+    boolean isLastFed(Object object) {
+        return lastFed != NEVER_FED && Objects.equals(lastFed, object);
+    }
+    
     /**
      * Gets the value of this node as a YAML object.
      * @return the value of this node as a YAML object
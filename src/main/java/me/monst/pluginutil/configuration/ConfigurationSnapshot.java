@@ -0,0 +1,68 @@
+package me.monst.pluginutil.configuration;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * An immutable view of all values in a configuration tree at one point in time.
+ * Once enabled by {@link ConfigurationBranch#enableSnapshots()}, snapshots are published after every reload, and can be
+ * read from any thread without locking; the values read from one snapshot are always consistent with each other, even
+ * while the tree is being reloaded.
+ * <p>
+ * The snapshot itself is immutable, but the values in it are not copied: a collection or other mutable value is the
+ * same object the configuration value holds. Reloads replace such values rather than modify them, so they stay
+ * consistent as long as they are treated as read-only.
+ * <pre>{@code
+ * root.enableSnapshots(); // On the main thread, after the first load
+ * ConfigurationSnapshot config = root.snapshot();
+ * int min = config.get(minPlayers), max = config.get(maxPlayers); // Never from two different reloads
+ * }</pre>
+ */
+public final class ConfigurationSnapshot {
+    
+    private final Map<ConfigurationValue<?>, Object> values;
+    
+    private ConfigurationSnapshot(Map<ConfigurationValue<?>, Object> values) {
+        this.values = values;
+    }
+    
+    static ConfigurationSnapshot of(ConfigurationBranch branch) {
+        Map<ConfigurationValue<?>, Object> values = new IdentityHashMap<>();
+        collect(branch, values);
+        return new ConfigurationSnapshot(values);
+    }
+    
+    private static void collect(ConfigurationBranch branch, Map<ConfigurationValue<?>, Object> values) {
+        for (ConfigurationNode child : branch.getChildren().values()) {
+            if (child instanceof ConfigurationValue)
+                values.put((ConfigurationValue<?>) child, ((ConfigurationValue<?>) child).get());
+            else if (child instanceof ConfigurationBranch)
+                collect((ConfigurationBranch) child, values);
+        }
+    }
+    
+    /**
+     * Gets the value the given configuration value had when this snapshot was taken.
+     * Mutable values are shared with the configuration value, and must not be modified.
+     * @param value the configuration value
+     * @return the value at the time of this snapshot
+     * @param <T> the type of the value
+     * @throws IllegalArgumentException if the configuration value was not in the tree when this snapshot was taken
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(ConfigurationValue<T> value) {
+        if (!values.containsKey(value))
+            throw new IllegalArgumentException("Value " + value.getKey() + " is not part of this snapshot");
+        return (T) values.get(value);
+    }
+    
+    /**
+     * Checks whether the given configuration value was in the tree when this snapshot was taken.
+     * @param value the configuration value
+     * @return true if this snapshot contains the value
+     */
+    public boolean contains(ConfigurationValue<?> value) {
+        return values.containsKey(value);
+    }
+    
+}
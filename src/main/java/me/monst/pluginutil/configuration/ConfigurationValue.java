@@ -9,6 +9,8 @@ import me.monst.pluginutil.configuration.transform.Transformer;
 import org.bukkit.entity.Player;
 
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiConsumer;
 import java.util.stream.Collectors;
 
 /**
@@ -25,6 +27,7 @@ public class ConfigurationValue<T> extends ConfigurationNode {
     private T value;
     private final Transformer<T> transformer;
     private final Set<T> history = new LinkedHashSet<>();
+    private final List<BiConsumer<? super T, ? super T>> listeners = new CopyOnWriteArrayList<>();
     
     /**
      * Creates a new configuration value with the given key and default value.
@@ -58,9 +61,20 @@ public class ConfigurationValue<T> extends ConfigurationNode {
     private void set(T newValue) {
         if (Objects.equals(value, newValue))
             return;
+        T oldValue = value;
         history.add(value);
         history.remove(newValue);
         value = newValue;
+        onSet(newValue);
+        ChangeBatch.record(this, oldValue);
+    }
+    
+    /**
+     * Called after every change of the value, so that subclasses can keep a copy of it, such as an unboxed one.
+     * @param newValue the new value
+     */
+    void onSet(T newValue) {
+    
     }
     
     /**
@@ -79,6 +93,17 @@ public class ConfigurationValue<T> extends ConfigurationNode {
         } catch (MissingValueException | UnreadableValueException e) {
             set(defaultValue);
         }
+        setLastFed(object);
+    }
+    
+    @Override
+    void feedChanges(Object object, List<ConfigurationValue<?>> changed) {
+        if (isLastFed(object))
+            return;
+        T oldValue = value;
+        feed(object);
+        if (!Objects.equals(oldValue, value))
+            changed.add(this);
     }
     
     /**
@@ -94,9 +119,50 @@ public class ConfigurationValue<T> extends ConfigurationNode {
         } catch (MissingValueException e) {
             newValue = defaultValue;
         }
-        beforeSet();
-        set(newValue);
-        afterSet();
+        ChangeBatch.begin();
+        try {
+            beforeSet();
+            set(newValue);
+            forgetLastFed(); // The next reload must overwrite this change, even if the file is unchanged
+            afterSet();
+            for (ConfigurationBranch branch = getParent(); branch != null; branch = branch.getParent())
+                branch.publishSnapshot();
+        } finally {
+            ChangeBatch.end(); // Listeners are notified right away, after the new snapshot is published
+        }
+    }
+    
+    /**
+     * Adds a listener which is called with the old and the new value every time this value changes.
+     * Changes made while a branch is being fed are batched: the listener is called once, after the whole feed,
+     * and not at all if the value ends up unchanged.
+     * Changes made through {@link #feed(String)} are reported right away.
+     * If a feed fails with an exception after this value was set, the listener is still called, since the value keeps
+     * its new value. An exception thrown by a listener is logged, and does not keep the other listeners from being
+     * called.
+     * @param listener the listener, called with the old value and the new value
+     */
+    public void addListener(BiConsumer<? super T, ? super T> listener) {
+        listeners.add(listener);
+    }
+    
+    /**
+     * Removes a listener added by {@link #addListener(BiConsumer)}.
+     * @param listener the listener to remove
+     */
+    public void removeListener(BiConsumer<? super T, ? super T> listener) {
+        listeners.remove(listener);
+    }
+    
+    @SuppressWarnings("unchecked")
+    void fireChange(Object oldValue) {
+        for (BiConsumer<? super T, ? super T> listener : listeners) {
+            try {
+                listener.accept((T) oldValue, value);
+            } catch (RuntimeException e) {
+                ChangeBatch.listenerFailed(this, e);
+            }
+        }
     }
     
     @Override
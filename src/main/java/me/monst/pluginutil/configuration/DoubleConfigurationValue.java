@@ -0,0 +1,46 @@
+package me.monst.pluginutil.configuration;
+
+import me.monst.pluginutil.configuration.transform.DoubleTransformer;
+
+/**
+ * A configuration value of type {@code double}, which can be read without unboxing through {@link #getDouble()}.
+ * This suits values which are read very often, such as on every event.
+ */
+public class DoubleConfigurationValue extends ConfigurationValue<Double> {
+    
+    private double value;
+    
+    /**
+     * Creates a new {@code double} configuration value with the given key and default value.
+     * @param key the key of the value
+     * @param defaultValue the default value
+     * @param transformer the transformer used to convert the file data, which may be bounded
+     */
+    public DoubleConfigurationValue(String key, double defaultValue, DoubleTransformer transformer) {
+        super(key, defaultValue, transformer);
+        this.value = defaultValue;
+    }
+    
+    /**
+     * Creates a new {@code double} configuration value with the given key and default value, without bounds.
+     * @param key the key of the value
+     * @param defaultValue the default value
+     */
+    public DoubleConfigurationValue(String key, double defaultValue) {
+        this(key, defaultValue, new DoubleTransformer());
+    }
+    
+    /**
+     * Gets the current value of this configuration value without unboxing it.
+     * @return the current value
+     */
+    public final double getDouble() {
+        return value;
+    }
+    
+    @Override
+    final void onSet(Double newValue) {
+        value = newValue;
+    }
+    
+}
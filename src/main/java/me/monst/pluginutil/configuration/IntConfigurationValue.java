@@ -0,0 +1,46 @@
+package me.monst.pluginutil.configuration;
+
+import me.monst.pluginutil.configuration.transform.IntTransformer;
+
+/**
+ * A configuration value of type {@code int}, which can be read without unboxing through {@link #getInt()}.
+ * This suits values which are read very often, such as on every event.
+ */
+public class IntConfigurationValue extends ConfigurationValue<Integer> {
+    
+    private int value;
+    
+    /**
+     * Creates a new {@code int} configuration value with the given key and default value.
+     * @param key the key of the value
+     * @param defaultValue the default value
+     * @param transformer the transformer used to convert the file data, which may be bounded
+     */
+    public IntConfigurationValue(String key, int defaultValue, IntTransformer transformer) {
+        super(key, defaultValue, transformer);
+        this.value = defaultValue;
+    }
+    
+    /**
+     * Creates a new {@code int} configuration value with the given key and default value, without bounds.
+     * @param key the key of the value
+     * @param defaultValue the default value
+     */
+    public IntConfigurationValue(String key, int defaultValue) {
+        this(key, defaultValue, new IntTransformer());
+    }
+    
+    /**
+     * Gets the current value of this configuration value without unboxing it.
+     * @return the current value
+     */
+    public final int getInt() {
+        return value;
+    }
+    
+    @Override
+    final void onSet(Integer newValue) {
+        value = newValue;
+    }
+    
+}
@@ -0,0 +1,46 @@
+package me.monst.pluginutil.configuration;
+
+import me.monst.pluginutil.configuration.transform.LongTransformer;
+
+/**
+ * A configuration value of type {@code long}, which can be read without unboxing through {@link #getLong()}.
+ * This suits values which are read very often, such as on every event.
+ */
+public class LongConfigurationValue extends ConfigurationValue<Long> {
+    
+    private long value;
+    
+    /**
+     * Creates a new {@code long} configuration value with the given key and default value.
+     * @param key the key of the value
+     * @param defaultValue the default value
+     * @param transformer the transformer used to convert the file data, which may be bounded
+     */
+    public LongConfigurationValue(String key, long defaultValue, LongTransformer transformer) {
+        super(key, defaultValue, transformer);
+        this.value = defaultValue;
+    }
+    
+    /**
+     * Creates a new {@code long} configuration value with the given key and default value, without bounds.
+     * @param key the key of the value
+     * @param defaultValue the default value
+     */
+    public LongConfigurationValue(String key, long defaultValue) {
+        this(key, defaultValue, new LongTransformer());
+    }
+    
+    /**
+     * Gets the current value of this configuration value without unboxing it.
+     * @return the current value
+     */
+    public final long getLong() {
+        return value;
+    }
+    
+    @Override
+    final void onSet(Long newValue) {
+        value = newValue;
+    }
+    
+}
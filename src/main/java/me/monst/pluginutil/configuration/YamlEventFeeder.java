@@ -0,0 +1,284 @@
+package me.monst.pluginutil.configuration;
+
+import me.monst.pluginutil.configuration.transform.CollectionTransformer;
+import me.monst.pluginutil.configuration.transform.MapTransformer;
+import me.monst.pluginutil.configuration.transform.MappingEntries;
+import me.monst.pluginutil.configuration.transform.Transformer;
+import org.yaml.snakeyaml.DumperOptions;
+import org.yaml.snakeyaml.LoaderOptions;
+import org.yaml.snakeyaml.constructor.SafeConstructor;
+import org.yaml.snakeyaml.events.*;
+import org.yaml.snakeyaml.nodes.*;
+import org.yaml.snakeyaml.resolver.Resolver;
+
+import java.util.*;
+
+/**
+ * Feeds a configuration tree straight from a stream of SnakeYAML parser events, without building the object graph
+ * of the whole document first.
+ * <p>
+ * Branches are fed key by key as their mappings are parsed, and keys without a matching child are skipped without
+ * being constructed. Values with a {@link CollectionTransformer} or {@link MapTransformer} are fed their sequence as
+ * a one-shot {@link Iterable}, or their mapping as one-shot {@link MappingEntries}, one element at a time, so only
+ * the converted collection is held in memory, never the raw one.
+ * Every other value is constructed on its own, like SnakeYAML would construct it. Aliases to anchors which were
+ * streamed or skipped resolve to {@code null}.
+ * <p>
+ * Like {@link ConfigurationBranch#feedChanges(Object)}, branches which override {@link ConfigurationNode#feed(Object)}
+ * are fed their whole data through their override, constructed in full.
+ */
+final class YamlEventFeeder {
+    
+    private final Iterator<Event> events;
+    private final Resolver resolver = new Resolver();
+    private final NodeConstructor constructor = new NodeConstructor();
+    private final Map<String, Node> anchors = new HashMap<>();
+    private Event peeked;
+    
+    YamlEventFeeder(Iterable<Event> events) {
+        this.events = events.iterator();
+    }
+    
+    /**
+     * Feeds the first document of the stream to the given node.
+     */
+    void feedDocument(ConfigurationNode root) {
+        ChangeBatch.begin();
+        try {
+            next(); // Stream start
+            if (peek() instanceof DocumentStartEvent) {
+                next();
+                feedNode(root);
+                next(); // Document end
+            } else {
+                root.feed(null); // Empty file
+            }
+        } finally {
+            ChangeBatch.end(); // Listeners are notified once, even if parsing failed halfway
+        }
+    }
+    
+    private void feedNode(ConfigurationNode node) {
+        Event event = peek();
+        if (node instanceof ConfigurationBranch && !((ConfigurationBranch) node).overridesFeed()
+                && event instanceof MappingStartEvent && isUntagged(event))
+            feedBranch((ConfigurationBranch) node);
+        else if (node instanceof ConfigurationValue)
+            feedValue((ConfigurationValue<?>) node);
+        else
+            node.feed(construct());
+    }
+    
+    private void feedBranch(ConfigurationBranch branch) {
+        next(); // Mapping start
+        Set<String> seen = new HashSet<>();
+        while (!(peek() instanceof MappingEndEvent)) {
+            Event key = peek();
+            ConfigurationNode child = null;
+            if (key instanceof ScalarEvent) {
+                next();
+                String name = ((ScalarEvent) key).getValue();
+                seen.add(name);
+                child = branch.getChild(name); // A duplicate key is fed again, so the last one wins like in a map
+            } else {
+                skipNode();
+            }
+            if (child != null)
+                feedNode(child);
+            else
+                skipNode();
+        }
+        next(); // Mapping end
+        branch.getChildren().forEach((key, child) -> {
+            if (!seen.contains(key))
+                child.feed(null);
+        });
+        branch.publishSnapshot();
+    }
+    
+    private void feedValue(ConfigurationValue<?> value) {
+        Event event = peek();
+        Transformer<?> transformer = value.getTransformer();
+        boolean streamable = isUntagged(event) && ((NodeEvent) event).getAnchor() == null;
+        if (streamable && event instanceof SequenceStartEvent && transformer instanceof CollectionTransformer) {
+            StreamedSequence sequence = new StreamedSequence();
+            value.feed(sequence);
+            sequence.skipRemaining();
+            value.forgetLastFed(); // The streamed sequence cannot be compared against later
+        } else if (streamable && event instanceof MappingStartEvent && transformer instanceof MapTransformer) {
+            StreamedMapping mapping = new StreamedMapping();
+            value.feed(mapping);
+            mapping.skipRemaining();
+            value.forgetLastFed();
+        } else {
+            value.feed(construct());
+        }
+    }
+    
+    private Object construct() {
+        return constructor.construct(compose());
+    }
+    
+    private Node compose() {
+        Event event = next();
+        if (event instanceof AliasEvent) {
+            Node node = anchors.get(((AliasEvent) event).getAnchor());
+            return node != null ? node : new ScalarNode(Tag.NULL, "", null, null, DumperOptions.ScalarStyle.PLAIN);
+        }
+        Node node;
+        if (event instanceof ScalarEvent) {
+            ScalarEvent scalar = (ScalarEvent) event;
+            Tag tag = isUntagged(event)
+                    ? resolver.resolve(NodeId.scalar, scalar.getValue(), scalar.getImplicit().canOmitTagInPlainScalar())
+                    : new Tag(scalar.getTag());
+            node = new ScalarNode(tag, scalar.getValue(), scalar.getStartMark(), scalar.getEndMark(),
+                    scalar.getScalarStyle());
+        } else if (event instanceof SequenceStartEvent) {
+            SequenceStartEvent start = (SequenceStartEvent) event;
+            List<Node> elements = new ArrayList<>();
+            while (!(peek() instanceof SequenceEndEvent))
+                elements.add(compose());
+            next();
+            node = new SequenceNode(isUntagged(event) ? Tag.SEQ : new Tag(start.getTag()), elements,
+                    start.getFlowStyle());
+        } else if (event instanceof MappingStartEvent) {
+            MappingStartEvent start = (MappingStartEvent) event;
+            List<NodeTuple> entries = new ArrayList<>();
+            while (!(peek() instanceof MappingEndEvent))
+                entries.add(new NodeTuple(compose(), compose()));
+            next();
+            node = new MappingNode(isUntagged(event) ? Tag.MAP : new Tag(start.getTag()), entries,
+                    start.getFlowStyle());
+        } else {
+            throw new IllegalStateException("Unexpected " + event);
+        }
+        String anchor = ((NodeEvent) event).getAnchor();
+        if (anchor != null)
+            anchors.put(anchor, node);
+        return node;
+    }
+    
+    private void skipNode() {
+        int depth = 0;
+        do {
+            Event event = next();
+            if (event instanceof CollectionStartEvent)
+                depth++;
+            else if (event instanceof CollectionEndEvent)
+                depth--;
+        } while (depth > 0);
+    }
+    
+    private static boolean isUntagged(Event event) {
+        String tag = event instanceof ScalarEvent ? ((ScalarEvent) event).getTag()
+                : event instanceof CollectionStartEvent ? ((CollectionStartEvent) event).getTag() : null;
+        return tag == null || tag.equals("!");
+    }
+    
+    private Event peek() {
+        if (peeked == null)
+            peeked = events.next();
+        return peeked;
+    }
+    
+    private Event next() {
+        Event event = peek();
+        peeked = null;
+        return event;
+    }
+    
+    /**
+     * A sequence which is constructed element by element while it is iterated. It can only be iterated once.
+     */
+    private class StreamedSequence implements Iterable<Object> {
+        
+        private boolean ended;
+        
+        private StreamedSequence() {
+            next(); // Sequence start
+        }
+        
+        @Override
+        public Iterator<Object> iterator() {
+            return new Iterator<Object>() {
+                @Override
+                public boolean hasNext() {
+                    return !ended && !(peek() instanceof SequenceEndEvent);
+                }
+                
+                @Override
+                public Object next() {
+                    if (!hasNext())
+                        throw new NoSuchElementException();
+                    return construct();
+                }
+            };
+        }
+        
+        private void skipRemaining() {
+            if (ended)
+                return;
+            while (!(peek() instanceof SequenceEndEvent))
+                skipNode();
+            YamlEventFeeder.this.next();
+            ended = true;
+        }
+        
+    }
+    
+    /**
+     * A mapping which is constructed entry by entry while it is iterated. It can only be iterated once.
+     */
+    private class StreamedMapping implements MappingEntries {
+        
+        private boolean ended;
+        
+        private StreamedMapping() {
+            next(); // Mapping start
+        }
+        
+        @Override
+        public Iterator<Map.Entry<Object, Object>> iterator() {
+            return new Iterator<Map.Entry<Object, Object>>() {
+                @Override
+                public boolean hasNext() {
+                    return !ended && !(peek() instanceof MappingEndEvent);
+                }
+                
+                @Override
+                public Map.Entry<Object, Object> next() {
+                    if (!hasNext())
+                        throw new NoSuchElementException();
+                    Object key = construct();
+                    return new AbstractMap.SimpleImmutableEntry<>(key, construct());
+                }
+            };
+        }
+        
+        private void skipRemaining() {
+            if (ended)
+                return;
+            while (!(peek() instanceof MappingEndEvent))
+                skipNode();
+            YamlEventFeeder.this.next();
+            ended = true;
+        }
+        
+    }
+    
+    /**
+     * Constructs objects from nodes the same way {@link org.yaml.snakeyaml.Yaml#load} does.
+     */
+    private static class NodeConstructor extends SafeConstructor {
+        
+        private NodeConstructor() {
+            super(new LoaderOptions());
+        }
+        
+        private Object construct(Node node) {
+            return constructDocument(node); // Also clears the constructor's state, so that it does not grow
+        }
+        
+    }
+    
+}
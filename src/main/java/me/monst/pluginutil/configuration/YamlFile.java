@@ -1,26 +1,57 @@
 package me.monst.pluginutil.configuration;
 
+import me.monst.pluginutil.Deferred;
+import me.monst.pluginutil.Promise;
+import org.bukkit.Bukkit;
 import org.bukkit.plugin.Plugin;
 import org.yaml.snakeyaml.DumperOptions;
 import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.error.YAMLException;
 
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.Reader;
-import java.io.Writer;
+import javax.annotation.Nullable;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.*;
+import java.util.function.Consumer;
 
 /**
  * Represents a YAML file.
  * This will automatically copy over the plugin resource of the same name, if it exists, to the target path.
  * The file can be loaded and saved using SnakeYAML.
+ * <p>
+ * The last loaded data is cached, and loading the file again returns a copy of the cached data without parsing it
+ * if the file has not changed since, as determined by its modification time and size, and else by a hash of its
+ * contents.
  */
 public class YamlFile {
     
     private final Plugin plugin;
     private final Path path;
     private final Yaml yaml;
+    private volatile FileTime ownWriteTime;
+    private final Object writeLock = new Object();
+    
+    private final Object saveLock = new Object();
+    private Object pendingData;
+    private Deferred<Void> pendingSave;
+    private boolean writing;
+    
+    private FileTime loadedModifiedTime;
+    private long loadedSize;
+    private byte[] loadedHash;
+    private Object loaded;
+    private long lastParseNanos;
+    private long savedParseNanos;
+    private boolean snapshotCaching;
     
     /**
      * Creates a new YAML file at the given path. If the path does not end with {@code .yml}, it will be appended.
@@ -42,6 +73,18 @@ public class YamlFile {
         this(plugin, plugin.getDataFolder().toPath().resolve(filename));
     }
     
+    /**
+     * Gets the path of this file.
+     * @return the path of this file
+     */
+    public Path getPath() {
+        return path;
+    }
+    
+    Plugin getPlugin() {
+        return plugin;
+    }
+    
     private Yaml createYaml() {
         DumperOptions options = new DumperOptions();
         options.setDefaultFlowStyle(DumperOptions.FlowStyle.BLOCK);
@@ -66,31 +109,333 @@ public class YamlFile {
     }
     
     /**
-     * Loads the file using SnakeYAML.
+     * Loads the file using SnakeYAML. If the file has not changed since it was last loaded, the previously loaded
+     * object is copied instead of parsing the file again. Every call returns its own copy of the maps, lists and
+     * sets, so the returned object may be modified freely; only the scalar values inside are shared.
      * @return the loaded object, or {@code null} if the file could not be loaded
      */
-    public Object load() {
+    public synchronized Object load() {
         if (!Files.exists(path))
             copyDefaultFile();
-        try (Reader in = Files.newBufferedReader(path)) {
-            return yaml.load(in);
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            if (loadedHash != null && attributes.lastModifiedTime().equals(loadedModifiedTime)
+                    && attributes.size() == loadedSize) {
+                savedParseNanos += lastParseNanos;
+                return deepCopy(loaded);
+            }
+            byte[] content = Files.readAllBytes(path);
+            byte[] hash = hash(content);
+            if (!MessageDigest.isEqual(hash, loadedHash)) {
+                long start = System.nanoTime();
+                loaded = snapshotCaching ? loadThroughSnapshot(content, hash) : parse(content);
+                lastParseNanos = System.nanoTime() - start;
+                loadedHash = hash;
+            } else { // Touched, but not changed
+                savedParseNanos += lastParseNanos;
+            }
+            loadedModifiedTime = attributes.lastModifiedTime();
+            loadedSize = attributes.size();
+            return deepCopy(loaded);
         } catch (IOException e) {
             plugin.getLogger().severe("Failed to load " + path.getFileName() + "!");
         }
         return null;
     }
     
+    /**
+     * Loads the file and feeds it to the given configuration tree while it is being parsed, without building the
+     * data of the whole file in memory first. Values with a
+     * {@link me.monst.pluginutil.configuration.transform.CollectionTransformer} or
+     * {@link me.monst.pluginutil.configuration.transform.MapTransformer} are converted element by element, and keys
+     * without a matching node are skipped without being constructed, so that very large data files can be loaded
+     * with bounded memory use.
+     * <p>
+     * This bypasses the cache of {@link #load()}, and always parses the file. Aliases only resolve to anchored
+     * data which was not streamed or skipped; other aliases are fed as {@code null}.
+     * If the file cannot be read or parsed, the tree is fed as far as the file could be parsed.
+     * @param root the root of the configuration tree to feed
+     */
+    public void feedStreaming(ConfigurationNode root) {
+        if (!Files.exists(path))
+            copyDefaultFile();
+        try (Reader reader = new InputStreamReader(new BufferedInputStream(Files.newInputStream(path)),
+                StandardCharsets.UTF_8)) {
+            new YamlEventFeeder(yaml.parse(reader)).feedDocument(root); // The parser has no state shared with yaml
+        } catch (IOException | YAMLException e) {
+            plugin.getLogger().severe("Failed to load " + path.getFileName() + "!");
+        }
+    }
+    
+    /**
+     * Enables or disables the binary snapshot cache of this file. When enabled, the parsed data is also stored in a
+     * compact binary file next to the YAML file, and loaded from there instead of parsing the YAML, for as long as
+     * the YAML file's contents do not change. This speeds up loading large files, especially at startup.
+     * @param enabled whether to cache the parsed data in a binary snapshot
+     */
+    public synchronized void setSnapshotCaching(boolean enabled) {
+        this.snapshotCaching = enabled;
+    }
+    
+    private Object parse(byte[] content) {
+        return yaml.load(new InputStreamReader(new ByteArrayInputStream(content), StandardCharsets.UTF_8));
+    }
+    
+    private Object loadThroughSnapshot(byte[] content, byte[] hash) {
+        Path snapshot = path.resolveSibling("." + path.getFileName() + ".snapshot");
+        try {
+            Object data = YamlSnapshot.read(snapshot, hash);
+            if (data != YamlSnapshot.MISSING)
+                return data;
+        } catch (IOException | RuntimeException e) {
+            plugin.getLogger().warning("Ignoring unreadable snapshot of " + path.getFileName() + ".");
+        }
+        Object data = parse(content);
+        try {
+            YamlSnapshot.write(snapshot, hash, data);
+        } catch (IOException | IllegalArgumentException e) {
+            plugin.getLogger().warning("Failed to write snapshot of " + path.getFileName() + ": " + e.getMessage());
+        }
+        return data;
+    }
+    
+    /**
+     * Gets the total time saved by returning previously loaded data instead of parsing an unchanged file,
+     * estimated from the time the last parse took.
+     * @return the saved parse time in nanoseconds
+     */
+    public synchronized long getSavedParseNanos() {
+        return savedParseNanos;
+    }
+    
+    private static byte[] hash(byte[] content) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(content);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // Every Java platform is required to support SHA-256
+        }
+    }
+    
     /**
      * Saves the given object to the file using SnakeYAML.
+     * The data is written to a temporary file first, which then replaces the file, so that the file is never
+     * left half-written.
+     * <p>
+     * This supersedes any {@link #saveAsync(Object)} which has not been written yet, whose promise is settled once
+     * this save has been written, and waits for an async save which is being written to finish first.
      * @param object the object to save
      */
     public void save(Object object) {
-        try (Writer out = Files.newBufferedWriter(path)) {
-            Files.createDirectories(path.getParent());
-            yaml.dump(object, out);
+        try {
+            saveNow(object);
         } catch (IOException e) {
             plugin.getLogger().severe("Failed to save changes to " + path.getFileName() + "!");
         }
     }
     
+    private void saveNow(Object object) throws IOException {
+        synchronized (writeLock) {
+            Deferred<Void> superseded;
+            synchronized (saveLock) {
+                superseded = pendingSave;
+                pendingData = null;
+                pendingSave = null;
+            }
+            write(object, superseded);
+        }
+    }
+    
+    /**
+     * Saves the given object to the file on an async thread.
+     * The object is copied on the calling thread, so it may be modified as soon as this method returns.
+     * If the file is saved again before an earlier save has been written, the earlier data is skipped, and only
+     * the latest data is written; all such saves share one promise.
+     * <p>
+     * Bukkit cancels the async tasks of a disabled plugin, so call {@link #flush()} when the plugin is disabled.
+     * Once the plugin is disabled, the data is written on the calling thread instead.
+     * @param object the object to save, typically a tree of maps, lists and scalar values
+     * @return a promise which is fulfilled once the data, or data saved after it, has been written
+     */
+    public Promise<Void> saveAsync(Object object) {
+        Object snapshot = deepCopy(object);
+        if (!plugin.isEnabled()) {
+            return Promise.sync(() -> {
+                try {
+                    saveNow(snapshot);
+                } catch (IOException | RuntimeException e) {
+                    plugin.getLogger().severe("Failed to save changes to " + path.getFileName() + "!");
+                    throw e;
+                }
+                return null;
+            });
+        }
+        synchronized (saveLock) {
+            pendingData = snapshot;
+            if (pendingSave == null) {
+                pendingSave = new Deferred<>(plugin);
+                if (!writing) {
+                    writing = true;
+                    Bukkit.getScheduler().runTaskAsynchronously(plugin, this::writePendingSaves);
+                }
+            }
+            return pendingSave;
+        }
+    }
+    
+    /**
+     * Writes the data of an {@link #saveAsync(Object)} which has not been written yet on the calling thread, and
+     * waits for an async save which is being written to finish. Call this when the plugin is disabled, so that the
+     * last changes are not lost when Bukkit cancels the async tasks of the plugin.
+     */
+    public void flush() {
+        synchronized (writeLock) {
+            Object data;
+            Deferred<Void> save;
+            synchronized (saveLock) {
+                data = pendingData;
+                save = pendingSave;
+                pendingData = null;
+                pendingSave = null;
+                writing = false; // In case the async writer was cancelled before it ran
+            }
+            if (save == null)
+                return;
+            try {
+                write(data, save);
+            } catch (IOException | RuntimeException e) {
+                plugin.getLogger().severe("Failed to save changes to " + path.getFileName() + "!");
+            }
+        }
+    }
+    
+    private void writePendingSaves() {
+        while (true) {
+            // The pending save is taken while holding the write lock, so that a synchronous save or flush either
+            // supersedes it or waits until it has been written, and never writes before it
+            synchronized (writeLock) {
+                Object data;
+                Deferred<Void> save;
+                synchronized (saveLock) {
+                    if (pendingSave == null) {
+                        writing = false;
+                        return;
+                    }
+                    data = pendingData;
+                    save = pendingSave;
+                    pendingData = null;
+                    pendingSave = null;
+                }
+                try {
+                    write(data, save);
+                } catch (IOException | RuntimeException e) {
+                    plugin.getLogger().severe("Failed to save changes to " + path.getFileName() + "!");
+                }
+            }
+        }
+    }
+    
+    /**
+     * Writes the given object and settles the promise of the saves it covers, if any.
+     */
+    private void write(Object object, @Nullable Deferred<Void> save) throws IOException {
+        try {
+            write(dump(object));
+        } catch (IOException | RuntimeException e) {
+            if (save != null)
+                save.reject(e);
+            throw e;
+        }
+        if (save != null)
+            save.resolve(null);
+    }
+    
+    private synchronized String dump(Object object) {
+        return yaml.dump(object); // The Yaml instance is not thread-safe
+    }
+    
+    private void write(String data) throws IOException {
+        synchronized (writeLock) {
+            if (path.getParent() != null)
+                Files.createDirectories(path.getParent());
+            Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+            Files.write(temp, data.getBytes(StandardCharsets.UTF_8));
+            try {
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+            ownWriteTime = Files.getLastModifiedTime(path);
+        }
+    }
+    
+    private static Object deepCopy(Object object) {
+        if (object instanceof Map) {
+            Map<Object, Object> copy = new LinkedHashMap<>();
+            ((Map<?, ?>) object).forEach((key, value) -> copy.put(key, deepCopy(value)));
+            return copy;
+        }
+        if (object instanceof Set) {
+            Set<Object> copy = new LinkedHashSet<>();
+            ((Set<?>) object).forEach(element -> copy.add(deepCopy(element)));
+            return copy;
+        }
+        if (object instanceof Collection) {
+            List<Object> copy = new ArrayList<>();
+            ((Collection<?>) object).forEach(element -> copy.add(deepCopy(element)));
+            return copy;
+        }
+        return object;
+    }
+    
+    /**
+     * Watches this file for external changes, with a debounce period of half a second.
+     * @param listener the listener to hand the newly loaded data to
+     * @see #watch(Duration, Consumer)
+     */
+    public void watch(Consumer<Object> listener) {
+        watch(Duration.ofMillis(500), listener);
+    }
+    
+    /**
+     * Watches this file for external changes. When the file is changed by another program, such as a text editor,
+     * it is loaded again on a background thread, and the loaded data is handed to the listener on the main thread,
+     * typically to feed it to the configuration tree. Changes made by {@link #save(Object)} are ignored.
+     * Own writes are recognized by the modification time they left on the file, so an external edit which lands
+     * within the same modification time tick as a save, and is not followed by another change, is ignored as well.
+     * If a changed file cannot be parsed, the error is logged and the listener is not called until the next change.
+     * <p>
+     * Bursts of changes are debounced: the file is only loaded once it has not changed for the debounce period.
+     * All watched files of a plugin share a single watcher thread, which stops when the plugin is disabled.
+     * @param debounce how long the file must go unchanged before it is loaded
+     * @param listener the listener to hand the newly loaded data to
+     */
+    public void watch(Duration debounce, Consumer<Object> listener) {
+        try {
+            YamlFileWatcher.watch(this, debounce, listener);
+        } catch (IOException e) {
+            plugin.getLogger().severe("Failed to watch " + path.getFileName() + " for changes!");
+        }
+    }
+    
+    /**
+     * Stops watching this file for external changes.
+     */
+    public void unwatch() {
+        YamlFileWatcher.unwatch(this);
+    }
+    
+    /**
+     * Checks whether the file was last written by this object, by comparing its modification time with the one
+     * it had right after the last write. The granularity of modification times depends on the file system, and
+     * can be as coarse as a second or two, so an external write in the same tick is mistaken for an own write.
+     * @return true if the file was last written by {@link #save(Object)} or {@link #saveAsync(Object)}
+     */
+    boolean isOwnWrite() {
+        try {
+            return Files.getLastModifiedTime(path).equals(ownWriteTime);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+    
 }
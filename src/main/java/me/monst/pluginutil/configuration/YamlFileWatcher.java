@@ -0,0 +1,149 @@
+package me.monst.pluginutil.configuration;
+
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.Plugin;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+
+/**
+ * Watches the YAML files of a plugin for external changes, on a single thread shared by all of the plugin's files.
+ * Bursts of changes to a file are debounced, the file is parsed on the watcher thread, and the parsed data is
+ * handed to the file's listener on the main thread.
+ */
+final class YamlFileWatcher implements Runnable {
+    
+    private static final Map<Plugin, YamlFileWatcher> WATCHERS = new HashMap<>();
+    private static final long IDLE_POLL_MILLIS = 1000;
+    
+    private final Plugin plugin;
+    private final WatchService watchService;
+    private final Map<Path, Watch> watches = new ConcurrentHashMap<>();
+    private final Set<Path> directories = new HashSet<>();
+    
+    private YamlFileWatcher(Plugin plugin) throws IOException {
+        this.plugin = plugin;
+        this.watchService = FileSystems.getDefault().newWatchService();
+        Thread thread = new Thread(this, plugin.getName() + " Config Watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+    
+    static synchronized void watch(YamlFile file, Duration debounce, Consumer<Object> listener) throws IOException {
+        YamlFileWatcher watcher = WATCHERS.get(file.getPlugin());
+        if (watcher == null) {
+            watcher = new YamlFileWatcher(file.getPlugin());
+            WATCHERS.put(file.getPlugin(), watcher);
+        }
+        Path path = file.getPath().toAbsolutePath().normalize();
+        Path directory = path.getParent();
+        if (watcher.directories.add(directory)) {
+            try {
+                directory.register(watcher.watchService,
+                        StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            } catch (IOException e) {
+                watcher.directories.remove(directory);
+                throw e;
+            }
+        }
+        watcher.watches.put(path, new Watch(file, debounce.toNanos(), listener));
+    }
+    
+    static synchronized void unwatch(YamlFile file) {
+        YamlFileWatcher watcher = WATCHERS.get(file.getPlugin());
+        if (watcher == null)
+            return;
+        watcher.watches.remove(file.getPath().toAbsolutePath().normalize());
+        if (watcher.watches.isEmpty())
+            watcher.close();
+    }
+    
+    @Override
+    public void run() {
+        try {
+            while (plugin.isEnabled()) {
+                WatchKey key = watchService.poll(millisUntilNextDeadline(), TimeUnit.MILLISECONDS);
+                if (key != null) {
+                    Path directory = (Path) key.watchable();
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW)
+                            continue;
+                        Watch watch = watches.get(directory.resolve((Path) event.context()));
+                        if (watch != null) // Every further change within the debounce period postpones the reload
+                            watch.deadline = System.nanoTime() + watch.debounceNanos;
+                    }
+                    key.reset();
+                }
+                fireDueWatches();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            return; // Closed because the last file was unwatched
+        }
+        synchronized (YamlFileWatcher.class) {
+            close();
+        }
+    }
+    
+    private long millisUntilNextDeadline() {
+        long now = System.nanoTime();
+        long wait = IDLE_POLL_MILLIS;
+        for (Watch watch : watches.values()) {
+            if (watch.deadline != 0)
+                wait = Math.min(wait, TimeUnit.NANOSECONDS.toMillis(watch.deadline - now) + 1);
+        }
+        return Math.max(1, wait);
+    }
+    
+    private void fireDueWatches() {
+        long now = System.nanoTime();
+        for (Watch watch : watches.values()) {
+            if (watch.deadline == 0 || watch.deadline - now > 0)
+                continue;
+            watch.deadline = 0;
+            if (!Files.exists(watch.file.getPath()) || watch.file.isOwnWrite())
+                continue;
+            Object data;
+            try {
+                data = watch.file.load();
+            } catch (RuntimeException e) { // Such as a YAMLException, which must not stop watching the other files
+                plugin.getLogger().log(Level.SEVERE, "Failed to reload " + watch.file.getPath().getFileName() + "!", e);
+                continue;
+            }
+            if (data != null && plugin.isEnabled())
+                Bukkit.getScheduler().runTask(plugin, () -> watch.listener.accept(data));
+        }
+    }
+    
+    private void close() {
+        if (WATCHERS.get(plugin) == this)
+            WATCHERS.remove(plugin);
+        try {
+            watchService.close();
+        } catch (IOException ignored) {}
+    }
+    
+    private static class Watch {
+        
+        private final YamlFile file;
+        private final long debounceNanos;
+        private final Consumer<Object> listener;
+        private volatile long deadline; // 0 if no change is pending
+        
+        private Watch(YamlFile file, long debounceNanos, Consumer<Object> listener) {
+            this.file = file;
+            this.debounceNanos = debounceNanos;
+            this.listener = listener;
+        }
+        
+    }
+    
+}
@@ -0,0 +1,209 @@
+package me.monst.pluginutil.configuration;
+
+import java.io.*;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+/**
+ * A compact binary encoding of parsed YAML data, which can be read much faster than the YAML itself.
+ * The snapshot records the hash of the YAML it was parsed from, and is only used while that hash still matches.
+ * <p>
+ * Only the types SnakeYAML produces by default are supported: maps, lists, sets, strings, booleans, integers,
+ * floating point numbers, timestamps and binary data.
+ * <p>
+ * A snapshot is only a cache, so a corrupt one must fail to read with an {@link IOException} rather than run the
+ * server out of memory. Sizes in the file are therefore checked against the number of bytes left in it before
+ * anything is allocated, and nesting is limited to {@value #MAX_DEPTH} levels, well above what SnakeYAML parses.
+ */
+final class YamlSnapshot {
+    
+    /** Returned by {@link #read(Path, byte[])} if there is no usable snapshot, since {@code null} is valid data. */
+    static final Object MISSING = new Object();
+    
+    private static final int MAGIC = 0x50555953;
+    private static final int VERSION = 1;
+    
+    private static final int NULL = 0;
+    private static final int FALSE = 1;
+    private static final int TRUE = 2;
+    private static final int INTEGER = 3;
+    private static final int LONG = 4;
+    private static final int BIG_INTEGER = 5;
+    private static final int DOUBLE = 6;
+    private static final int STRING = 7;
+    private static final int MAP = 8;
+    private static final int LIST = 9;
+    private static final int SET = 10;
+    private static final int DATE = 11;
+    private static final int BINARY = 12;
+    
+    private static final int MAX_DEPTH = 512;
+    
+    private YamlSnapshot() {}
+    
+    /**
+     * Reads the snapshot file, if it was made from YAML with the given hash.
+     * @return the data, or {@link #MISSING} if the file does not exist or was made from different YAML
+     */
+    static Object read(Path file, byte[] hash) throws IOException {
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(file);
+        } catch (NoSuchFileException e) {
+            return MISSING;
+        }
+        // Read from memory, where available() is exactly the number of bytes left to bound sizes with
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        if (in.readInt() != MAGIC || in.readUnsignedByte() != VERSION)
+            return MISSING;
+        byte[] snapshotHash = new byte[in.readUnsignedByte()];
+        in.readFully(snapshotHash);
+        if (!Arrays.equals(snapshotHash, hash))
+            return MISSING;
+        return readValue(in, 0);
+    }
+    
+    /**
+     * Writes a snapshot of the data, made from YAML with the given hash, replacing any previous snapshot.
+     * @throws IllegalArgumentException if the data contains a type which is not supported
+     */
+    static void write(Path file, byte[] hash, Object data) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeByte(hash.length);
+        out.write(hash);
+        writeValue(out, data); // Encoded fully before the file is touched, in case of an unsupported type
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.write(temp, bytes.toByteArray());
+        try {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+    
+    private static void writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (value instanceof Boolean) {
+            out.writeByte((Boolean) value ? TRUE : FALSE);
+        } else if (value instanceof Integer) {
+            out.writeByte(INTEGER);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            out.writeByte(LONG);
+            out.writeLong((Long) value);
+        } else if (value instanceof BigInteger) {
+            out.writeByte(BIG_INTEGER);
+            writeBytes(out, ((BigInteger) value).toByteArray());
+        } else if (value instanceof Double) {
+            out.writeByte(DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (value instanceof String) {
+            out.writeByte(STRING);
+            writeBytes(out, ((String) value).getBytes(StandardCharsets.UTF_8));
+        } else if (value instanceof Map) {
+            out.writeByte(MAP);
+            out.writeInt(((Map<?, ?>) value).size());
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                writeValue(out, entry.getKey());
+                writeValue(out, entry.getValue());
+            }
+        } else if (value instanceof List || value instanceof Set) {
+            out.writeByte(value instanceof List ? LIST : SET);
+            out.writeInt(((Collection<?>) value).size());
+            for (Object element : (Collection<?>) value)
+                writeValue(out, element);
+        } else if (value instanceof Date) {
+            out.writeByte(DATE);
+            out.writeLong(((Date) value).getTime());
+        } else if (value instanceof byte[]) {
+            out.writeByte(BINARY);
+            writeBytes(out, (byte[]) value);
+        } else {
+            throw new IllegalArgumentException("Cannot snapshot " + value.getClass().getName());
+        }
+    }
+    
+    private static Object readValue(DataInputStream in, int depth) throws IOException {
+        if (depth > MAX_DEPTH)
+            throw new IOException("Nested too deeply");
+        int tag = in.readUnsignedByte();
+        switch (tag) {
+            case NULL:
+                return null;
+            case FALSE:
+                return false;
+            case TRUE:
+                return true;
+            case INTEGER:
+                return in.readInt();
+            case LONG:
+                return in.readLong();
+            case BIG_INTEGER: {
+                byte[] magnitude = readBytes(in);
+                if (magnitude.length == 0)
+                    throw new IOException("Empty big integer");
+                return new BigInteger(magnitude);
+            }
+            case DOUBLE:
+                return in.readDouble();
+            case STRING:
+                return new String(readBytes(in), StandardCharsets.UTF_8);
+            case MAP: {
+                int size = readSize(in, 2); // A key and a value take at least one byte each
+                Map<Object, Object> map = new LinkedHashMap<>();
+                for (int i = 0; i < size; i++)
+                    map.put(readValue(in, depth + 1), readValue(in, depth + 1));
+                return map;
+            }
+            case LIST:
+            case SET: {
+                int size = readSize(in, 1);
+                Collection<Object> collection = tag == LIST ? new ArrayList<>() : new LinkedHashSet<>();
+                for (int i = 0; i < size; i++)
+                    collection.add(readValue(in, depth + 1));
+                return collection;
+            }
+            case DATE:
+                return new Date(in.readLong());
+            case BINARY:
+                return readBytes(in);
+            default:
+                throw new IOException("Unknown tag " + tag);
+        }
+    }
+    
+    /**
+     * Reads the size of a collection or byte array, which must fit in the rest of the snapshot.
+     * @param minBytes the fewest bytes each element can be encoded in
+     */
+    private static int readSize(DataInputStream in, int minBytes) throws IOException {
+        int size = in.readInt();
+        if (size < 0)
+            throw new IOException("Negative size " + size);
+        if (size > in.available() / minBytes)
+            throw new IOException("Size " + size + " exceeds the rest of the snapshot");
+        return size;
+    }
+    
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+    
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[readSize(in, 1)];
+        in.readFully(bytes);
+        return bytes;
+    }
+    
+}
@@ -0,0 +1,59 @@
+package me.monst.pluginutil.configuration.transform;
+
+import me.monst.pluginutil.configuration.exception.ArgumentParseException;
+import me.monst.pluginutil.configuration.exception.UnreadableValueException;
+
+/**
+ * A transformer of {@code boolean} values, which parses and converts them without boxing.
+ * The boxed methods of {@link Transformer} delegate to the primitive ones.
+ */
+public class BooleanTransformer implements Transformer<Boolean> {
+    
+    /**
+     * Parses a string into a {@code boolean}, accepting {@code true} and {@code false} in any case.
+     * @param input the input string
+     * @return the parsed value
+     * @throws ArgumentParseException if the input is neither true nor false
+     */
+    public boolean parseBoolean(String input) throws ArgumentParseException {
+        String trimmed = input.trim();
+        if (trimmed.equalsIgnoreCase("true"))
+            return true;
+        if (trimmed.equalsIgnoreCase("false"))
+            return false;
+        throw new ArgumentParseException("'" + input + "' is not true or false.");
+    }
+    
+    /**
+     * Converts YAML data into a {@code boolean}, reading YAML booleans directly instead of through their string form.
+     * @param object the YAML data
+     * @return the converted value
+     * @throws UnreadableValueException if the value is neither true nor false
+     */
+    public boolean convertBoolean(Object object) throws UnreadableValueException {
+        if (object instanceof Boolean)
+            return (Boolean) object;
+        return parseBoolean(String.valueOf(object));
+    }
+    
+    @Override
+    public Boolean parse(String input) throws ArgumentParseException {
+        return parseBoolean(input);
+    }
+    
+    @Override
+    public Boolean convert(Object object) throws UnreadableValueException {
+        return convertBoolean(object);
+    }
+    
+    /**
+     * Stores the value as a YAML boolean rather than a string.
+     * @param value the value to convert
+     * @return the value itself
+     */
+    @Override
+    public Object toYaml(Boolean value) {
+        return value;
+    }
+    
+}
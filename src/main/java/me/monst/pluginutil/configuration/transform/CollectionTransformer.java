@@ -5,7 +5,6 @@ import me.monst.pluginutil.configuration.exception.UnreadableValueException;
 import me.monst.pluginutil.configuration.exception.ValueOutOfBoundsException;
 
 import java.util.Collection;
-import java.util.List;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
@@ -39,7 +38,8 @@ public class CollectionTransformer<T, C extends Collection<T>> implements Transf
     }
     
     /**
-     * Converts a YAML object into a collection of values. This expects the YAML object to be a list of values.
+     * Converts a YAML object into a collection of values. This expects the YAML object to be a list of values,
+     * or any other iterable, which is iterated only once.
      * If any of the values could not be converted, a {@link ValueOutOfBoundsException} is thrown with the collection
      * of values that could be converted.
      * If any values are out of bounds, they are replaced with the closest valid value, and a
@@ -51,11 +51,11 @@ public class CollectionTransformer<T, C extends Collection<T>> implements Transf
      */
     @Override
     public C convert(Object object) throws ValueOutOfBoundsException, UnreadableValueException {
-        if (!(object instanceof List))
+        if (!(object instanceof Iterable))
             throw new UnreadableValueException();
         boolean problemFound = false;
         C collection = collectionFactory.get();
-        for (Object element : (List<?>) object) {
+        for (Object element : (Iterable<?>) object) {
             try {
                 T value = transformer.convert(element);
                 if (collection.add(value))
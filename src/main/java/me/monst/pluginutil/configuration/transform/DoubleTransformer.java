@@ -0,0 +1,94 @@
+package me.monst.pluginutil.configuration.transform;
+
+import me.monst.pluginutil.configuration.exception.ArgumentParseException;
+import me.monst.pluginutil.configuration.exception.UnreadableValueException;
+import me.monst.pluginutil.configuration.exception.ValueOutOfBoundsException;
+import me.monst.pluginutil.configuration.validation.DoubleBound;
+
+/**
+ * A transformer of {@code double} values, which parses, converts and bounds them without boxing.
+ * The boxed methods of {@link Transformer} delegate to the primitive ones.
+ */
+public class DoubleTransformer implements Transformer<Double> {
+    
+    private final DoubleBound bound;
+    
+    /**
+     * Creates a new, unbounded {@code double} transformer.
+     */
+    public DoubleTransformer() {
+        this(DoubleBound.none());
+    }
+    
+    private DoubleTransformer(DoubleBound bound) {
+        this.bound = bound;
+    }
+    
+    /**
+     * Returns a transformer which also applies the given bound, without boxing.
+     * @param next the bound to apply after the bounds of this transformer
+     * @return the bounded transformer
+     */
+    public DoubleTransformer boundedDouble(DoubleBound next) {
+        return new DoubleTransformer(bound.and(next));
+    }
+    
+    /**
+     * Parses a string into a {@code double}, replacing it if it is out of bounds.
+     * @param input the input string
+     * @return the parsed and validated value
+     * @throws ArgumentParseException if the input is not a number, including {@code NaN}
+     */
+    public double parseDouble(String input) throws ArgumentParseException {
+        return bound.replace(parseDoubleUnbounded(input));
+    }
+    
+    /**
+     * Converts YAML data into a {@code double}, reading numbers directly instead of through their string form.
+     * @param object the YAML data
+     * @return the converted value
+     * @throws ValueOutOfBoundsException if the value is out of bounds
+     * @throws UnreadableValueException if the value is not a number, including {@code NaN}
+     */
+    public double convertDouble(Object object) throws ValueOutOfBoundsException, UnreadableValueException {
+        double value;
+        if (object instanceof Number)
+            value = ((Number) object).doubleValue();
+        else
+            value = parseDoubleUnbounded(String.valueOf(object));
+        if (Double.isNaN(value)) // NaN is neither below nor above any bound, so it would pass them all
+            throw new UnreadableValueException("'" + object + "' is not a number.");
+        bound.validate(value);
+        return value;
+    }
+    
+    private static double parseDoubleUnbounded(String input) throws ArgumentParseException {
+        try {
+            double value = Double.parseDouble(input.trim());
+            if (!Double.isNaN(value))
+                return value;
+        } catch (NumberFormatException ignored) {}
+        throw new ArgumentParseException("'" + input + "' is not a number.");
+    }
+    
+    @Override
+    public Double parse(String input) throws ArgumentParseException {
+        return parseDouble(input);
+    }
+    
+    @Override
+    public Double convert(Object object) throws ValueOutOfBoundsException, UnreadableValueException {
+        return convertDouble(object);
+    }
+    
+    /**
+     * Stores the value as a YAML number rather than a string.
+     * @param value the value to convert
+     * @return the value itself
+     */
+    @Override
+    public Object toYaml(Double value) {
+        return value;
+    }
+    
+}
@@ -0,0 +1,98 @@
+package me.monst.pluginutil.configuration.transform;
+
+import me.monst.pluginutil.configuration.exception.ArgumentParseException;
+import me.monst.pluginutil.configuration.exception.UnreadableValueException;
+import me.monst.pluginutil.configuration.exception.ValueOutOfBoundsException;
+import me.monst.pluginutil.configuration.validation.IntBound;
+
+/**
+ * A transformer of {@code int} values, which parses, converts and bounds them without boxing.
+ * The boxed methods of {@link Transformer} delegate to the primitive ones.
+ */
+public class IntTransformer implements Transformer<Integer> {
+    
+    private final IntBound bound;
+    
+    /**
+     * Creates a new, unbounded {@code int} transformer.
+     */
+    public IntTransformer() {
+        this(IntBound.none());
+    }
+    
+    private IntTransformer(IntBound bound) {
+        this.bound = bound;
+    }
+    
+    /**
+     * Returns a transformer which also applies the given bound, without boxing.
+     * @param next the bound to apply after the bounds of this transformer
+     * @return the bounded transformer
+     */
+    public IntTransformer boundedInt(IntBound next) {
+        return new IntTransformer(bound.and(next));
+    }
+    
+    /**
+     * Parses a string into an {@code int}, replacing it if it is out of bounds.
+     * @param input the input string
+     * @return the parsed and validated value
+     * @throws ArgumentParseException if the input is not an integer
+     */
+    public int parseInt(String input) throws ArgumentParseException {
+        return bound.replace(parseIntUnbounded(input));
+    }
+    
+    /**
+     * Converts YAML data into an {@code int}, reading numbers directly instead of through their string form.
+     * Numbers of any type are accepted if they are integral and within the range of an {@code int}.
+     * @param object the YAML data
+     * @return the converted value
+     * @throws ValueOutOfBoundsException if the value is out of bounds
+     * @throws UnreadableValueException if the value is not an integer
+     */
+    public int convertInt(Object object) throws ValueOutOfBoundsException, UnreadableValueException {
+        int value;
+        if (object instanceof Integer) {
+            value = (Integer) object;
+        } else if (object instanceof Number) {
+            long wide = LongTransformer.exactLong((Number) object);
+            if (wide < Integer.MIN_VALUE || wide > Integer.MAX_VALUE)
+                throw new UnreadableValueException("'" + object + "' is not an integer within range.");
+            value = (int) wide;
+        } else {
+            value = parseIntUnbounded(String.valueOf(object));
+        }
+        bound.validate(value);
+        return value;
+    }
+    
+    private static int parseIntUnbounded(String input) throws ArgumentParseException {
+        try {
+            return Integer.parseInt(input.trim());
+        } catch (NumberFormatException e) {
+            throw new ArgumentParseException("'" + input + "' is not an integer.");
+        }
+    }
+    
+    @Override
+    public Integer parse(String input) throws ArgumentParseException {
+        return parseInt(input);
+    }
+    
+    @Override
+    public Integer convert(Object object) throws ValueOutOfBoundsException, UnreadableValueException {
+        return convertInt(object);
+    }
+    
+    /**
+     * Stores the value as a YAML number rather than a string.
+     * @param value the value to convert
+     * @return the value itself
+     */
+    @Override
+    public Object toYaml(Integer value) {
+        return value;
+    }
+    
+}
@@ -0,0 +1,112 @@
+package me.monst.pluginutil.configuration.transform;
+
+import me.monst.pluginutil.configuration.exception.ArgumentParseException;
+import me.monst.pluginutil.configuration.exception.UnreadableValueException;
+import me.monst.pluginutil.configuration.exception.ValueOutOfBoundsException;
+import me.monst.pluginutil.configuration.validation.LongBound;
+
+import java.math.BigInteger;
+
+/**
+ * A transformer of {@code long} values, which parses, converts and bounds them without boxing.
+ * The boxed methods of {@link Transformer} delegate to the primitive ones.
+ */
+public class LongTransformer implements Transformer<Long> {
+    
+    private final LongBound bound;
+    
+    /**
+     * Creates a new, unbounded {@code long} transformer.
+     */
+    public LongTransformer() {
+        this(LongBound.none());
+    }
+    
+    private LongTransformer(LongBound bound) {
+        this.bound = bound;
+    }
+    
+    /**
+     * Returns a transformer which also applies the given bound, without boxing.
+     * @param next the bound to apply after the bounds of this transformer
+     * @return the bounded transformer
+     */
+    public LongTransformer boundedLong(LongBound next) {
+        return new LongTransformer(bound.and(next));
+    }
+    
+    /**
+     * Parses a string into a {@code long}, replacing it if it is out of bounds.
+     * @param input the input string
+     * @return the parsed and validated value
+     * @throws ArgumentParseException if the input is not an integer
+     */
+    public long parseLong(String input) throws ArgumentParseException {
+        return bound.replace(parseLongUnbounded(input));
+    }
+    
+    /**
+     * Converts YAML data into a {@code long}, reading numbers directly instead of through their string form.
+     * Numbers of any type are accepted if they are integral and within the range of a {@code long}.
+     * @param object the YAML data
+     * @return the converted value
+     * @throws ValueOutOfBoundsException if the value is out of bounds
+     * @throws UnreadableValueException if the value is not an integer
+     */
+    public long convertLong(Object object) throws ValueOutOfBoundsException, UnreadableValueException {
+        long value;
+        if (object instanceof Number)
+            value = exactLong((Number) object);
+        else
+            value = parseLongUnbounded(String.valueOf(object));
+        bound.validate(value);
+        return value;
+    }
+    
+    /**
+     * Widens a number to a {@code long}, if it is integral and within range.
+     * @throws UnreadableValueException if the number has a fraction or does not fit in a {@code long}
+     */
+    static long exactLong(Number number) throws UnreadableValueException {
+        if (number instanceof Long || number instanceof Integer || number instanceof Short || number instanceof Byte)
+            return number.longValue();
+        if (number instanceof BigInteger) {
+            if (((BigInteger) number).bitLength() < Long.SIZE)
+                return number.longValue();
+        } else {
+            double value = number.doubleValue();
+            if (value == Math.rint(value) && value >= -0x1p63 && value < 0x1p63)
+                return (long) value;
+        }
+        throw new UnreadableValueException("'" + number + "' is not an integer within range.");
+    }
+    
+    private static long parseLongUnbounded(String input) throws ArgumentParseException {
+        try {
+            return Long.parseLong(input.trim());
+        } catch (NumberFormatException e) {
+            throw new ArgumentParseException("'" + input + "' is not an integer.");
+        }
+    }
+    
+    @Override
+    public Long parse(String input) throws ArgumentParseException {
+        return parseLong(input);
+    }
+    
+    @Override
+    public Long convert(Object object) throws ValueOutOfBoundsException, UnreadableValueException {
+        return convertLong(object);
+    }
+    
+    /**
+     * Stores the value as a YAML number rather than a string.
+     * @param value the value to convert
+     * @return the value itself
+     */
+    @Override
+    public Object toYaml(Long value) {
+        return value;
+    }
+    
+}
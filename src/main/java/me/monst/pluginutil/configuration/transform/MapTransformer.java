@@ -56,7 +56,8 @@ public class MapTransformer<K, V> implements Transformer<Map<K, V>> {
     }
     
     /**
-     * Converts the YAML data to a map of keys and values. This expects the YAML data to be a map.
+     * Converts the YAML data to a map of keys and values. This expects the YAML data to be a map, or
+     * {@link MappingEntries}, which are iterated only once.
      * @param object the YAML data
      * @return the map of keys and values
      * @throws ValueOutOfBoundsException if a value is out of bounds
@@ -64,11 +65,16 @@ public class MapTransformer<K, V> implements Transformer<Map<K, V>> {
      */
     @Override
     public Map<K, V> convert(Object object) throws ValueOutOfBoundsException, UnreadableValueException {
-        if (!(object instanceof Map))
+        Iterable<? extends Map.Entry<?, ?>> entries;
+        if (object instanceof Map)
+            entries = ((Map<?, ?>) object).entrySet();
+        else if (object instanceof MappingEntries)
+            entries = (MappingEntries) object;
+        else
             throw new UnreadableValueException();
         boolean problemFound = false;
         Map<K, V> map = mapFactory.get();
-        for (Map.Entry<?, ?> entry : ((Map<?, ?>) object).entrySet()) {
+        for (Map.Entry<?, ?> entry : entries) {
             try {
                 K key;
                 try {
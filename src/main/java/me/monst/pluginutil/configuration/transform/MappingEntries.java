@@ -0,0 +1,12 @@
+package me.monst.pluginutil.configuration.transform;
+
+import java.util.Map;
+
+/**
+ * The entries of a YAML mapping which are read one at a time as they are iterated, such as a mapping streamed from
+ * a file, instead of a {@link Map} held in memory. The entries can only be iterated once.
+ * {@link MapTransformer} accepts these in place of a map.
+ */
+public interface MappingEntries extends Iterable<Map.Entry<Object, Object>> {
+    
+}
@@ -0,0 +1,66 @@
+package me.monst.pluginutil.configuration.validation;
+
+import me.monst.pluginutil.configuration.exception.ValueOutOfBoundsException;
+
+/**
+ * A bound on {@code double} values, like a {@link Bound}, which checks values without boxing them.
+ * Only an out-of-bounds value is boxed, as the replacement carried by the {@link ValueOutOfBoundsException}.
+ */
+@FunctionalInterface
+public interface DoubleBound {
+    
+    /**
+     * Returns the value if it falls within this bound, or else its replacement.
+     * @param value the value to check
+     * @return the value, or the replacement of the value if it is out of bounds
+     */
+    double replace(double value);
+    
+    /**
+     * Checks if a value falls within this bound, throwing a {@link ValueOutOfBoundsException} if not.
+     * @param value the value to check
+     * @throws ValueOutOfBoundsException if the value does not comply with this bound
+     */
+    default void validate(double value) throws ValueOutOfBoundsException {
+        double replacement = replace(value);
+        if (Double.compare(replacement, value) != 0)
+            throw new ValueOutOfBoundsException(replacement);
+    }
+    
+    /**
+     * Returns a bound which applies this bound first, and then the next bound to the result.
+     * @param next the bound to apply second
+     * @return a bound applying both bounds
+     */
+    default DoubleBound and(DoubleBound next) {
+        return value -> next.replace(replace(value));
+    }
+    
+    /**
+     * @return a bound that always passes
+     */
+    static DoubleBound none() {
+        return value -> value;
+    }
+    
+    /**
+     * Returns a bound which requires the value to be at least {@code min}.
+     * If not, the value is replaced with {@code min}. {@code NaN} is not below {@code min}, so it passes.
+     * @param min the lower bound
+     * @return an inclusive lower bound of {@code min}
+     */
+    static DoubleBound atLeast(double min) {
+        return value -> value < min ? min : value;
+    }
+    
+    /**
+     * Returns a bound which requires the value to be at most {@code max}.
+     * If not, the value is replaced with {@code max}. {@code NaN} is not above {@code max}, so it passes.
+     * @param max the upper bound
+     * @return an inclusive upper bound of {@code max}
+     */
+    static DoubleBound atMost(double max) {
+        return value -> value > max ? max : value;
+    }
+    
+}
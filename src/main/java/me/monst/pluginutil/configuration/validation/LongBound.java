@@ -0,0 +1,66 @@
+package me.monst.pluginutil.configuration.validation;
+
+import me.monst.pluginutil.configuration.exception.ValueOutOfBoundsException;
+
+/**
+ * A bound on {@code long} values, like a {@link Bound}, which checks values without boxing them.
+ * Only an out-of-bounds value is boxed, as the replacement carried by the {@link ValueOutOfBoundsException}.
+ */
+@FunctionalInterface
+public interface LongBound {
+    
+    /**
+     * Returns the value if it falls within this bound, or else its replacement.
+     * @param value the value to check
+     * @return the value, or the replacement of the value if it is out of bounds
+     */
+    long replace(long value);
+    
+    /**
+     * Checks if a value falls within this bound, throwing a {@link ValueOutOfBoundsException} if not.
+     * @param value the value to check
+     * @throws ValueOutOfBoundsException if the value does not comply with this bound
+     */
+    default void validate(long value) throws ValueOutOfBoundsException {
+        long replacement = replace(value);
+        if (replacement != value)
+            throw new ValueOutOfBoundsException(replacement);
+    }
+    
+    /**
+     * Returns a bound which applies this bound first, and then the next bound to the result.
+     * @param next the bound to apply second
+     * @return a bound applying both bounds
+     */
+    default LongBound and(LongBound next) {
+        return value -> next.replace(replace(value));
+    }
+    
+    /**
+     * @return a bound that always passes
+     */
+    static LongBound none() {
+        return value -> value;
+    }
+    
+    /**
+     * Returns a bound which requires the value to be at least {@code min}.
+     * If not, the value is replaced with {@code min}.
+     * @param min the lower bound
+     * @return an inclusive lower bound of {@code min}
+     */
+    static LongBound atLeast(long min) {
+        return value -> value >= min ? value : min;
+    }
+    
+    /**
+     * Returns a bound which requires the value to be at most {@code max}.
+     * If not, the value is replaced with {@code max}.
+     * @param max the upper bound
+     * @return an inclusive upper bound of {@code max}
+     */
+    static LongBound atMost(long max) {
+        return value -> value <= max ? value : max;
+    }
+    
+}
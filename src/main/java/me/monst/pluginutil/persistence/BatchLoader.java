@@ -0,0 +1,137 @@
+package me.monst.pluginutil.persistence;
+
+import me.monst.pluginutil.Deferred;
+import me.monst.pluginutil.Promise;
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Coalesces individual key lookups into batched {@code IN (...)} queries.
+ * Keys requested through {@link #load(Object)} are collected for a short window, after which they are all looked up
+ * asynchronously with a single query. Each row is then handed back to the promise of the key it belongs to.
+ * Keys which are requested more than once, either within the same window or while their batch is still being
+ * looked up, share the same promise.
+ * <p>
+ * The query must contain a {@code %s} placeholder for the list of keys, as in {@link Query#in(java.util.Collection)}:
+ * <pre>{@code SELECT * FROM accounts WHERE account_id IN (%s)}</pre>
+ * Keys whose row is not found are resolved with {@code null}.
+ * @param <K> the type of the keys
+ * @param <V> the type of the rows
+ */
+public class BatchLoader<K, V> {
+    
+    private final Plugin plugin;
+    private final ConnectionProvider provider;
+    private final Query query;
+    private final Reconstructor<V> reconstructor;
+    private final Function<V, K> keyExtractor;
+    private final int maxBatchSize;
+    private final long windowTicks;
+    
+    private final Object lock = new Object();
+    private Map<K, Deferred<V>> pending = new LinkedHashMap<>();
+    private final Map<K, Deferred<V>> inFlight = new ConcurrentHashMap<>();
+    private BukkitTask scheduledFlush;
+    
+    /**
+     * Creates a new batch loader.
+     * @param plugin the plugin
+     * @param provider the connection provider used for the batched queries
+     * @param query the batch query, containing a {@code %s} placeholder for the keys
+     * @param reconstructor the reconstructor used to read each row
+     * @param keyExtractor the function used to extract the key from a row, which must be equal to the requested key
+     * @param maxBatchSize the maximum number of keys per query; a full batch is sent immediately
+     * @param windowTicks the number of ticks to collect keys for; 0 sends the batch at the start of the next tick
+     */
+    public BatchLoader(Plugin plugin, ConnectionProvider provider, Query query, Reconstructor<V> reconstructor,
+                       Function<V, K> keyExtractor, int maxBatchSize, long windowTicks) {
+        if (maxBatchSize <= 0)
+            throw new IllegalArgumentException("Batch size must be positive");
+        this.plugin = plugin;
+        this.provider = provider;
+        this.query = query;
+        this.reconstructor = reconstructor;
+        this.keyExtractor = keyExtractor;
+        this.maxBatchSize = maxBatchSize;
+        this.windowTicks = windowTicks;
+    }
+    
+    /**
+     * Requests the row with the given key. The key is looked up together with all other keys requested
+     * within the same window.
+     * @param key the key
+     * @return a promise which resolves to the row with the given key, or {@code null} if there is none
+     */
+    public Promise<V> load(K key) {
+        Map<K, Deferred<V>> fullBatch = null;
+        Deferred<V> deferred;
+        synchronized (lock) {
+            deferred = pending.get(key);
+            if (deferred == null)
+                deferred = inFlight.get(key);
+            if (deferred != null)
+                return deferred;
+            deferred = new Deferred<>(plugin);
+            pending.put(key, deferred);
+            if (pending.size() >= maxBatchSize)
+                fullBatch = takePending();
+            else if (scheduledFlush == null)
+                scheduledFlush = Bukkit.getScheduler().runTaskLater(plugin, this::flush, windowTicks);
+        }
+        if (fullBatch != null)
+            dispatch(fullBatch);
+        return deferred;
+    }
+    
+    /**
+     * Sends the keys which have been collected so far immediately, without waiting for the window to end.
+     */
+    public void flush() {
+        Map<K, Deferred<V>> batch;
+        synchronized (lock) {
+            batch = takePending();
+        }
+        if (!batch.isEmpty())
+            dispatch(batch);
+    }
+    
+    private Map<K, Deferred<V>> takePending() {
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel();
+            scheduledFlush = null;
+        }
+        Map<K, Deferred<V>> batch = pending;
+        pending = new LinkedHashMap<>();
+        inFlight.putAll(batch);
+        return batch;
+    }
+    
+    private void dispatch(Map<K, Deferred<V>> batch) {
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            try (Connection con = provider.getConnection()) {
+                List<V> rows = query.in(batch.keySet()).asList(con, reconstructor);
+                for (V row : rows) {
+                    Deferred<V> deferred = batch.get(keyExtractor.apply(row));
+                    if (deferred != null)
+                        deferred.resolve(row);
+                }
+                batch.values().forEach(deferred -> deferred.resolve(null)); // Keys without a row
+            } catch (SQLException | RuntimeException e) {
+                // Also covers failing reconstructors and key extractors, so that no promise is left unsettled
+                batch.values().forEach(deferred -> deferred.reject(e));
+            } finally {
+                batch.keySet().forEach(inFlight::remove);
+            }
+        });
+    }
+    
+}
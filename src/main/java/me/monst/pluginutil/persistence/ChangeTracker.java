@@ -0,0 +1,290 @@
+package me.monst.pluginutil.persistence;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Tracks the persisted state of entities, so that saving them only writes the columns which actually changed.
+ * <p>
+ * Entities read through a {@link #tracking(Reconstructor) tracking reconstructor} have their column values
+ * snapshotted as they are loaded. When the entities are {@link #save(Connection, Collection) saved}, their current
+ * column values are compared against the snapshot. Unchanged entities are skipped entirely, and the others are
+ * updated with minimal {@code UPDATE} statements, which are grouped by the set of changed columns so that each
+ * group can be sent as a single batch.
+ * <pre>{@code
+ * ChangeTracker<Account> tracker = new ChangeTracker<Account>("accounts")
+ *         .key("account_id", Account::getId)
+ *         .column("balance", Account::getBalance)
+ *         .column("nickname", Account::getNickname);
+ * List<Account> accounts = Query.of("SELECT * FROM accounts").asList(con, tracker.tracking(Account::read));
+ * ...
+ * tracker.save(con, accounts);
+ * }</pre>
+ * Snapshots are only replaced once the updates have been committed, so that changes which were rolled back are
+ * saved again next time. Within a transaction of the caller's, use {@link #stage(Connection, Collection)} instead.
+ * @param <T> the type of the entities
+ */
+public class ChangeTracker<T> {
+    
+    private final String table;
+    private final List<String> keyColumns = new ArrayList<>(1);
+    private final List<Function<T, Object>> keyExtractors = new ArrayList<>(1);
+    private final List<String> columns = new ArrayList<>();
+    private final List<Function<T, Object>> columnExtractors = new ArrayList<>();
+    private final Map<List<Object>, Object[]> snapshots = new ConcurrentHashMap<>();
+    private InvalidationChannel invalidationChannel;
+    private String cacheName;
+    
+    /**
+     * Creates a new change tracker for entities stored in the given table.
+     * @param table the name of the table
+     */
+    public ChangeTracker(String table) {
+        this.table = table;
+    }
+    
+    /**
+     * Adds a key column, which identifies the row of an entity. Key columns are never updated.
+     * @param name the name of the column
+     * @param extractor the function extracting the column value from an entity
+     * @return this change tracker
+     */
+    public ChangeTracker<T> key(String name, Function<T, Object> extractor) {
+        keyColumns.add(name);
+        keyExtractors.add(extractor);
+        return this;
+    }
+    
+    /**
+     * Adds a tracked column.
+     * @param name the name of the column
+     * @param extractor the function extracting the column value from an entity
+     * @return this change tracker
+     */
+    public ChangeTracker<T> column(String name, Function<T, Object> extractor) {
+        columns.add(name);
+        columnExtractors.add(extractor);
+        return this;
+    }
+    
+    /**
+     * Publishes an invalidation for every entity this tracker saves, so that other nodes drop their cached copies.
+     * The invalidated key is the entity's key, with multiple key columns joined by colons.
+     * @param channel the invalidation channel
+     * @param cache the cache name to publish invalidations under
+     * @return this change tracker
+     */
+    public ChangeTracker<T> publishingTo(InvalidationChannel channel, String cache) {
+        this.invalidationChannel = channel;
+        this.cacheName = cache;
+        return this;
+    }
+    
+    /**
+     * Wraps a reconstructor so that every entity it reads is snapshotted as it is loaded.
+     * @param reconstructor the reconstructor to wrap
+     * @return a reconstructor which snapshots every entity it reads
+     */
+    public Reconstructor<T> tracking(Reconstructor<T> reconstructor) {
+        return (resultSet, con) -> {
+            T entity = reconstructor.reconstruct(resultSet, con);
+            if (entity != null)
+                snapshot(entity);
+            return entity;
+        };
+    }
+    
+    /**
+     * Records the current column values of the entity as its persisted state, for example after it was inserted.
+     * @param entity the entity
+     */
+    public void snapshot(T entity) {
+        snapshots.put(keyOf(entity), valuesOf(entity));
+    }
+    
+    /**
+     * Stops tracking the entity, for example after it was deleted.
+     * @param entity the entity
+     */
+    public void forget(T entity) {
+        snapshots.remove(keyOf(entity));
+    }
+    
+    /**
+     * Checks whether any tracked column of the entity differs from its persisted state.
+     * Entities which have not been snapshotted are always considered changed.
+     * @param entity the entity
+     * @return true if the entity has unsaved changes
+     */
+    public boolean isChanged(T entity) {
+        return !changedColumns(entity, valuesOf(entity)).isEmpty();
+    }
+    
+    /**
+     * Saves the changed columns of the given entities in a transaction of its own, and snapshots the saved entities
+     * again once it has committed. Unchanged entities are skipped. Entities which have not been snapshotted are
+     * updated in full; this method never inserts rows.
+     * Invalidations are published in the same transaction if an invalidation channel was set.
+     * @param con the connection to save the entities with, which must be in auto-commit mode
+     * @param entities the entities to save
+     * @return the number of entities which were updated
+     * @throws SQLException if an update failed, in which case nothing was saved
+     * @throws IllegalStateException if the connection is already in a transaction
+     */
+    public int save(Connection con, Collection<T> entities) throws SQLException {
+        if (!con.getAutoCommit())
+            throw new IllegalStateException("Connection is already in a transaction, use stage() instead");
+        con.setAutoCommit(false);
+        try {
+            Staged staged = stage(con, entities);
+            con.commit();
+            staged.committed();
+            return staged.getUpdated();
+        } catch (SQLException | RuntimeException e) {
+            try {
+                con.rollback();
+            } catch (SQLException rollbackFailure) {
+                e.addSuppressed(rollbackFailure);
+            }
+            throw e;
+        } finally {
+            con.setAutoCommit(true);
+        }
+    }
+    
+    /**
+     * Sends the updates of the changed columns of the given entities as part of the caller's transaction, without
+     * committing it. The saved entities are only snapshotted again once {@link Staged#committed()} is called after
+     * the transaction has committed; if it is rolled back instead, the result is simply dropped.
+     * <pre>{@code
+     * ChangeTracker<Account>.Staged staged = tracker.stage(con, accounts);
+     * con.commit();
+     * staged.committed();
+     * }</pre>
+     * @param con the connection to save the entities with
+     * @param entities the entities to save
+     * @return the staged updates
+     * @throws SQLException if an update failed
+     */
+    public Staged stage(Connection con, Collection<T> entities) throws SQLException {
+        Map<BitSet, List<PendingUpdate>> groups = new HashMap<>();
+        for (T entity : entities) {
+            Object[] values = valuesOf(entity);
+            BitSet changed = changedColumns(entity, values);
+            if (!changed.isEmpty())
+                groups.computeIfAbsent(changed, c -> new ArrayList<>()).add(new PendingUpdate(entity, values));
+        }
+        Staged staged = new Staged();
+        for (Map.Entry<BitSet, List<PendingUpdate>> group : groups.entrySet()) {
+            BitSet changed = group.getKey();
+            List<PendingUpdate> updates = group.getValue();
+            Query.of(updateStatement(changed))
+                    .batch(updates)
+                    .with(update -> update.parameters(changed))
+                    .executeUpdate(con);
+            for (PendingUpdate update : updates)
+                staged.values.put(keyOf(update.entity), update.values);
+            if (invalidationChannel != null) {
+                List<String> keys = updates.stream()
+                        .map(update -> keyOf(update.entity).stream().map(String::valueOf).collect(Collectors.joining(":")))
+                        .collect(Collectors.toList());
+                invalidationChannel.publish(con, cacheName, keys);
+            }
+        }
+        return staged;
+    }
+    
+    private BitSet changedColumns(T entity, Object[] values) {
+        BitSet changed = new BitSet(columns.size());
+        Object[] snapshot = snapshots.get(keyOf(entity));
+        if (snapshot == null) {
+            changed.set(0, columns.size());
+            return changed;
+        }
+        for (int i = 0; i < values.length; i++) {
+            if (!sameValue(snapshot[i], values[i]))
+                changed.set(i);
+        }
+        return changed;
+    }
+    
+    private static boolean sameValue(Object a, Object b) {
+        if (a instanceof BigDecimal && b instanceof BigDecimal)
+            return ((BigDecimal) a).compareTo((BigDecimal) b) == 0; // Ignore differences in scale
+        return Objects.equals(a, b);
+    }
+    
+    private String updateStatement(BitSet changed) {
+        String assignments = changed.stream()
+                .mapToObj(i -> columns.get(i) + " = ?")
+                .collect(Collectors.joining(", "));
+        String conditions = keyColumns.stream()
+                .map(key -> key + " = ?")
+                .collect(Collectors.joining(" AND "));
+        return "UPDATE " + table + " SET " + assignments + " WHERE " + conditions;
+    }
+    
+    private List<Object> keyOf(T entity) {
+        List<Object> key = new ArrayList<>(keyExtractors.size());
+        for (Function<T, Object> extractor : keyExtractors)
+            key.add(extractor.apply(entity));
+        return key;
+    }
+    
+    private Object[] valuesOf(T entity) {
+        Object[] values = new Object[columnExtractors.size()];
+        for (int i = 0; i < values.length; i++)
+            values[i] = columnExtractors.get(i).apply(entity);
+        return values;
+    }
+    
+    /**
+     * Updates which were sent in a transaction, but are not yet known to be committed.
+     */
+    public class Staged {
+        
+        private final Map<List<Object>, Object[]> values = new HashMap<>();
+        
+        private Staged() {}
+        
+        /**
+         * @return the number of entities which were updated
+         */
+        public int getUpdated() {
+            return values.size();
+        }
+        
+        /**
+         * Snapshots the updated entities as persisted. Must only be called once the transaction has committed.
+         */
+        public void committed() {
+            snapshots.putAll(values);
+        }
+        
+    }
+    
+    private class PendingUpdate {
+        
+        private final T entity;
+        private final Object[] values;
+        
+        private PendingUpdate(T entity, Object[] values) {
+            this.entity = entity;
+            this.values = values;
+        }
+        
+        private List<Object> parameters(BitSet changed) {
+            List<Object> parameters = new ArrayList<>(changed.cardinality() + keyColumns.size());
+            changed.stream().forEach(i -> parameters.add(values[i]));
+            parameters.addAll(keyOf(entity));
+            return parameters;
+        }
+        
+    }
+    
+}
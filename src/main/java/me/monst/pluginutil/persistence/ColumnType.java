@@ -0,0 +1,258 @@
+package me.monst.pluginutil.persistence;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.sql.*;
+
+/**
+ * The storage types of columns in the binary table format, each with a compact encoding.
+ * Every SQL type is mapped to the closest storage type, falling back on its string representation.
+ */
+enum ColumnType {
+    
+    INT {
+        @Override
+        Object read(ResultSet resultSet, int column) throws SQLException {
+            int value = resultSet.getInt(column);
+            return resultSet.wasNull() ? null : value;
+        }
+        
+        @Override
+        void write(DataOutput out, Object value) throws IOException {
+            out.writeInt((Integer) value);
+        }
+        
+        @Override
+        Object read(DataInput in) throws IOException {
+            return in.readInt();
+        }
+    },
+    LONG {
+        @Override
+        Object read(ResultSet resultSet, int column) throws SQLException {
+            long value = resultSet.getLong(column);
+            return resultSet.wasNull() ? null : value;
+        }
+        
+        @Override
+        void write(DataOutput out, Object value) throws IOException {
+            out.writeLong((Long) value);
+        }
+        
+        @Override
+        Object read(DataInput in) throws IOException {
+            return in.readLong();
+        }
+    },
+    DOUBLE {
+        @Override
+        Object read(ResultSet resultSet, int column) throws SQLException {
+            double value = resultSet.getDouble(column);
+            return resultSet.wasNull() ? null : value;
+        }
+        
+        @Override
+        void write(DataOutput out, Object value) throws IOException {
+            out.writeDouble((Double) value);
+        }
+        
+        @Override
+        Object read(DataInput in) throws IOException {
+            return in.readDouble();
+        }
+    },
+    DECIMAL {
+        @Override
+        Object read(ResultSet resultSet, int column) throws SQLException {
+            return resultSet.getBigDecimal(column);
+        }
+        
+        @Override
+        void write(DataOutput out, Object value) throws IOException {
+            BigDecimal decimal = (BigDecimal) value;
+            out.writeInt(decimal.scale());
+            writeBytes(out, decimal.unscaledValue().toByteArray());
+        }
+        
+        @Override
+        Object read(DataInput in) throws IOException {
+            int scale = in.readInt();
+            return new BigDecimal(new BigInteger(readBytes(in)), scale);
+        }
+    },
+    BOOLEAN {
+        @Override
+        Object read(ResultSet resultSet, int column) throws SQLException {
+            boolean value = resultSet.getBoolean(column);
+            return resultSet.wasNull() ? null : value;
+        }
+        
+        @Override
+        void write(DataOutput out, Object value) throws IOException {
+            out.writeBoolean((Boolean) value);
+        }
+        
+        @Override
+        Object read(DataInput in) throws IOException {
+            return in.readBoolean();
+        }
+    },
+    STRING {
+        @Override
+        Object read(ResultSet resultSet, int column) throws SQLException {
+            return resultSet.getString(column);
+        }
+        
+        @Override
+        void write(DataOutput out, Object value) throws IOException {
+            writeBytes(out, ((String) value).getBytes(StandardCharsets.UTF_8));
+        }
+        
+        @Override
+        Object read(DataInput in) throws IOException {
+            return new String(readBytes(in), StandardCharsets.UTF_8);
+        }
+    },
+    BYTES {
+        @Override
+        Object read(ResultSet resultSet, int column) throws SQLException {
+            return resultSet.getBytes(column);
+        }
+        
+        @Override
+        void write(DataOutput out, Object value) throws IOException {
+            writeBytes(out, (byte[]) value);
+        }
+        
+        @Override
+        Object read(DataInput in) throws IOException {
+            return readBytes(in);
+        }
+    },
+    TIMESTAMP {
+        @Override
+        Object read(ResultSet resultSet, int column) throws SQLException {
+            return resultSet.getTimestamp(column);
+        }
+        
+        @Override
+        void write(DataOutput out, Object value) throws IOException {
+            Timestamp timestamp = (Timestamp) value;
+            out.writeLong(timestamp.getTime());
+            out.writeInt(timestamp.getNanos());
+        }
+        
+        @Override
+        Object read(DataInput in) throws IOException {
+            Timestamp timestamp = new Timestamp(in.readLong());
+            timestamp.setNanos(in.readInt());
+            return timestamp;
+        }
+    },
+    DATE {
+        @Override
+        Object read(ResultSet resultSet, int column) throws SQLException {
+            return resultSet.getDate(column);
+        }
+        
+        @Override
+        void write(DataOutput out, Object value) throws IOException {
+            out.writeLong(((Date) value).getTime());
+        }
+        
+        @Override
+        Object read(DataInput in) throws IOException {
+            return new Date(in.readLong());
+        }
+    },
+    TIME {
+        @Override
+        Object read(ResultSet resultSet, int column) throws SQLException {
+            return resultSet.getTime(column);
+        }
+        
+        @Override
+        void write(DataOutput out, Object value) throws IOException {
+            out.writeLong(((Time) value).getTime());
+        }
+        
+        @Override
+        Object read(DataInput in) throws IOException {
+            return new Time(in.readLong());
+        }
+    };
+    
+    /**
+     * Reads the value of a column from the current row of a result set.
+     * @return the value, or {@code null} if it is SQL NULL
+     */
+    abstract Object read(ResultSet resultSet, int column) throws SQLException;
+    
+    /**
+     * Writes a non-null value of this type.
+     */
+    abstract void write(DataOutput out, Object value) throws IOException;
+    
+    /**
+     * Reads a non-null value of this type.
+     */
+    abstract Object read(DataInput in) throws IOException;
+    
+    /**
+     * Maps a {@link Types SQL type} to the closest storage type.
+     */
+    static ColumnType of(int sqlType) {
+        switch (sqlType) {
+            case Types.TINYINT:
+            case Types.SMALLINT:
+            case Types.INTEGER:
+                return INT;
+            case Types.BIGINT:
+                return LONG;
+            case Types.REAL:
+            case Types.FLOAT:
+            case Types.DOUBLE:
+                return DOUBLE;
+            case Types.NUMERIC:
+            case Types.DECIMAL:
+                return DECIMAL;
+            case Types.BIT:
+            case Types.BOOLEAN:
+                return BOOLEAN;
+            case Types.BINARY:
+            case Types.VARBINARY:
+            case Types.LONGVARBINARY:
+            case Types.BLOB:
+                return BYTES;
+            case Types.TIMESTAMP:
+            case Types.TIMESTAMP_WITH_TIMEZONE:
+                return TIMESTAMP;
+            case Types.DATE:
+                return DATE;
+            case Types.TIME:
+            case Types.TIME_WITH_TIMEZONE:
+                return TIME;
+            default:
+                return STRING;
+        }
+    }
+    
+    private static void writeBytes(DataOutput out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+    
+    private static byte[] readBytes(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > TableArchive.MAX_BLOCK_BYTES)
+            throw new IOException("Corrupt value length " + length);
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+    
+}
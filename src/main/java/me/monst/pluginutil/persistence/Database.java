@@ -22,5 +22,41 @@ public interface Database extends ConnectionProvider {
         }
         return dataSource.getConnection();
     }
+    
+    /**
+     * Gets a connection for read-only queries. Implementations may route reads to a different data source than
+     * writes, such as a replica. By default, this is the same as {@link #getConnection()}.
+     * @return a connection for read-only queries
+     * @throws SQLException if no connection could be obtained
+     */
+    default Connection getReadConnection() throws SQLException {
+        return getConnection();
+    }
+    
+    /**
+     * Runs a read-only function on a connection obtained from {@link #getReadConnection()}.
+     * @param reader the function reading from the database, typically a {@link Query} read like {@code asList}
+     * @return the result of the function
+     * @param <T> the type of the result
+     * @throws SQLException if the function failed or no connection could be obtained
+     */
+    default <T> T read(ConnectionFunction<T> reader) throws SQLException {
+        try (Connection con = getReadConnection()) {
+            return reader.apply(con);
+        }
+    }
+    
+    /**
+     * Runs a function on a connection obtained from {@link #getConnection()}.
+     * @param writer the function writing to the database, typically a {@link Query} update or batch
+     * @return the result of the function
+     * @param <T> the type of the result
+     * @throws SQLException if the function failed or no connection could be obtained
+     */
+    default <T> T write(ConnectionFunction<T> writer) throws SQLException {
+        try (Connection con = getConnection()) {
+            return writer.apply(con);
+        }
+    }
 
 }
@@ -0,0 +1,184 @@
+package me.monst.pluginutil.persistence;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The SQL dialect spoken by a database, for the few statements which cannot be written portably.
+ */
+public enum Dialect {
+    
+    MYSQL("BIGINT NOT NULL AUTO_INCREMENT PRIMARY KEY", 65535),
+    POSTGRESQL("BIGSERIAL PRIMARY KEY", 32767),
+    SQLITE("INTEGER PRIMARY KEY AUTOINCREMENT", 999),
+    H2("BIGINT AUTO_INCREMENT PRIMARY KEY", 65535),
+    /** Any other database, which is assumed to follow the SQL standard. */
+    STANDARD("BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY", 2000);
+    
+    private final String autoIncrementKey;
+    private final int maxParameters;
+    
+    Dialect(String autoIncrementKey, int maxParameters) {
+        this.autoIncrementKey = autoIncrementKey;
+        this.maxParameters = maxParameters;
+    }
+    
+    /**
+     * Gets the column definition of an auto-incrementing 64-bit primary key, to be used in a {@code CREATE TABLE}
+     * statement after the column name.
+     * @return the column definition
+     */
+    public String autoIncrementKey() {
+        return autoIncrementKey;
+    }
+    
+    /**
+     * Gets the maximum number of parameters a single statement can safely have.
+     * For unrecognized databases, this is a conservative guess.
+     * @return the maximum number of parameters per statement
+     */
+    public int maxParameters() {
+        return maxParameters;
+    }
+    
+    /**
+     * Gets the clause which limits a query to the number of rows given by a parameter, to be appended after its
+     * {@code ORDER BY} clause. The standard clause is used for unrecognized databases.
+     * @return the row limit clause, taking the number of rows as its only parameter
+     */
+    public String limitClause() {
+        return this == STANDARD ? "FETCH FIRST ? ROWS ONLY" : "LIMIT ?";
+    }
+    
+    /**
+     * Builds a statement which inserts the given number of rows, updating the non-key columns of rows whose
+     * key already exists. The parameters are the key columns followed by the other columns, row after row.
+     * <p>
+     * The standard {@code MERGE} selects its rows from a {@code VALUES} list, where some databases cannot infer the
+     * types of parameters, so the parameters are cast to the given column types.
+     * @param table the name of the table
+     * @param keys the key columns, which must have a primary key or unique constraint
+     * @param columns the other columns
+     * @param types the SQL types of the key columns followed by the other columns, as returned by
+     *              {@link #columnTypes(Connection, String, List)}; only needed for {@link #STANDARD}
+     * @param rows the number of rows
+     * @return the SQL of the statement
+     */
+    String upsert(String table, List<String> keys, List<String> columns, List<String> types, int rows) {
+        List<String> all = new ArrayList<>(keys);
+        all.addAll(columns);
+        String columnList = String.join(", ", all);
+        StringBuilder values = new StringBuilder();
+        for (int row = 0; row < rows; row++) {
+            values.append(row == 0 ? "(" : ", (");
+            for (int i = 0; i < all.size(); i++) {
+                values.append(i == 0 ? "" : ", ");
+                if (this == STANDARD)
+                    values.append("CAST(? AS ").append(types.get(i)).append(')');
+                else
+                    values.append('?');
+            }
+            values.append(')');
+        }
+        StringBuilder sql = new StringBuilder();
+        switch (this) {
+            case MYSQL:
+                sql.append("INSERT INTO ").append(table).append(" (").append(columnList).append(") VALUES ").append(values);
+                sql.append(" ON DUPLICATE KEY UPDATE ");
+                if (columns.isEmpty()) // Nothing to update, so the key is assigned to itself to ignore the duplicate
+                    sql.append(keys.get(0)).append(" = ").append(keys.get(0));
+                for (int i = 0; i < columns.size(); i++)
+                    sql.append(i == 0 ? "" : ", ").append(columns.get(i)).append(" = VALUES(").append(columns.get(i)).append(')');
+                break;
+            case POSTGRESQL:
+            case SQLITE:
+                sql.append("INSERT INTO ").append(table).append(" (").append(columnList).append(") VALUES ").append(values);
+                sql.append(" ON CONFLICT (").append(String.join(", ", keys)).append(") DO ");
+                if (columns.isEmpty())
+                    sql.append("NOTHING");
+                else
+                    sql.append("UPDATE SET ");
+                for (int i = 0; i < columns.size(); i++)
+                    sql.append(i == 0 ? "" : ", ").append(columns.get(i)).append(" = excluded.").append(columns.get(i));
+                break;
+            case H2:
+                sql.append("MERGE INTO ").append(table).append(" (").append(columnList).append(") KEY (")
+                        .append(String.join(", ", keys)).append(") VALUES ").append(values);
+                break;
+            default:
+                sql.append("MERGE INTO ").append(table).append(" USING (VALUES ").append(values).append(") AS source (")
+                        .append(columnList).append(") ON ");
+                for (int i = 0; i < keys.size(); i++)
+                    sql.append(i == 0 ? "" : " AND ").append(table).append('.').append(keys.get(i))
+                            .append(" = source.").append(keys.get(i));
+                if (!columns.isEmpty())
+                    sql.append(" WHEN MATCHED THEN UPDATE SET ");
+                for (int i = 0; i < columns.size(); i++)
+                    sql.append(i == 0 ? "" : ", ").append(columns.get(i)).append(" = source.").append(columns.get(i));
+                sql.append(" WHEN NOT MATCHED THEN INSERT (").append(columnList).append(") VALUES (");
+                for (int i = 0; i < all.size(); i++)
+                    sql.append(i == 0 ? "" : ", ").append("source.").append(all.get(i));
+                sql.append(')');
+        }
+        return sql.toString();
+    }
+    
+    /**
+     * Reads the SQL types of columns of a table, including their length or precision, for use in a {@code CAST}.
+     * @param con the connection
+     * @param table the name of the table
+     * @param columns the columns
+     * @return the types of the columns, in the same order
+     * @throws SQLException if the table could not be queried
+     */
+    static List<String> columnTypes(Connection con, String table, List<String> columns) throws SQLException {
+        String sql = "SELECT " + String.join(", ", columns) + " FROM " + table + " WHERE 1 = 0";
+        try (Statement stmt = con.createStatement(); ResultSet resultSet = stmt.executeQuery(sql)) {
+            ResultSetMetaData metaData = resultSet.getMetaData();
+            List<String> types = new ArrayList<>(columns.size());
+            for (int i = 1; i <= columns.size(); i++) {
+                String name = metaData.getColumnTypeName(i);
+                switch (metaData.getColumnType(i)) {
+                    case Types.CHAR:
+                    case Types.VARCHAR:
+                    case Types.NCHAR:
+                    case Types.NVARCHAR:
+                    case Types.BINARY:
+                    case Types.VARBINARY:
+                        types.add(name + "(" + metaData.getPrecision(i) + ")");
+                        break;
+                    case Types.NUMERIC:
+                    case Types.DECIMAL:
+                        types.add(name + "(" + metaData.getPrecision(i) + ", " + metaData.getScale(i) + ")");
+                        break;
+                    default:
+                        types.add(name);
+                }
+            }
+            return types;
+        }
+    }
+    
+    /**
+     * Detects the dialect of the database the connection is connected to.
+     * MariaDB is treated as MySQL.
+     * @param con the connection
+     * @return the detected dialect, or {@link #STANDARD} if the database is not recognized
+     * @throws SQLException if the database metadata could not be read
+     */
+    public static Dialect detect(Connection con) throws SQLException {
+        String product = con.getMetaData().getDatabaseProductName().toLowerCase(Locale.ROOT);
+        if (product.contains("mysql") || product.contains("mariadb"))
+            return MYSQL;
+        if (product.contains("postgres"))
+            return POSTGRESQL;
+        if (product.contains("sqlite"))
+            return SQLITE;
+        if (product.equals("h2"))
+            return H2;
+        return STANDARD;
+    }
+    
+}
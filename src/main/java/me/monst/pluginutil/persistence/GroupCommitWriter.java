@@ -0,0 +1,214 @@
+package me.monst.pluginutil.persistence;
+
+import me.monst.pluginutil.Deferred;
+import me.monst.pluginutil.Promise;
+import org.bukkit.plugin.Plugin;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+/**
+ * Groups small writes submitted by many threads into shared transactions.
+ * Every write submitted within a short window is run on the same connection in a single transaction, so the
+ * database only has to commit (and flush its log) once for the whole group rather than once per write.
+ * The promise of each write is only fulfilled after the shared commit has succeeded.
+ * <p>
+ * If the driver supports savepoints, each write runs under its own savepoint, so that a failing write is rolled
+ * back and rejected on its own while the rest of the group is still committed. Otherwise, a failing write causes
+ * the whole group to be rolled back and rejected.
+ * <p>
+ * Writes are run on a dedicated thread, in submission order.
+ */
+public class GroupCommitWriter {
+    
+    private final Plugin plugin;
+    private final ConnectionProvider provider;
+    private final long windowNanos;
+    private final int maxGroupSize;
+    private final BlockingQueue<PendingWrite<?>> queue = new LinkedBlockingQueue<>();
+    private final Thread thread;
+    private final Object submitLock = new Object();
+    private volatile boolean running = true;
+    
+    /**
+     * Creates a new group commit writer and starts its thread.
+     * @param plugin the plugin
+     * @param provider the connection provider used for the transactions
+     * @param window how long to wait for more writes after the first write of a group was submitted
+     * @param maxGroupSize the maximum number of writes per transaction
+     */
+    public GroupCommitWriter(Plugin plugin, ConnectionProvider provider, Duration window, int maxGroupSize) {
+        if (maxGroupSize <= 0)
+            throw new IllegalArgumentException("Group size must be positive");
+        this.plugin = plugin;
+        this.provider = provider;
+        this.windowNanos = window.toNanos();
+        this.maxGroupSize = maxGroupSize;
+        this.thread = new Thread(this::run, plugin.getName() + " Group Commit Writer");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+    
+    /**
+     * Submits a write to be run in the next group transaction. The write must not commit, roll back,
+     * or change the auto-commit mode of the connection.
+     * @param write the write, typically a {@link Query} update or batch
+     * @return a promise which resolves to the result of the write once the group has been committed
+     * @param <T> the type of the result
+     */
+    public <T> Promise<T> submit(ConnectionFunction<T> write) {
+        PendingWrite<T> pending = new PendingWrite<>(write, new Deferred<>(plugin));
+        synchronized (submitLock) { // So that no write is queued after the writer thread has drained the queue
+            if (!running)
+                pending.deferred.reject(new SQLException("Group commit writer has been shut down"));
+            else
+                queue.add(pending);
+        }
+        return pending.deferred;
+    }
+    
+    /**
+     * Stops accepting writes, commits the writes which have already been submitted, and stops the writer thread.
+     * @param timeout how long to wait for the remaining writes to be committed
+     */
+    public void shutdown(Duration timeout) {
+        synchronized (submitLock) {
+            running = false;
+        }
+        try {
+            thread.join(timeout.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    private void run() {
+        while (running || !queue.isEmpty()) {
+            try {
+                List<PendingWrite<?>> group = collectGroup();
+                if (!group.isEmpty())
+                    commit(group);
+            } catch (InterruptedException e) {
+                break;
+            }
+        }
+        PendingWrite<?> abandoned; // Submitted while shutting down, or left over after an interrupt
+        while ((abandoned = queue.poll()) != null)
+            abandoned.fail(new SQLException("Group commit writer has been shut down"));
+    }
+    
+    private List<PendingWrite<?>> collectGroup() throws InterruptedException {
+        List<PendingWrite<?>> group = new ArrayList<>();
+        PendingWrite<?> first = queue.poll(100, TimeUnit.MILLISECONDS);
+        if (first == null)
+            return group;
+        group.add(first);
+        long deadline = System.nanoTime() + windowNanos;
+        try {
+            while (group.size() < maxGroupSize) {
+                long remaining = deadline - System.nanoTime();
+                PendingWrite<?> next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                if (next == null)
+                    break;
+                group.add(next);
+            }
+        } catch (InterruptedException e) {
+            // The writes taken so far are no longer in the queue, so they must be settled here
+            SQLException failure = new SQLException("Group commit writer was interrupted");
+            group.forEach(write -> write.fail(failure));
+            throw e;
+        }
+        return group;
+    }
+    
+    private void commit(List<PendingWrite<?>> group) {
+        boolean committed = false;
+        try (Connection con = provider.getConnection()) {
+            boolean autoCommit = con.getAutoCommit();
+            con.setAutoCommit(false);
+            try {
+                boolean savepoints = con.getMetaData().supportsSavepoints();
+                for (PendingWrite<?> write : group)
+                    write.apply(con, savepoints);
+                con.commit();
+                committed = true;
+            } catch (SQLException | RuntimeException e) {
+                try {
+                    con.rollback();
+                } catch (SQLException rollbackFailure) {
+                    e.addSuppressed(rollbackFailure);
+                }
+                try {
+                    con.setAutoCommit(autoCommit);
+                } catch (SQLException resetFailure) {
+                    e.addSuppressed(resetFailure);
+                }
+                throw e;
+            }
+            con.setAutoCommit(autoCommit);
+        } catch (SQLException | RuntimeException e) {
+            if (!committed) {
+                SQLException failure = e instanceof SQLException ? (SQLException) e : new SQLException(e);
+                group.forEach(write -> write.fail(failure));
+                return;
+            }
+            // The writes are durable, so failing them now would make callers retry writes which already happened
+            plugin.getLogger().log(Level.WARNING, "Failed to clean up the connection after a group commit", e);
+        }
+        group.forEach(PendingWrite::complete);
+    }
+    
+    private static class PendingWrite<T> {
+        
+        private final ConnectionFunction<T> write;
+        private final Deferred<T> deferred;
+        private T result;
+        private Exception failure;
+        
+        private PendingWrite(ConnectionFunction<T> write, Deferred<T> deferred) {
+            this.write = write;
+            this.deferred = deferred;
+        }
+        
+        /**
+         * Runs the write. If savepoints are available, a failure only rolls back this write and is recorded
+         * instead of thrown.
+         */
+        private void apply(Connection con, boolean savepoints) throws SQLException {
+            if (!savepoints) {
+                result = write.apply(con);
+                return;
+            }
+            Savepoint savepoint = con.setSavepoint();
+            try {
+                result = write.apply(con);
+            } catch (SQLException | RuntimeException e) {
+                con.rollback(savepoint);
+                failure = e;
+                return;
+            }
+            con.releaseSavepoint(savepoint); // Otherwise savepoints pile up over a large group
+        }
+        
+        private void complete() {
+            if (failure != null)
+                deferred.reject(failure);
+            else
+                deferred.resolve(result);
+        }
+        
+        private void fail(Exception e) {
+            deferred.reject(failure != null ? failure : e);
+        }
+        
+    }
+    
+}
@@ -0,0 +1,227 @@
+package me.monst.pluginutil.persistence;
+
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Broadcasts cache invalidations between server nodes sharing one database, using the database itself as the bus.
+ * <p>
+ * Every invalidation is appended to an invalidation log table, with a monotonically increasing id. Each node polls
+ * the table for entries with an id above the last one it has seen, and applies them to the local caches which
+ * subscribed to the entry's cache name. Entries published by a node are applied to that node's caches immediately,
+ * and again when they are polled back: the first invalidation happens before the publishing transaction commits, so
+ * a local reader may cache the old row again in between, and only the second one is guaranteed to see the commit.
+ * <p>
+ * Since auto-increment ids are assigned before the writing transaction commits, an entry can become visible after
+ * entries with higher ids. Skipped ids are therefore remembered for a grace period and looked up again on every poll.
+ * Only gaps of up to 1000 ids are tracked. A larger gap, such as after the table was truncated or a bulk insert
+ * was rolled back, is logged as a warning and its ids are not looked up again, so invalidations committed late
+ * within it are missed.
+ * <p>
+ * Invalidators are run on an async thread and must be thread-safe.
+ */
+public class InvalidationChannel {
+    
+    private static final int PAGE_SIZE = 500;
+    private static final int MAX_TRACKED_GAP = 1000;
+    private static final long GAP_GRACE_MILLIS = 60_000;
+    
+    private final Plugin plugin;
+    private final Database database;
+    private final String table;
+    private final Duration pollInterval;
+    private final Duration retention;
+    private final Map<String, List<Consumer<String>>> invalidators = new ConcurrentHashMap<>();
+    private final Map<Long, Long> gaps = new HashMap<>(); // Skipped id -> time at which to stop looking for it
+    
+    private volatile Dialect dialect;
+    private volatile long lastSeenId;
+    private long lastPruned;
+    private BukkitTask pollTask;
+    
+    /**
+     * Creates a new invalidation channel.
+     * @param plugin the plugin
+     * @param database the shared database
+     * @param table the name of the invalidation log table
+     * @param pollInterval how often to poll for invalidations from other nodes
+     * @param retention how long invalidation log entries are kept before they are pruned
+     */
+    public InvalidationChannel(Plugin plugin, Database database, String table, Duration pollInterval,
+                               Duration retention) {
+        this.plugin = plugin;
+        this.database = database;
+        this.table = table;
+        this.pollInterval = pollInterval;
+        this.retention = retention;
+    }
+    
+    /**
+     * Subscribes a local cache to invalidations with the given cache name.
+     * The invalidator receives the invalidated key, or {@code null} if the whole cache was invalidated.
+     * @param cache the cache name
+     * @param invalidator the function invalidating a key of the local cache
+     */
+    public void subscribe(String cache, Consumer<String> invalidator) {
+        invalidators.computeIfAbsent(cache, c -> new CopyOnWriteArrayList<>()).add(invalidator);
+    }
+    
+    /**
+     * Creates the invalidation log table if necessary, skips all existing entries, and starts polling.
+     * @throws SQLException if the table could not be created or read
+     */
+    public void start() throws SQLException {
+        try (Connection con = database.getConnection()) {
+            dialect = Dialect.detect(con);
+            Query.of("CREATE TABLE IF NOT EXISTS " + table + " ("
+                    + "id " + dialect.autoIncrementKey() + ", "
+                    + "cache_name VARCHAR(64) NOT NULL, "
+                    + "cache_key VARCHAR(255), "
+                    + "created_at BIGINT NOT NULL)").executeUpdate(con);
+            lastSeenId = Query.of("SELECT MAX(id) FROM " + table).asOne(con, (resultSet, c) -> resultSet.getLong(1));
+        }
+        long period = Math.max(1, pollInterval.toMillis() / 50);
+        pollTask = Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, this::poll, period, period);
+    }
+    
+    /**
+     * Stops polling.
+     */
+    public void stop() {
+        if (pollTask != null)
+            pollTask.cancel();
+        pollTask = null;
+    }
+    
+    /**
+     * Appends invalidations of the given keys to the log, using the given connection so that they are part of the
+     * same transaction as the write that made them necessary. The keys are also invalidated locally right away, and
+     * once more when the entries are polled back after the transaction has committed.
+     * @param con the connection the write was made with
+     * @param cache the cache name
+     * @param keys the invalidated keys, converted to strings; a {@code null} key invalidates the whole cache
+     * @throws SQLException if the log entries could not be appended
+     */
+    public void publish(Connection con, String cache, Collection<?> keys) throws SQLException {
+        if (keys.isEmpty())
+            return;
+        long now = System.currentTimeMillis();
+        Query.of("INSERT INTO " + table + " (cache_name, cache_key, created_at) VALUES (?, ?, ?)")
+                .batch(keys)
+                .with(key -> Arrays.asList(cache, key != null ? String.valueOf(key) : null, now))
+                .executeUpdate(con);
+        for (Object key : keys)
+            invalidateLocally(cache, key != null ? String.valueOf(key) : null);
+    }
+    
+    /**
+     * Wraps a write so that the given keys are invalidated on every node after the write was made.
+     * @param write the write
+     * @param cache the cache name
+     * @param keys the keys invalidated by the write
+     * @return a write which also appends the invalidations to the log
+     * @param <T> the type of the result of the write
+     */
+    public <T> ConnectionFunction<T> invalidating(ConnectionFunction<T> write, String cache, Object... keys) {
+        List<Object> keyList = Arrays.asList(keys);
+        return con -> {
+            T result = write.apply(con);
+            publish(con, cache, keyList);
+            return result;
+        };
+    }
+    
+    private synchronized void poll() {
+        try (Connection con = database.getConnection()) { // Replicas may lag behind
+            pollNewEntries(con);
+            pollGaps(con);
+            long now = System.currentTimeMillis();
+            if (now - lastPruned > retention.toMillis() / 10) {
+                lastPruned = now;
+                Query.of("DELETE FROM " + table + " WHERE created_at < ?")
+                        .with(now - retention.toMillis())
+                        .executeUpdate(con);
+            }
+        } catch (SQLException e) {
+            plugin.getLogger().warning("Failed to poll cache invalidations: " + e.getMessage());
+        }
+    }
+    
+    private void pollNewEntries(Connection con) throws SQLException {
+        Query page = Query.of("SELECT id, cache_name, cache_key FROM " + table
+                + " WHERE id > ? ORDER BY id " + dialect.limitClause());
+        List<Entry> entries;
+        do {
+            entries = page.with(lastSeenId, PAGE_SIZE).asList(con, Entry::new);
+            for (Entry entry : entries) {
+                long skipped = entry.id - lastSeenId - 1;
+                if (skipped > MAX_TRACKED_GAP) {
+                    plugin.getLogger().warning("Skipped " + skipped + " cache invalidation ids after id " + lastSeenId
+                            + ", which is too many to look up again; invalidations committed late among them are missed.");
+                } else if (skipped > 0) {
+                    long expiry = System.currentTimeMillis() + GAP_GRACE_MILLIS;
+                    for (long id = lastSeenId + 1; id < entry.id; id++)
+                        gaps.put(id, expiry);
+                }
+                lastSeenId = entry.id;
+                apply(entry);
+            }
+        } while (entries.size() == PAGE_SIZE);
+    }
+    
+    private void pollGaps(Connection con) throws SQLException {
+        long now = System.currentTimeMillis();
+        gaps.values().removeIf(expiry -> expiry < now);
+        if (gaps.isEmpty())
+            return;
+        List<Entry> late = Query.of("SELECT id, cache_name, cache_key FROM " + table + " WHERE id IN (%s)")
+                .in(new ArrayList<>(gaps.keySet()))
+                .asList(con, Entry::new);
+        for (Entry entry : late) {
+            gaps.remove(entry.id);
+            apply(entry);
+        }
+    }
+    
+    private void apply(Entry entry) {
+        invalidateLocally(entry.cache, entry.key); // Also entries from this node, which are only committed now
+    }
+    
+    private void invalidateLocally(String cache, String key) {
+        List<Consumer<String>> subscribers = invalidators.get(cache);
+        if (subscribers == null)
+            return;
+        for (Consumer<String> invalidator : subscribers) {
+            try {
+                invalidator.accept(key);
+            } catch (RuntimeException e) {
+                plugin.getLogger().warning("Failed to invalidate cache '" + cache + "': " + e);
+            }
+        }
+    }
+    
+    private static class Entry {
+        
+        private final long id;
+        private final String cache;
+        private final String key;
+        
+        private Entry(ResultSet resultSet, Connection con) throws SQLException {
+            this.id = resultSet.getLong("id");
+            this.cache = resultSet.getString("cache_name");
+            this.key = resultSet.getString("cache_key");
+        }
+        
+    }
+    
+}
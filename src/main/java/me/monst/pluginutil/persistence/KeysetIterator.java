@@ -0,0 +1,159 @@
+package me.monst.pluginutil.persistence;
+
+import me.monst.pluginutil.Promise;
+import me.monst.pluginutil.TickBudgetedExecutor;
+import org.bukkit.plugin.Plugin;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Iterates over a large table in fixed-size pages using keyset pagination.
+ * Rather than using an offset, every page is fetched relative to the key of the last row of the previous page,
+ * so fetching a page costs the same regardless of how far into the table the iteration is.
+ * <p>
+ * The query must order its rows by a unique key and take the last-seen key and the page size as its final
+ * two parameters, for example:
+ * <pre>{@code SELECT * FROM accounts WHERE account_id > ? ORDER BY account_id LIMIT ?}</pre>
+ * @param <T> the type of the rows
+ */
+public class KeysetIterator<T> {
+    
+    private final Query query;
+    private final Reconstructor<T> reconstructor;
+    private final Function<T, ?> keyExtractor;
+    private final int pageSize;
+    private final List<Object> leadingParameters = new ArrayList<>();
+    
+    private Object lastKey;
+    private boolean exhausted;
+    
+    /**
+     * Creates a new keyset iterator.
+     * @param query the page query, taking the last-seen key and the page size as its final two parameters
+     * @param reconstructor the reconstructor used to read each row
+     * @param keyExtractor the function used to extract the key from a row
+     * @param initialKey a key which is lower than every key in the table
+     * @param pageSize the maximum number of rows per page
+     */
+    public KeysetIterator(Query query, Reconstructor<T> reconstructor, Function<T, ?> keyExtractor,
+                          Object initialKey, int pageSize) {
+        if (pageSize <= 0)
+            throw new IllegalArgumentException("Page size must be positive");
+        this.query = query;
+        this.reconstructor = reconstructor;
+        this.keyExtractor = keyExtractor;
+        this.lastKey = initialKey;
+        this.pageSize = pageSize;
+    }
+    
+    /**
+     * Adds parameters which are passed to the query on every page, before the last-seen key and the page size.
+     * @param params the parameters
+     * @return this iterator
+     */
+    public KeysetIterator<T> with(Object... params) {
+        leadingParameters.addAll(Arrays.asList(params));
+        return this;
+    }
+    
+    /**
+     * @return true if there may be more pages, false if the end of the table has been reached
+     */
+    public boolean hasNext() {
+        return !exhausted;
+    }
+    
+    /**
+     * Fetches the next page of rows. A page containing fewer rows than the page size marks the end of the table.
+     * @param con the connection to fetch the page with
+     * @return the next page, or an empty list if the end of the table has been reached
+     * @throws SQLException if the page could not be fetched
+     */
+    public List<T> next(Connection con) throws SQLException {
+        if (exhausted)
+            return Collections.emptyList();
+        List<Object> params = new ArrayList<>(leadingParameters);
+        params.add(lastKey);
+        params.add(pageSize);
+        List<T> page = query.with(params).asList(con, reconstructor);
+        if (page.size() < pageSize)
+            exhausted = true;
+        if (!page.isEmpty())
+            lastKey = keyExtractor.apply(page.get(page.size() - 1));
+        return page;
+    }
+    
+    /**
+     * Scans the remainder of the table asynchronously. Every page is fetched and processed on an async thread,
+     * borrowing a connection from the provider only for the duration of that page.
+     * The results of processing a page are then applied on the main thread by the given executor, in tick-budgeted
+     * slices. The scan never runs more than one page ahead of the main thread.
+     * @param plugin the plugin
+     * @param provider the connection provider
+     * @param processor processes each page off the main thread, producing results to be applied on the main thread
+     * @param applier applies each result on the main thread
+     * @param mainThread the executor used to apply the results
+     * @return a promise which resolves to the number of rows scanned
+     * @param <R> the type of the results
+     */
+    public <R> Promise<Integer> scanAsync(Plugin plugin, ConnectionProvider provider, PageProcessor<T, R> processor,
+                                          Consumer<R> applier, TickBudgetedExecutor mainThread) {
+        return Promise.async(plugin, () -> {
+            int rows = 0;
+            CountDownLatch applied = new CountDownLatch(0);
+            while (hasNext()) {
+                List<R> results;
+                try (Connection con = provider.getConnection()) {
+                    List<T> page = next(con);
+                    if (page.isEmpty())
+                        break;
+                    rows += page.size();
+                    results = processor.process(page, con);
+                }
+                awaitApplied(plugin, applied); // Do not run ahead of the main thread by more than one page
+                applied = new CountDownLatch(1);
+                for (R result : results)
+                    mainThread.execute(() -> applier.accept(result));
+                mainThread.execute(applied::countDown);
+            }
+            awaitApplied(plugin, applied);
+            return rows;
+        });
+    }
+    
+    private static void awaitApplied(Plugin plugin, CountDownLatch applied) throws InterruptedException {
+        while (!applied.await(1, TimeUnit.SECONDS)) {
+            if (!plugin.isEnabled())
+                throw new IllegalStateException("Plugin was disabled during scan");
+        }
+    }
+    
+    /**
+     * Processes a page of rows off the main thread.
+     * @param <T> the type of the rows
+     * @param <R> the type of the results to be applied on the main thread
+     */
+    @FunctionalInterface
+    public interface PageProcessor<T, R> {
+        
+        /**
+         * Processes a page of rows.
+         * @param page the rows of the page
+         * @param con the connection the page was fetched with, which may be used for further queries
+         * @return the results to be applied on the main thread, possibly empty
+         * @throws SQLException if a query failed
+         */
+        List<R> process(List<T> page, Connection con) throws SQLException;
+        
+    }
+    
+}
@@ -0,0 +1,243 @@
+package me.monst.pluginutil.persistence;
+
+import me.monst.pluginutil.log.Debugger;
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import javax.annotation.Nullable;
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A {@link Database} which keeps track of the connections it hands out, to find code that forgets to close them.
+ * <p>
+ * Every connection obtained through {@link #getConnection()} or {@link #getReadConnection()} records where and when
+ * it was borrowed. Connections which are held for longer than a threshold are reported to a {@link Debugger}
+ * together with the stack trace of the code that borrowed them, and reported again once they are finally closed.
+ * {@link #getBorrowers()} and {@link #report()} list the connections which are currently borrowed, longest held
+ * first.
+ * <p>
+ * Connections obtained from the {@link #getDataSource() data source} directly are not tracked.
+ */
+public class LeakDetectingDatabase implements Database {
+    
+    private static final String PACKAGE = LeakDetectingDatabase.class.getPackage().getName() + ".";
+    
+    private final Plugin plugin;
+    private final Database database;
+    private final Debugger debugger;
+    private final long thresholdNanos;
+    private final Set<Borrow> borrows = ConcurrentHashMap.newKeySet();
+    private BukkitTask checkTask;
+    
+    /**
+     * Creates a new leak-detecting database.
+     * @param plugin the plugin
+     * @param database the database to hand out connections of
+     * @param debugger the debugger to report connections held for too long to
+     * @param threshold how long a connection may be held before it is reported
+     */
+    public LeakDetectingDatabase(Plugin plugin, Database database, Debugger debugger, Duration threshold) {
+        this.plugin = plugin;
+        this.database = database;
+        this.debugger = debugger;
+        this.thresholdNanos = threshold.toNanos();
+    }
+    
+    /**
+     * Starts checking for connections held beyond the threshold on an async thread.
+     * @param checkInterval how often to check
+     */
+    public void start(Duration checkInterval) {
+        long period = Math.max(1, checkInterval.toMillis() / 50);
+        checkTask = Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, this::check, period, period);
+    }
+    
+    /**
+     * Stops checking for connections held beyond the threshold.
+     */
+    public void stop() {
+        if (checkTask != null)
+            checkTask.cancel();
+        checkTask = null;
+    }
+    
+    @Override
+    public void reload() {
+        database.reload();
+    }
+    
+    /**
+     * Stops checking and shuts down the underlying database.
+     */
+    @Override
+    public void shutdown() {
+        stop();
+        database.shutdown();
+    }
+    
+    @Nullable
+    @Override
+    public DataSource getDataSource() {
+        return database.getDataSource();
+    }
+    
+    @Override
+    public Connection getConnection() throws SQLException {
+        return track(database.getConnection());
+    }
+    
+    @Override
+    public Connection getReadConnection() throws SQLException {
+        return track(database.getReadConnection());
+    }
+    
+    /**
+     * Reports every connection which has been held for longer than the threshold and has not been reported yet.
+     */
+    public void check() {
+        long now = System.nanoTime();
+        for (Borrow borrow : borrows) {
+            if (!borrow.reported && now - borrow.borrowedAt > thresholdNanos) {
+                borrow.reported = true;
+                debugger.debug(String.format("Connection held for %d ms by thread %s, borrowed at %s",
+                        (now - borrow.borrowedAt) / 1_000_000, borrow.threadName, borrow.getBorrowSite()));
+                debugger.debug(borrow.stackTrace);
+            }
+        }
+    }
+    
+    /**
+     * @return the currently borrowed connections, longest held first
+     */
+    public List<Borrower> getBorrowers() {
+        long now = System.nanoTime();
+        List<Borrower> borrowers = new ArrayList<>();
+        for (Borrow borrow : borrows)
+            borrowers.add(new Borrower(borrow.threadName, borrow.getBorrowSite(),
+                    Duration.ofNanos(now - borrow.borrowedAt), borrow.stackTrace.getStackTrace()));
+        borrowers.sort(Comparator.comparing(Borrower::getHoldTime).reversed());
+        return borrowers;
+    }
+    
+    /**
+     * Writes the currently borrowed connections to the debugger, longest held first.
+     */
+    public void report() {
+        List<Borrower> borrowers = getBorrowers();
+        debugger.debug(borrowers.size() + " connection(s) currently borrowed");
+        for (Borrower borrower : borrowers)
+            debugger.debug(String.format("  %d ms by thread %s at %s",
+                    borrower.getHoldTime().toMillis(), borrower.getThreadName(), borrower.getBorrowSite()));
+    }
+    
+    private Connection track(Connection con) {
+        Borrow borrow = new Borrow(con);
+        borrows.add(borrow);
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[] { Connection.class },
+                borrow);
+    }
+    
+    /**
+     * A connection which is currently borrowed.
+     */
+    public static class Borrower {
+        
+        private final String threadName;
+        private final String borrowSite;
+        private final Duration holdTime;
+        private final StackTraceElement[] stackTrace;
+        
+        private Borrower(String threadName, String borrowSite, Duration holdTime, StackTraceElement[] stackTrace) {
+            this.threadName = threadName;
+            this.borrowSite = borrowSite;
+            this.holdTime = holdTime;
+            this.stackTrace = stackTrace;
+        }
+        
+        /**
+         * @return the name of the thread which borrowed the connection
+         */
+        public String getThreadName() {
+            return threadName;
+        }
+        
+        /**
+         * @return the first stack frame outside of this library which led to the connection being borrowed
+         */
+        public String getBorrowSite() {
+            return borrowSite;
+        }
+        
+        /**
+         * @return how long the connection has been held
+         */
+        public Duration getHoldTime() {
+            return holdTime;
+        }
+        
+        /**
+         * @return the stack trace of the code which borrowed the connection
+         */
+        public StackTraceElement[] getStackTrace() {
+            return stackTrace.clone();
+        }
+        
+    }
+    
+    private class Borrow implements InvocationHandler {
+        
+        private final Connection con;
+        private final long borrowedAt = System.nanoTime();
+        private final String threadName = Thread.currentThread().getName();
+        private final Throwable stackTrace = new Throwable("Connection borrowed here");
+        private volatile boolean reported;
+        
+        private Borrow(Connection con) {
+            this.con = con;
+        }
+        
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (borrows.remove(this) && reported)
+                        debugger.debug(String.format("Connection borrowed at %s was closed after %d ms",
+                                getBorrowSite(), (System.nanoTime() - borrowedAt) / 1_000_000));
+                    break;
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+            }
+            try {
+                return method.invoke(con, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+        
+        private String getBorrowSite() {
+            for (StackTraceElement frame : stackTrace.getStackTrace()) {
+                // Skips this library's frames, such as Database.read or Query, even if it was relocated
+                if (!frame.getClassName().startsWith(PACKAGE))
+                    return frame.toString();
+            }
+            return "unknown";
+        }
+        
+    }
+    
+}
@@ -4,6 +4,7 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
@@ -16,6 +17,11 @@ public class ParameterizedQuery extends Query {
         super(sql);
     }
     
+    ParameterizedQuery(String sql, Duration timeout) {
+        super(sql);
+        this.timeout = timeout;
+    }
+    
     public ParameterizedQuery and(Object param) {
         parameters.add(param);
         return this;
@@ -31,29 +37,45 @@ public class ParameterizedQuery extends Query {
         return this;
     }
     
+    /**
+     * Creates a copy of this query and its parameters with its own timeout, which overrides the default timeout.
+     * @param timeout the timeout, or {@code null} to use the default timeout
+     * @return the new query
+     */
+    @Override
+    public ParameterizedQuery timeout(Duration timeout) {
+        return new ParameterizedQuery(sql, timeout).and(parameters);
+    }
+    
     @Override
     public boolean execute(Connection con) throws SQLException {
         try (PreparedStatement stmt = prepare(con)) {
-            return stmt.execute();
+            return track(stmt, stmt::execute);
         }
     }
     
     @Override
     public int executeUpdate(Connection con) throws SQLException {
         try (PreparedStatement stmt = prepare(con)) {
-            return stmt.executeUpdate();
+            return track(stmt, stmt::executeUpdate);
         }
     }
     
     @Override
     public ResultSet executeQuery(Connection con) throws SQLException {
-        try (PreparedStatement stmt = prepare(con)) {
-            return stmt.executeQuery();
+        PreparedStatement stmt = prepare(con);
+        try {
+            ResultSet resultSet = track(stmt, stmt::executeQuery);
+            stmt.closeOnCompletion(); // The statement is closed together with the result set
+            return resultSet;
+        } catch (SQLException e) {
+            stmt.close();
+            throw e;
         }
     }
     
     private PreparedStatement prepare(Connection con) throws SQLException {
-        PreparedStatement stmt = con.prepareStatement(sql);
+        PreparedStatement stmt = configure(con.prepareStatement(sql));
         int i = 0;
         for (Object o : parameters) {
             stmt.setObject(++i, o);
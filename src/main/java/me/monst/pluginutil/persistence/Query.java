@@ -1,13 +1,23 @@
 package me.monst.pluginutil.persistence;
 
+import me.monst.pluginutil.collection.LongHashSet;
+
 import java.sql.*;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
 public class Query {
     
+    private static final Map<Statement, Query> ACTIVE_STATEMENTS = new ConcurrentHashMap<>();
+    private static final AtomicLong TIMEOUTS = new AtomicLong();
+    private static volatile Duration defaultTimeout;
+    
     final String sql;
+    Duration timeout;
     
     Query(String sql) {
         this.sql = sql;
@@ -17,21 +27,76 @@ public class Query {
         return new Query(sql);
     }
     
+    /**
+     * Sets the timeout of every query which does not have its own timeout.
+     * @param timeout the default timeout, or {@code null} for no timeout
+     */
+    public static void setDefaultTimeout(Duration timeout) {
+        defaultTimeout = timeout;
+    }
+    
+    /**
+     * Cancels every statement that is currently executing, for example when the plugin is shutting down.
+     * @return the number of statements that were cancelled
+     */
+    public static int cancelAll() {
+        return cancel(ACTIVE_STATEMENTS.keySet());
+    }
+    
+    /**
+     * @return the number of statements that have exceeded their timeout since startup, including statements which
+     * were cancelled through {@link #cancel()} on drivers which report both the same way
+     */
+    public static long getTimeoutCount() {
+        return TIMEOUTS.get();
+    }
+    
+    /**
+     * Creates a copy of this query with its own timeout, which overrides the default timeout.
+     * The driver cancels the statement once the timeout has passed, with a precision of one second.
+     * @param timeout the timeout, or {@code null} to use the default timeout
+     * @return the new query
+     */
+    public Query timeout(Duration timeout) {
+        Query query = new Query(sql);
+        query.timeout = timeout;
+        return query;
+    }
+    
+    /**
+     * Cancels the statements of this query that are currently executing, on any thread.
+     * @return the number of statements that were cancelled
+     */
+    public int cancel() {
+        List<Statement> statements = new ArrayList<>();
+        ACTIVE_STATEMENTS.forEach((stmt, query) -> {
+            if (query == this)
+                statements.add(stmt);
+        });
+        return cancel(statements);
+    }
+    
     public boolean execute(Connection con) throws SQLException {
-        try (Statement stmt = con.createStatement()) {
-            return stmt.execute(sql);
+        try (Statement stmt = configure(con.createStatement())) {
+            return track(stmt, () -> stmt.execute(sql));
         }
     }
     
     public int executeUpdate(Connection con) throws SQLException {
-        try (Statement stmt = con.createStatement()) {
-            return stmt.executeUpdate(sql);
+        try (Statement stmt = configure(con.createStatement())) {
+            return track(stmt, () -> stmt.executeUpdate(sql));
         }
     }
     
     public ResultSet executeQuery(Connection con) throws SQLException {
-        try (Statement stmt = con.createStatement()) {
-            return stmt.executeQuery(sql);
+        Statement stmt = configure(con.createStatement());
+        try {
+            ResultSet resultSet = track(stmt, () -> stmt.executeQuery(sql));
+            stmt.closeOnCompletion(); // The statement is closed together with the result set
+            return resultSet;
+        } catch (SQLException e) {
+            stmt.close();
+            throw e;
         }
     }
     
@@ -121,26 +186,229 @@ public class Query {
         }
     }
     
+    /**
+     * Reads the first column of every row as a {@code long}, without boxing.
+     * The array has one element per row, in row order.
+     * @param con the connection
+     * @return the values of the first column
+     * @throws SQLException if the query failed, or a value was SQL NULL
+     * @see #asLongArray(Connection, long)
+     */
+    public long[] asLongArray(Connection con) throws SQLException {
+        return asLongArray(con, false, 0);
+    }
+    
+    /**
+     * Reads the first column of every row as a {@code long}, without boxing,
+     * replacing SQL NULLs with the given value. The array has one element per row, in row order.
+     * @param con the connection
+     * @param nullValue the value to use for SQL NULLs
+     * @return the values of the first column
+     * @throws SQLException if the query failed
+     */
+    public long[] asLongArray(Connection con, long nullValue) throws SQLException {
+        return asLongArray(con, true, nullValue);
+    }
+    
+    private long[] asLongArray(Connection con, boolean nullable, long nullValue) throws SQLException {
+        try (ResultSet resultSet = executeQuery(con)) {
+            long[] array = new long[16];
+            int size = 0;
+            while (resultSet.next()) {
+                long value = resultSet.getLong(1);
+                if (resultSet.wasNull()) {
+                    if (!nullable)
+                        throw new SQLException("Row " + (size + 1) + " is NULL");
+                    value = nullValue;
+                }
+                if (size == array.length)
+                    array = Arrays.copyOf(array, size << 1);
+                array[size++] = value;
+            }
+            return Arrays.copyOf(array, size);
+        }
+    }
+    
+    /**
+     * Reads the first column of every row as an {@code int}, without boxing.
+     * The array has one element per row, in row order.
+     * @param con the connection
+     * @return the values of the first column
+     * @throws SQLException if the query failed, or a value was SQL NULL
+     * @see #asIntArray(Connection, int)
+     */
+    public int[] asIntArray(Connection con) throws SQLException {
+        return asIntArray(con, false, 0);
+    }
+    
+    /**
+     * Reads the first column of every row as an {@code int}, without boxing,
+     * replacing SQL NULLs with the given value. The array has one element per row, in row order.
+     * @param con the connection
+     * @param nullValue the value to use for SQL NULLs
+     * @return the values of the first column
+     * @throws SQLException if the query failed
+     */
+    public int[] asIntArray(Connection con, int nullValue) throws SQLException {
+        return asIntArray(con, true, nullValue);
+    }
+    
+    private int[] asIntArray(Connection con, boolean nullable, int nullValue) throws SQLException {
+        try (ResultSet resultSet = executeQuery(con)) {
+            int[] array = new int[16];
+            int size = 0;
+            while (resultSet.next()) {
+                int value = resultSet.getInt(1);
+                if (resultSet.wasNull()) {
+                    if (!nullable)
+                        throw new SQLException("Row " + (size + 1) + " is NULL");
+                    value = nullValue;
+                }
+                if (size == array.length)
+                    array = Arrays.copyOf(array, size << 1);
+                array[size++] = value;
+            }
+            return Arrays.copyOf(array, size);
+        }
+    }
+    
+    /**
+     * Reads the first column of every row as a {@code double}, without boxing.
+     * The array has one element per row, in row order.
+     * @param con the connection
+     * @return the values of the first column
+     * @throws SQLException if the query failed, or a value was SQL NULL
+     * @see #asDoubleArray(Connection, double)
+     */
+    public double[] asDoubleArray(Connection con) throws SQLException {
+        return asDoubleArray(con, false, 0);
+    }
+    
+    /**
+     * Reads the first column of every row as a {@code double}, without boxing,
+     * replacing SQL NULLs with the given value. The array has one element per row, in row order.
+     * @param con the connection
+     * @param nullValue the value to use for SQL NULLs
+     * @return the values of the first column
+     * @throws SQLException if the query failed
+     */
+    public double[] asDoubleArray(Connection con, double nullValue) throws SQLException {
+        return asDoubleArray(con, true, nullValue);
+    }
+    
+    private double[] asDoubleArray(Connection con, boolean nullable, double nullValue) throws SQLException {
+        try (ResultSet resultSet = executeQuery(con)) {
+            double[] array = new double[16];
+            int size = 0;
+            while (resultSet.next()) {
+                double value = resultSet.getDouble(1);
+                if (resultSet.wasNull()) {
+                    if (!nullable)
+                        throw new SQLException("Row " + (size + 1) + " is NULL");
+                    value = nullValue;
+                }
+                if (size == array.length)
+                    array = Arrays.copyOf(array, size << 1);
+                array[size++] = value;
+            }
+            return Arrays.copyOf(array, size);
+        }
+    }
+    
+    /**
+     * Reads the first column of every row into a set of {@code long}s, without boxing.
+     * Duplicate values are kept once, and SQL NULLs are skipped.
+     * @param con the connection
+     * @return the distinct values of the first column
+     * @throws SQLException if the query failed
+     */
+    public LongHashSet asLongSet(Connection con) throws SQLException {
+        try (ResultSet resultSet = executeQuery(con)) {
+            LongHashSet set = new LongHashSet();
+            while (resultSet.next()) {
+                long value = resultSet.getLong(1);
+                if (!resultSet.wasNull()) // SQL NULLs are skipped
+                    set.add(value);
+            }
+            return set;
+        }
+    }
+    
     public ParameterizedQuery with(Object param) {
-        return new ParameterizedQuery(sql).and(param);
+        return new ParameterizedQuery(sql, timeout).and(param);
     }
     
     public ParameterizedQuery with(Object... params) {
-        return new ParameterizedQuery(sql).and(params);
+        return new ParameterizedQuery(sql, timeout).and(params);
     }
     
     public ParameterizedQuery with(Iterable<?> params) {
-        return new ParameterizedQuery(sql).and(params);
+        return new ParameterizedQuery(sql, timeout).and(params);
     }
     
     public ParameterizedQuery in(Collection<?> params) {
         String formattedSQL = String.format(sql, params.stream().map(o -> "?").collect(Collectors.joining(",")));
-        return new ParameterizedQuery(formattedSQL).and(params);
+        return new ParameterizedQuery(formattedSQL, timeout).and(params);
     }
     
     public <T> ParameterizedQuery in(Collection<T> params, Function<T, Object> valueExtractor) {
         String formattedSQL = String.format(sql, params.stream().map(o -> "?").collect(Collectors.joining(",")));
-        return new ParameterizedQuery(formattedSQL).and(params.stream().map(valueExtractor).collect(Collectors.toList()));
+        return new ParameterizedQuery(formattedSQL, timeout).and(params.stream().map(valueExtractor).collect(Collectors.toList()));
+    }
+    
+    /**
+     * Applies the timeout of this query, or else the default timeout, to a new statement.
+     */
+    <S extends Statement> S configure(S stmt) throws SQLException {
+        Duration timeout = this.timeout != null ? this.timeout : defaultTimeout;
+        if (timeout != null && !timeout.isZero() && !timeout.isNegative()) {
+            long seconds = (timeout.toMillis() + 999) / 1000; // Round up, since zero would mean no timeout
+            try {
+                stmt.setQueryTimeout((int) Math.min(seconds, Integer.MAX_VALUE));
+            } catch (SQLException e) {
+                stmt.close();
+                throw e;
+            }
+        }
+        return stmt;
+    }
+    
+    /**
+     * Executes a statement while keeping track of it, so that it can be cancelled.
+     */
+    <R> R track(Statement stmt, Execution<R> execution) throws SQLException {
+        ACTIVE_STATEMENTS.put(stmt, this);
+        try {
+            return execution.execute();
+        } catch (SQLException e) {
+            if (isTimeout(e))
+                TIMEOUTS.incrementAndGet();
+            throw e;
+        } finally {
+            ACTIVE_STATEMENTS.remove(stmt);
+        }
+    }
+    
+    /**
+     * Checks whether an exception reports an exceeded timeout. Not every driver throws a
+     * {@link SQLTimeoutException}, so the standard timeout state {@code HYT00} and PostgreSQL's query cancellation
+     * state {@code 57014} are counted as well.
+     */
+    private static boolean isTimeout(SQLException e) {
+        return e instanceof SQLTimeoutException || "HYT00".equals(e.getSQLState()) || "57014".equals(e.getSQLState());
+    }
+    
+    private static int cancel(Collection<Statement> statements) {
+        int cancelled = 0;
+        for (Statement stmt : statements) {
+            try {
+                stmt.cancel();
+                cancelled++;
+            } catch (SQLException ignored) {
+                // The statement has completed or was closed in the meantime
+            }
+        }
+        return cancelled;
     }
     
     public <T> BatchBuilder<T> batch(Collection<T> elements) {
@@ -179,12 +447,12 @@ public class Query {
         
         public int executeUpdate(Connection con) throws SQLException {
             try (PreparedStatement stmt = prepare(con)) {
-                return stmt.executeBatch().length;
+                return track(stmt, () -> stmt.executeBatch().length);
             }
         }
         
         private PreparedStatement prepare(Connection con) throws SQLException {
-            PreparedStatement stmt = con.prepareStatement(sql);
+            PreparedStatement stmt = configure(con.prepareStatement(sql));
             for (T element : elements) {
                 int paramIndex = 1;
                 for (Function<T, List<Object>> deconstructor : deconstructors) {
@@ -198,4 +466,9 @@ public class Query {
         
     }
     
+    @FunctionalInterface
+    interface Execution<R> {
+        R execute() throws SQLException;
+    }
+    
 }
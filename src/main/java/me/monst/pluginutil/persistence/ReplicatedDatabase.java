@@ -0,0 +1,197 @@
+package me.monst.pluginutil.persistence;
+
+import javax.annotation.Nullable;
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A {@link Database} which splits reads and writes across a primary database and a pool of read replicas.
+ * Connections obtained through {@link #getReadConnection()} (and therefore {@link #read(ConnectionFunction)})
+ * are taken from the replicas in round-robin order, while {@link #getConnection()} always goes to the primary.
+ * <p>
+ * Within a {@link #transaction(ConnectionFunction)}, every connection obtained on the same thread, read or write,
+ * is the transaction's own primary connection, so reads always see the transaction's writes.
+ * <p>
+ * A replica that fails to hand out a connection is considered unhealthy and skipped for a while. When no replica
+ * is healthy, reads fall back to the primary.
+ */
+public class ReplicatedDatabase implements Database {
+    
+    private final Database primary;
+    private final List<Replica> replicas = new ArrayList<>();
+    private final long retryAfterMillis;
+    private final AtomicInteger nextReplica = new AtomicInteger();
+    private final ThreadLocal<Connection> transaction = new ThreadLocal<>();
+    
+    /**
+     * Creates a new replicated database.
+     * @param primary the primary database, which receives all writes
+     * @param replicas the replica data sources, which receive reads
+     * @param retryAfter how long an unhealthy replica is skipped before it is tried again
+     */
+    public ReplicatedDatabase(Database primary, List<? extends DataSource> replicas, Duration retryAfter) {
+        this.primary = primary;
+        for (DataSource replica : replicas)
+            this.replicas.add(new Replica(replica));
+        this.retryAfterMillis = retryAfter.toMillis();
+    }
+    
+    /**
+     * Reloads the primary database and gives every replica another chance.
+     */
+    @Override
+    public void reload() {
+        primary.reload();
+        replicas.forEach(replica -> replica.unhealthyUntil = 0);
+    }
+    
+    /**
+     * Shuts down the primary database and closes any replica data sources which can be closed.
+     */
+    @Override
+    public void shutdown() {
+        primary.shutdown();
+        for (Replica replica : replicas) {
+            if (!(replica.dataSource instanceof AutoCloseable))
+                continue;
+            try {
+                ((AutoCloseable) replica.dataSource).close();
+            } catch (Exception ignored) {}
+        }
+    }
+    
+    /**
+     * @return the data source of the primary database
+     */
+    @Nullable
+    @Override
+    public DataSource getDataSource() {
+        return primary.getDataSource();
+    }
+    
+    /**
+     * Gets a connection to the primary database, or the current transaction's connection if there is one.
+     * @return a connection to the primary database
+     * @throws SQLException if no connection could be obtained
+     */
+    @Override
+    public Connection getConnection() throws SQLException {
+        Connection con = transaction.get();
+        if (con != null)
+            return borrowed(con);
+        return primary.getConnection();
+    }
+    
+    /**
+     * Gets a connection to the next healthy replica, or the current transaction's connection if there is one.
+     * If no replica is healthy, a connection to the primary database is returned instead.
+     * @return a connection for read-only queries
+     * @throws SQLException if no connection could be obtained
+     */
+    @Override
+    public Connection getReadConnection() throws SQLException {
+        Connection con = transaction.get();
+        if (con != null)
+            return borrowed(con);
+        long now = System.currentTimeMillis();
+        for (int attempt = 0; attempt < replicas.size(); attempt++) {
+            Replica replica = replicas.get(Math.floorMod(nextReplica.getAndIncrement(), replicas.size()));
+            if (replica.unhealthyUntil > now)
+                continue;
+            try {
+                return replica.dataSource.getConnection();
+            } catch (SQLException e) {
+                replica.unhealthyUntil = now + retryAfterMillis;
+            }
+        }
+        return primary.getConnection();
+    }
+    
+    /**
+     * Runs a function in a transaction on the primary database. Every connection obtained from this database on the
+     * current thread while the function runs is the transaction's connection, so reads see the transaction's writes.
+     * The transaction is committed if the function completes normally and rolled back otherwise.
+     * Nested calls join the outer transaction.
+     * @param work the function to run in the transaction
+     * @return the result of the function
+     * @param <T> the type of the result
+     * @throws SQLException if the function failed or the transaction could not be committed
+     */
+    public <T> T transaction(ConnectionFunction<T> work) throws SQLException {
+        Connection current = transaction.get();
+        if (current != null)
+            return work.apply(current);
+        try (Connection con = primary.getConnection()) {
+            boolean autoCommit = con.getAutoCommit();
+            con.setAutoCommit(false);
+            transaction.set(con);
+            boolean committed = false;
+            try {
+                T result = work.apply(con);
+                con.commit();
+                committed = true;
+                return result;
+            } catch (SQLException | RuntimeException e) {
+                try {
+                    con.rollback();
+                } catch (SQLException rollbackFailure) {
+                    e.addSuppressed(rollbackFailure); // Keep the original cause
+                }
+                try {
+                    con.setAutoCommit(autoCommit);
+                } catch (SQLException resetFailure) {
+                    e.addSuppressed(resetFailure);
+                }
+                throw e;
+            } finally {
+                transaction.remove();
+                if (committed)
+                    con.setAutoCommit(autoCommit);
+            }
+        }
+    }
+    
+    /**
+     * @return the number of replicas which are currently considered healthy
+     */
+    public int getHealthyReplicas() {
+        long now = System.currentTimeMillis();
+        return (int) replicas.stream().filter(replica -> replica.unhealthyUntil <= now).count();
+    }
+    
+    /**
+     * Wraps the transaction's connection so that callers closing it in a try-with-resources block
+     * do not end the transaction.
+     */
+    private static Connection borrowed(Connection con) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[] { Connection.class },
+                (proxy, method, args) -> {
+                    if (method.getName().equals("close"))
+                        return null;
+                    try {
+                        return method.invoke(con, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+    
+    private static class Replica {
+        
+        private final DataSource dataSource;
+        private volatile long unhealthyUntil;
+        
+        private Replica(DataSource dataSource) {
+            this.dataSource = dataSource;
+        }
+        
+    }
+    
+}
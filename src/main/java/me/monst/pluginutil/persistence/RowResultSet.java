@@ -0,0 +1,170 @@
+package me.monst.pluginutil.persistence;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.*;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A forward-only, read-only result set over the rows of a table archive, so that existing reconstructors can read
+ * rows which do not come from a database. Only the column getters commonly used by reconstructors are supported.
+ */
+class RowResultSet implements InvocationHandler {
+    
+    private final TableArchive.Reader reader;
+    private final Map<String, Integer> columnIndexes = new HashMap<>();
+    private Object[] row;
+    private boolean wasNull;
+    private boolean closed;
+    
+    private RowResultSet(TableArchive.Reader reader) {
+        this.reader = reader;
+        String[] names = reader.getColumnNames();
+        for (int i = names.length - 1; i >= 0; i--) // The first of several columns with the same name wins
+            columnIndexes.put(names[i].toLowerCase(Locale.ROOT), i + 1);
+    }
+    
+    /**
+     * Creates a result set over the rows of the reader. Closing the result set closes the reader.
+     */
+    static ResultSet of(TableArchive.Reader reader) {
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(),
+                new Class<?>[] { ResultSet.class }, new RowResultSet(reader));
+    }
+    
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        switch (method.getName()) {
+            case "next":
+                if (closed)
+                    throw new SQLException("Result set is closed");
+                try {
+                    row = reader.next();
+                } catch (IOException e) {
+                    throw new SQLException("Failed to read row", e);
+                }
+                return row != null;
+            case "close":
+                if (!closed) {
+                    closed = true;
+                    try {
+                        reader.close();
+                    } catch (IOException ignored) {}
+                }
+                return null;
+            case "isClosed":
+                return closed;
+            case "wasNull":
+                return wasNull;
+            case "findColumn":
+                return columnIndex(args[0]);
+            case "unwrap":
+                throw new SQLException("Not a wrapper");
+            case "isWrapperFor":
+                return false;
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "equals":
+                return proxy == args[0];
+            case "toString":
+                return "RowResultSet";
+        }
+        if (!method.getName().startsWith("get") || args == null || args.length == 0)
+            throw new SQLFeatureNotSupportedException(method.getName());
+        Object value = value(args[0]);
+        wasNull = value == null;
+        switch (method.getName()) {
+            case "getObject":
+                if (args.length == 2 && args[1] instanceof Class)
+                    return convert(value, (Class<?>) args[1]);
+                return value;
+            case "getString":
+            case "getNString":
+                return value == null ? null : value.toString();
+            case "getBoolean":
+                return convert(value, Boolean.class) == Boolean.TRUE;
+            case "getByte":
+                return value == null ? (byte) 0 : ((Number) convert(value, Number.class)).byteValue();
+            case "getShort":
+                return value == null ? (short) 0 : ((Number) convert(value, Number.class)).shortValue();
+            case "getInt":
+                return value == null ? 0 : ((Number) convert(value, Number.class)).intValue();
+            case "getLong":
+                return value == null ? 0L : ((Number) convert(value, Number.class)).longValue();
+            case "getFloat":
+                return value == null ? 0f : ((Number) convert(value, Number.class)).floatValue();
+            case "getDouble":
+                return value == null ? 0d : ((Number) convert(value, Number.class)).doubleValue();
+            case "getBigDecimal":
+                return convert(value, BigDecimal.class);
+            case "getBytes":
+                return convert(value, byte[].class);
+            case "getTimestamp":
+                return convert(value, Timestamp.class);
+            case "getDate":
+                return convert(value, Date.class);
+            case "getTime":
+                return convert(value, Time.class);
+            default:
+                throw new SQLFeatureNotSupportedException(method.getName());
+        }
+    }
+    
+    private Object value(Object column) throws SQLException {
+        if (row == null)
+            throw new SQLException("No current row");
+        return row[columnIndex(column) - 1];
+    }
+    
+    private int columnIndex(Object column) throws SQLException {
+        if (column instanceof Integer) {
+            int index = (Integer) column;
+            if (index < 1 || index > reader.getColumnNames().length)
+                throw new SQLException("Column index out of range: " + index);
+            return index;
+        }
+        Integer index = columnIndexes.get(String.valueOf(column).toLowerCase(Locale.ROOT));
+        if (index == null)
+            throw new SQLException("Unknown column: " + column);
+        return index;
+    }
+    
+    private static Object convert(Object value, Class<?> type) throws SQLException {
+        if (value == null || type.isInstance(value))
+            return value;
+        if (type == Boolean.class) {
+            if (value instanceof Number)
+                return ((Number) value).intValue() != 0;
+            return "true".equalsIgnoreCase(value.toString()) || "1".equals(value.toString());
+        }
+        if (value instanceof Boolean && (type == Number.class || Number.class.isAssignableFrom(type)))
+            value = (Boolean) value ? 1 : 0;
+        try {
+            if (type == Number.class || type == BigDecimal.class)
+                return value instanceof Number ? new BigDecimal(value.toString()) : new BigDecimal(value.toString().trim());
+            if (type == Integer.class)
+                return value instanceof Number ? ((Number) value).intValue() : Integer.valueOf(value.toString().trim());
+            if (type == Long.class)
+                return value instanceof Number ? ((Number) value).longValue() : Long.valueOf(value.toString().trim());
+            if (type == Double.class)
+                return value instanceof Number ? ((Number) value).doubleValue() : Double.valueOf(value.toString().trim());
+            if (type == String.class)
+                return value.toString();
+        } catch (NumberFormatException e) {
+            throw new SQLException("Cannot convert " + value + " to " + type.getSimpleName(), e);
+        }
+        if (type == Timestamp.class && value instanceof java.util.Date)
+            return new Timestamp(((java.util.Date) value).getTime());
+        if (type == Date.class && value instanceof java.util.Date)
+            return new Date(((java.util.Date) value).getTime());
+        if (type == Time.class && value instanceof java.util.Date)
+            return new Time(((java.util.Date) value).getTime());
+        throw new SQLException("Cannot convert " + value.getClass().getSimpleName() + " to " + type.getSimpleName());
+    }
+    
+}
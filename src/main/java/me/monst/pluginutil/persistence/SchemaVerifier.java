@@ -0,0 +1,276 @@
+package me.monst.pluginutil.persistence;
+
+import me.monst.pluginutil.Promise;
+import org.bukkit.plugin.Plugin;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Prepares a database at startup: opens pooled connections in parallel and verifies that the expected tables and
+ * columns exist, creating missing tables.
+ * <p>
+ * All tables are verified with a single metadata query, rather than one query per table. Once the schema has been
+ * verified, a fingerprint of the expected schema and the database URL is stored in the plugin's data folder, and
+ * later startups only check that the expected tables still exist for as long as neither has changed. Each verifier
+ * has its own fingerprint file, named {@code .schema-fingerprint-} followed by a hash of the database URL and the
+ * expected table names. Delete the fingerprint files to force a new verification.
+ * <pre>{@code
+ * new SchemaVerifier(plugin, database)
+ *         .table("accounts", Query.of("CREATE TABLE accounts (...)"), "account_id", "owner", "balance")
+ *         .table("banks", Query.of("CREATE TABLE banks (...)"), "bank_id", "name")
+ *         .prepareAsync(4);
+ * }</pre>
+ */
+public class SchemaVerifier {
+    
+    private static final String FINGERPRINT_FILE = ".schema-fingerprint-";
+    
+    private final Plugin plugin;
+    private final Database database;
+    private final Map<String, ExpectedTable> tables = new LinkedHashMap<>();
+    private int poolSize = Integer.MAX_VALUE;
+    
+    /**
+     * Creates a new schema verifier.
+     * @param plugin the plugin
+     * @param database the database to prepare
+     */
+    public SchemaVerifier(Plugin plugin, Database database) {
+        this.plugin = plugin;
+        this.database = database;
+    }
+    
+    /**
+     * Adds an expected table. Missing tables are created in the order they were added.
+     * @param name the name of the table
+     * @param createStatement the statement creating the table
+     * @param columns the names of the columns the table is expected to have
+     * @return this schema verifier
+     */
+    public SchemaVerifier table(String name, Query createStatement, String... columns) {
+        tables.put(name.toLowerCase(Locale.ROOT), new ExpectedTable(name, createStatement, Arrays.asList(columns)));
+        return this;
+    }
+    
+    /**
+     * Sets the maximum number of connections the database's connection pool can hold. {@link #warmUp(int)} never
+     * opens more connections than this, since the pool would block once it is exhausted. Unlimited by default.
+     * @param poolSize the maximum size of the connection pool
+     * @return this schema verifier
+     */
+    public SchemaVerifier poolSize(int poolSize) {
+        if (poolSize <= 0)
+            throw new IllegalArgumentException("Pool size must be positive");
+        this.poolSize = poolSize;
+        return this;
+    }
+    
+    /**
+     * Warms up the connection pool and verifies the schema on an async thread, both at the same time.
+     * @param connections the number of connections to open in parallel
+     * @return a promise which resolves to the names of the tables that were created
+     */
+    public Promise<Set<String>> prepareAsync(int connections) {
+        return Promise.async(plugin, () -> {
+            ExecutorService executor = Executors.newSingleThreadExecutor();
+            try {
+                Future<?> warmUp = executor.submit(() -> {
+                    warmUp(connections);
+                    return null;
+                });
+                Set<String> created = verify();
+                warmUp.get();
+                return created;
+            } finally {
+                executor.shutdown();
+            }
+        });
+    }
+    
+    /**
+     * Opens the given number of connections in parallel, and closes them once they are all open,
+     * so that the connection pool holds that many idle connections.
+     * At most as many connections as the {@link #poolSize(int) pool size} are opened.
+     * @param connections the number of connections to open
+     * @throws SQLException if a connection could not be opened
+     * @throws InterruptedException if interrupted while waiting for the connections
+     */
+    public void warmUp(int connections) throws SQLException, InterruptedException {
+        connections = Math.min(connections, poolSize);
+        if (connections <= 0)
+            return;
+        ExecutorService executor = Executors.newFixedThreadPool(connections);
+        CountDownLatch allOpen = new CountDownLatch(connections);
+        List<Future<?>> futures = new ArrayList<>(connections);
+        try {
+            for (int i = 0; i < connections; i++) {
+                futures.add(executor.submit(() -> {
+                    try (Connection con = database.getConnection()) {
+                        allOpen.countDown();
+                        allOpen.await(); // Hold on to the connection, so the pool has to open a new one for the others
+                    } finally {
+                        allOpen.countDown(); // Release the others if this one failed
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures)
+                future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SQLException)
+                throw (SQLException) e.getCause();
+            throw new SQLException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+    
+    /**
+     * Verifies that every expected table and column exists, creating missing tables.
+     * Missing columns of existing tables are logged, but not repaired.
+     * If the schema was already verified by an earlier startup, only checks that the expected tables still exist.
+     * @return the names of the tables that were created
+     * @throws SQLException if the schema could not be read or a table could not be created
+     */
+    public Set<String> verify() throws SQLException {
+        Set<String> created = new LinkedHashSet<>();
+        try (Connection con = database.getConnection()) {
+            String url = con.getMetaData().getURL();
+            Path fingerprintFile = fingerprintFile(url);
+            String fingerprint = fingerprint(url);
+            if (fingerprint.equals(readFingerprint(fingerprintFile)) && tablesExist(con))
+                return created;
+            Map<String, Set<String>> existing = readSchema(con);
+            boolean complete = true;
+            for (Map.Entry<String, ExpectedTable> entry : tables.entrySet()) {
+                ExpectedTable table = entry.getValue();
+                Set<String> columns = existing.get(entry.getKey());
+                if (columns == null) {
+                    table.createStatement.executeUpdate(con);
+                    created.add(table.name);
+                    continue;
+                }
+                for (String column : table.columns) {
+                    if (!columns.contains(column.toLowerCase(Locale.ROOT))) {
+                        plugin.getLogger().severe("Table " + table.name + " is missing column " + column + "!");
+                        complete = false;
+                    }
+                }
+            }
+            if (complete)
+                writeFingerprint(fingerprintFile, fingerprint);
+        }
+        return created;
+    }
+    
+    /**
+     * Checks that every expected table exists in the current catalog and schema, without reading their columns.
+     * Guards the fingerprint against tables that were dropped since they were verified.
+     */
+    private boolean tablesExist(Connection con) throws SQLException {
+        Set<String> missing = new HashSet<>(tables.keySet());
+        try (ResultSet resultSet = con.getMetaData().getTables(con.getCatalog(), schema(con), null, null)) {
+            while (resultSet.next() && !missing.isEmpty())
+                missing.remove(resultSet.getString("TABLE_NAME").toLowerCase(Locale.ROOT));
+        }
+        return missing.isEmpty();
+    }
+    
+    /**
+     * Reads the columns of every table in the current catalog and schema with a single metadata query.
+     * @return the lower-cased column names of each table, by lower-cased table name
+     */
+    private Map<String, Set<String>> readSchema(Connection con) throws SQLException {
+        DatabaseMetaData metaData = con.getMetaData();
+        Map<String, Set<String>> columns = new HashMap<>();
+        try (ResultSet resultSet = metaData.getColumns(con.getCatalog(), schema(con), null, null)) {
+            while (resultSet.next()) {
+                String table = resultSet.getString("TABLE_NAME").toLowerCase(Locale.ROOT);
+                String column = resultSet.getString("COLUMN_NAME").toLowerCase(Locale.ROOT);
+                columns.computeIfAbsent(table, t -> new HashSet<>()).add(column);
+            }
+        }
+        return columns;
+    }
+    
+    private static String schema(Connection con) {
+        try {
+            return con.getSchema();
+        } catch (SQLException | AbstractMethodError e) { // Not every driver implements this
+            return null;
+        }
+    }
+    
+    /**
+     * Gets the fingerprint file of this verifier, which is keyed by the database URL and the expected table names,
+     * so that verifiers of different databases or tables in the same plugin do not overwrite each other's fingerprint.
+     */
+    private Path fingerprintFile(String url) {
+        StringBuilder key = new StringBuilder(String.valueOf(url));
+        new TreeSet<>(tables.keySet()).forEach(table -> key.append('\n').append(table));
+        return plugin.getDataFolder().toPath().resolve(FINGERPRINT_FILE + sha256(key.toString()).substring(0, 16));
+    }
+    
+    private String fingerprint(String url) {
+        StringBuilder spec = new StringBuilder(String.valueOf(url));
+        tables.values().forEach(table -> spec.append('\n').append(table.name)
+                .append(':').append(table.createStatement.sql)
+                .append(':').append(String.join(",", table.columns)));
+        return sha256(spec.toString());
+    }
+    
+    private static String sha256(String text) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (byte b : hash)
+                hex.append(String.format("%02x", b));
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // Every Java platform is required to support SHA-256
+        }
+    }
+    
+    private static String readFingerprint(Path file) {
+        try {
+            return Files.exists(file) ? new String(Files.readAllBytes(file), StandardCharsets.UTF_8).trim() : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+    
+    private void writeFingerprint(Path file, String fingerprint) {
+        try {
+            Files.createDirectories(file.getParent());
+            Files.write(file, fingerprint.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            plugin.getLogger().warning("Failed to save schema fingerprint: " + e.getMessage());
+        }
+    }
+    
+    private static class ExpectedTable {
+        
+        private final String name;
+        private final Query createStatement;
+        private final List<String> columns;
+        
+        private ExpectedTable(String name, Query createStatement, List<String> columns) {
+            this.name = name;
+            this.createStatement = createStatement;
+            this.columns = columns;
+        }
+        
+    }
+    
+}
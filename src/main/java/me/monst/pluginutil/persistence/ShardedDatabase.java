@@ -0,0 +1,180 @@
+package me.monst.pluginutil.persistence;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Spreads data over several backend {@link Database}s by a shard key, such as a player's UUID.
+ * Keys are assigned to shards by consistent hashing: every shard owns a number of points on a hash ring, and a key
+ * belongs to the shard owning the first point at or after the key's hash. Adding or removing a shard therefore only
+ * moves the keys of roughly one shard's share of the ring. Shards are identified by name rather than by position,
+ * so the assignment stays stable as long as the names do.
+ * <p>
+ * Since every query has to be routed by its shard key, this is not a {@link Database} itself. Use
+ * {@link #getConnection(Object)} or {@link #onShard(Object, ConnectionFunction)} for single-shard queries, and
+ * {@link #scatter(ConnectionFunction)} for queries spanning all shards.
+ */
+public class ShardedDatabase {
+    
+    private final Map<String, Database> shards;
+    private final NavigableMap<Long, Database> ring = new TreeMap<>();
+    private final ExecutorService executor;
+    
+    /**
+     * Creates a new sharded database.
+     * @param shards the backend databases, by their stable shard names
+     * @param pointsPerShard the number of points each shard owns on the hash ring; more points spread keys more evenly
+     * @throws IllegalArgumentException if there are no shards, or the number of points is not positive
+     */
+    public ShardedDatabase(Map<String, ? extends Database> shards, int pointsPerShard) {
+        if (shards.isEmpty())
+            throw new IllegalArgumentException("At least one shard is required");
+        if (pointsPerShard <= 0)
+            throw new IllegalArgumentException("Points per shard must be positive");
+        this.shards = new LinkedHashMap<>(shards);
+        this.shards.forEach((name, shard) -> {
+            for (int point = 0; point < pointsPerShard; point++)
+                ring.put(hash(name + "#" + point), shard);
+        });
+        AtomicInteger threads = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(shards.size(), runnable -> {
+            Thread thread = new Thread(runnable, "Shard Query Thread #" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    /**
+     * Gets the shard responsible for the given key.
+     * @param shardKey the shard key
+     * @return the shard the key belongs to
+     */
+    public Database getShard(Object shardKey) {
+        Map.Entry<Long, Database> point = ring.ceilingEntry(hash(shardKey));
+        return point != null ? point.getValue() : ring.firstEntry().getValue(); // Wrap around the ring
+    }
+    
+    /**
+     * @return the backend databases, by their shard names
+     */
+    public Map<String, Database> getShards() {
+        return Collections.unmodifiableMap(shards);
+    }
+    
+    /**
+     * Gets a connection to the shard responsible for the given key.
+     * @param shardKey the shard key
+     * @return a connection to the shard
+     * @throws SQLException if no connection could be obtained
+     */
+    public Connection getConnection(Object shardKey) throws SQLException {
+        return getShard(shardKey).getConnection();
+    }
+    
+    /**
+     * Runs a function on a connection to the shard responsible for the given key.
+     * @param shardKey the shard key
+     * @param function the function to run
+     * @return the result of the function
+     * @param <T> the type of the result
+     * @throws SQLException if the function failed or no connection could be obtained
+     */
+    public <T> T onShard(Object shardKey, ConnectionFunction<T> function) throws SQLException {
+        return getShard(shardKey).write(function);
+    }
+    
+    /**
+     * Runs a query on every shard in parallel and merges the results into a single list.
+     * The results of each shard keep their order, and shards are merged in the order they were given in.
+     * @param query the query to run on each shard, typically a {@link Query} read like {@code asList}
+     * @return the merged results of all shards
+     * @param <T> the type of the results
+     * @throws SQLException if the query failed on any shard
+     */
+    public <T> List<T> scatter(ConnectionFunction<? extends Collection<T>> query) throws SQLException {
+        List<T> merged = new ArrayList<>();
+        for (Collection<T> results : gather(query))
+            merged.addAll(results);
+        return merged;
+    }
+    
+    /**
+     * Runs a function on every shard in parallel and returns the result of each shard, in the order the shards
+     * were given in. This can be used for aggregates which need to be combined differently than by concatenation,
+     * such as counts or sums.
+     * @param function the function to run on each shard, using a read connection
+     * @return the result of each shard
+     * @param <T> the type of the results
+     * @throws SQLException if the function failed on any shard
+     */
+    public <T> List<T> gather(ConnectionFunction<T> function) throws SQLException {
+        List<Future<T>> futures = new ArrayList<>(shards.size());
+        for (Database shard : shards.values())
+            futures.add(executor.submit(() -> shard.read(function)));
+        List<T> results = new ArrayList<>(futures.size());
+        try {
+            for (Future<T> future : futures)
+                results.add(future.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for shards", e);
+        } catch (ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            if (e.getCause() instanceof SQLException)
+                throw (SQLException) e.getCause();
+            throw new SQLException(e.getCause());
+        }
+        return results;
+    }
+    
+    /**
+     * Reloads every shard.
+     */
+    public void reload() {
+        shards.values().forEach(Database::reload);
+    }
+    
+    /**
+     * Stops the query threads and shuts down every shard.
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+        shards.values().forEach(Database::shutdown);
+    }
+    
+    /**
+     * Hashes a shard key to a position on the ring. The hash must be stable across restarts,
+     * so keys are hashed from their bits or their string form, never from their object hash code.
+     */
+    private static long hash(Object key) {
+        if (key instanceof UUID) {
+            UUID uuid = (UUID) key;
+            return mix(uuid.getMostSignificantBits() ^ mix(uuid.getLeastSignificantBits()));
+        }
+        if (key instanceof Long || key instanceof Integer || key instanceof Short || key instanceof Byte)
+            return mix(((Number) key).longValue());
+        long hash = 0xcbf29ce484222325L; // 64-bit FNV-1a
+        for (byte b : String.valueOf(key).getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+    
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+    
+}
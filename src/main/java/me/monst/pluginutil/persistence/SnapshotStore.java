@@ -0,0 +1,325 @@
+package me.monst.pluginutil.persistence;
+
+import me.monst.pluginutil.Promise;
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps a local copy of the results of rarely changing queries, such as item prices or rank definitions, so that
+ * they can be read without waiting for the database.
+ * <p>
+ * The last successful result of every query is stored in a memory-mapped file, under the name the query was
+ * registered with. Reads are served from the file, both right after startup and while the database is unreachable,
+ * and the file is refreshed from the database in the background. Only the first read of a query which has no
+ * snapshot yet goes to the database.
+ * <p>
+ * The rows are stored raw, in the {@link TableArchive} format, and replayed through the reconstructor of each
+ * read. Reconstructors are passed a {@code null} connection, so they cannot run further queries.
+ * <p>
+ * The snapshot file is mapped as a whole, so it cannot grow beyond 2 GB; a refresh which would exceed that fails
+ * and keeps the current snapshots. A new snapshot file replaces the old one while the old one is still mapped,
+ * which some platforms do not allow. There, every refresh fails with a warning and the snapshots of the last
+ * start are served until the next restart.
+ * <pre>{@code
+ * SnapshotStore snapshots = new SnapshotStore(plugin, database, plugin.getDataFolder().toPath().resolve("snapshots.dat"));
+ * snapshots.start(Duration.ofMinutes(5));
+ * List<Rank> ranks = snapshots.asList("ranks", Query.of("SELECT * FROM ranks"), Rank::read);
+ * }</pre>
+ */
+public class SnapshotStore {
+    
+    private static final int MAGIC = 0x50555353;
+    private static final int VERSION = 1;
+    private static final int ROWS_PER_BLOCK = 1024;
+    
+    private final Plugin plugin;
+    private final ConnectionProvider connectionProvider;
+    private final Path file;
+    private final Map<String, Query> queries = new ConcurrentHashMap<>();
+    
+    private volatile Snapshot snapshot = new Snapshot(null, Collections.emptyMap());
+    private BukkitTask refreshTask;
+    
+    /**
+     * Creates a new snapshot store.
+     * @param plugin the plugin
+     * @param connectionProvider the provider of connections to the database the queries are run on
+     * @param file the snapshot file
+     */
+    public SnapshotStore(Plugin plugin, ConnectionProvider connectionProvider, Path file) {
+        this.plugin = plugin;
+        this.connectionProvider = connectionProvider;
+        this.file = file;
+    }
+    
+    /**
+     * Maps the snapshot file written by an earlier run, if any, and starts refreshing the snapshots of all
+     * registered queries in the background.
+     * @param refreshInterval how often to refresh the snapshots
+     */
+    public void start(Duration refreshInterval) {
+        if (Files.exists(file)) {
+            try {
+                snapshot = open(file);
+            } catch (IOException e) {
+                plugin.getLogger().warning("Failed to read snapshot file, ignoring it: " + e.getMessage());
+            }
+        }
+        long period = Math.max(1, refreshInterval.toMillis() / 50);
+        refreshTask = Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, this::refresh, period, period);
+    }
+    
+    /**
+     * Stops refreshing the snapshots. The snapshot file is kept for the next run.
+     */
+    public void stop() {
+        if (refreshTask != null)
+            refreshTask.cancel();
+        refreshTask = null;
+    }
+    
+    /**
+     * Reads the result of a query from its snapshot, registering the query to be refreshed in the background.
+     * If the query has no snapshot yet, it is run on the database, and its result is stored first.
+     * @param name the name to store the snapshot under, unique per query
+     * @param query the query
+     * @param reconstructor the reconstructor of each row
+     * @return the rows of the last successful result of the query
+     * @param <T> the type of the rows
+     * @throws SQLException if there was no snapshot and the query failed
+     */
+    public <T> List<T> asList(String name, Query query, Reconstructor<T> reconstructor) throws SQLException {
+        queries.put(name, query);
+        Snapshot current = snapshot;
+        if (!current.sections.containsKey(name)) {
+            synchronized (this) {
+                current = snapshot;
+                if (!current.sections.containsKey(name)) {
+                    Map<String, byte[]> update = Collections.singletonMap(name, export(query));
+                    current = write(update);
+                }
+            }
+        }
+        try (ResultSet resultSet = current.read(name)) {
+            List<T> list = new ArrayList<>();
+            while (resultSet.next())
+                list.add(reconstructor.reconstruct(resultSet, null));
+            return list;
+        }
+    }
+    
+    /**
+     * Checks whether a snapshot of the query with the given name is stored.
+     * @param name the name of the snapshot
+     * @return true if the snapshot exists
+     */
+    public boolean contains(String name) {
+        return snapshot.sections.containsKey(name);
+    }
+    
+    /**
+     * Runs every registered query on an async thread and replaces the stored snapshots with their results.
+     * The snapshots of queries which fail are kept as they are.
+     * @return a promise which resolves to the number of refreshed snapshots
+     */
+    public Promise<Integer> refreshAsync() {
+        return Promise.async(plugin, this::refresh);
+    }
+    
+    private synchronized int refresh() {
+        Map<String, byte[]> update = new HashMap<>();
+        for (Map.Entry<String, Query> entry : queries.entrySet()) {
+            try {
+                update.put(entry.getKey(), export(entry.getValue()));
+            } catch (SQLException e) {
+                plugin.getLogger().warning("Failed to refresh snapshot " + entry.getKey() + ": " + e.getMessage());
+            }
+        }
+        if (!update.isEmpty()) {
+            try {
+                write(update);
+            } catch (SQLException e) {
+                plugin.getLogger().warning("Failed to write snapshot file: " + e.getMessage());
+                return 0;
+            }
+        }
+        return update.size();
+    }
+    
+    private byte[] export(Query query) throws SQLException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (Connection con = connectionProvider.getConnection();
+             ResultSet resultSet = query.executeQuery(con);
+             TableArchive.Writer writer = new TableArchive.Writer(bytes, resultSet.getMetaData(), ROWS_PER_BLOCK)) {
+            while (resultSet.next())
+                writer.write(resultSet);
+            writer.finish();
+        } catch (IOException e) {
+            throw new SQLException(e); // Cannot happen when writing to memory
+        }
+        return bytes.toByteArray();
+    }
+    
+    /**
+     * Writes a new snapshot file with the given sections and all other sections of the current snapshot,
+     * and maps it in place of the current one.
+     */
+    private Snapshot write(Map<String, byte[]> update) throws SQLException {
+        Snapshot current = snapshot;
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            if (file.getParent() != null)
+                Files.createDirectories(file.getParent());
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeByte(VERSION);
+                Map<String, long[]> index = new LinkedHashMap<>();
+                long offset = 5;
+                Set<String> names = new LinkedHashSet<>(current.sections.keySet());
+                names.addAll(update.keySet());
+                for (String name : names) {
+                    byte[] data = update.get(name);
+                    if (data == null)
+                        data = current.bytes(name);
+                    if (offset + data.length > Integer.MAX_VALUE - 65536) // Leave room for the index
+                        throw new IOException("Snapshot file would exceed 2 GB");
+                    out.write(data);
+                    index.put(name, new long[] { offset, data.length });
+                    offset += data.length;
+                }
+                out.writeInt(index.size());
+                for (Map.Entry<String, long[]> entry : index.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    out.writeLong(entry.getValue()[0]);
+                    out.writeLong(entry.getValue()[1]);
+                }
+                out.writeLong(offset); // Position of the index
+            }
+            try {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            snapshot = open(file);
+            return snapshot;
+        } catch (IOException e) {
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException deleteFailure) {
+                e.addSuppressed(deleteFailure);
+            }
+            throw new SQLException("Failed to write snapshot file", e);
+        }
+    }
+    
+    private static Snapshot open(Path path) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE)
+                throw new IOException("Snapshot file is larger than 2 GB");
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()); // Stays valid after closing
+        }
+        if (buffer.capacity() < 17 || buffer.getInt(0) != MAGIC || buffer.get(4) != VERSION)
+            throw new IOException("Not a snapshot file");
+        long indexPosition = buffer.getLong(buffer.capacity() - 8);
+        if (indexPosition < 5 || indexPosition > buffer.capacity() - 12)
+            throw new IOException("Corrupt snapshot index");
+        DataInputStream in = new DataInputStream(new ByteBufferInputStream(slice(buffer, indexPosition,
+                buffer.capacity() - 8 - indexPosition)));
+        int count = in.readInt();
+        Map<String, long[]> sections = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            String name = in.readUTF();
+            long offset = in.readLong();
+            long length = in.readLong();
+            if (offset < 5 || length < 0 || offset + length > indexPosition)
+                throw new IOException("Corrupt snapshot index");
+            sections.put(name, new long[] { offset, length });
+        }
+        return new Snapshot(buffer, sections);
+    }
+    
+    private static ByteBuffer slice(ByteBuffer buffer, long offset, long length) {
+        ByteBuffer slice = buffer.duplicate(); // Each reader needs its own position
+        slice.position(Math.toIntExact(offset));
+        slice.limit(Math.toIntExact(offset + length));
+        return slice.slice();
+    }
+    
+    private static class Snapshot {
+        
+        private final ByteBuffer buffer;
+        private final Map<String, long[]> sections; // Name -> offset and length
+        
+        private Snapshot(ByteBuffer buffer, Map<String, long[]> sections) {
+            this.buffer = buffer;
+            this.sections = sections;
+        }
+        
+        private ResultSet read(String name) throws SQLException {
+            long[] section = sections.get(name);
+            try {
+                return RowResultSet.of(new TableArchive.Reader(new ByteBufferInputStream(slice(buffer, section[0], section[1]))));
+            } catch (IOException e) {
+                throw new SQLException("Corrupt snapshot " + name, e);
+            }
+        }
+        
+        private byte[] bytes(String name) {
+            long[] section = sections.get(name);
+            byte[] bytes = new byte[Math.toIntExact(section[1])];
+            slice(buffer, section[0], section[1]).get(bytes);
+            return bytes;
+        }
+        
+    }
+    
+    private static class ByteBufferInputStream extends InputStream {
+        
+        private final ByteBuffer buffer;
+        
+        private ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+        
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+        
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (length == 0)
+                return 0;
+            if (!buffer.hasRemaining())
+                return -1;
+            length = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, length);
+            return length;
+        }
+        
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+        
+    }
+    
+}
@@ -0,0 +1,356 @@
+package me.monst.pluginutil.persistence;
+
+import java.io.*;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Exports query results to, and imports them from, a compact binary file.
+ * <p>
+ * Rows are written in blocks. Within a block, the values are laid out column by column, each column with its own
+ * bitmap of SQL NULLs and a type-specific encoding, and every block is compressed on its own. Only one block is
+ * held in memory at a time in either direction, so tables of any size can be exported and imported.
+ * Note that some drivers buffer the entire result set of a query unless told otherwise in the connection
+ * properties, e.g. {@code useCursorFetch} for MySQL.
+ * <pre>{@code
+ * TableArchive.export(con, Query.of("SELECT * FROM accounts"), backup, 4096);
+ * TableArchive.importInto(con, backup, Query.of("INSERT INTO accounts VALUES (?, ?, ?)"), 500);
+ * }</pre>
+ */
+public final class TableArchive {
+    
+    private static final int MAGIC = 0x50554442;
+    private static final int VERSION = 1;
+    
+    /** The most columns an archive can have. */
+    static final int MAX_COLUMNS = 1 << 16;
+    /** The most rows a block can hold. */
+    static final int MAX_BLOCK_ROWS = 1 << 20;
+    /** The most bytes a block can take up, both before and after compression. */
+    static final int MAX_BLOCK_BYTES = 1 << 28;
+    /** The uncompressed size at which a block is written early, before it holds the requested number of rows. */
+    private static final int BLOCK_FLUSH_BYTES = 1 << 24;
+    /** The highest compression ratio deflate can achieve, which bounds the uncompressed size of a block. */
+    private static final int MAX_DEFLATE_RATIO = 1032;
+    
+    private TableArchive() {}
+    
+    /**
+     * Runs a query and writes its results to a file, replacing the file if it exists.
+     * The results are written to a temporary file first, which only replaces the file once the export succeeded,
+     * so a failed export leaves the previous file untouched.
+     * @param con the connection to run the query on
+     * @param query the query to export the results of
+     * @param file the file to write to
+     * @param rowsPerBlock the number of rows to compress together, at most {@code 2^20}. Blocks of large rows are
+     *                     written early, once they hold 16 MiB.
+     * @return the number of rows exported
+     * @throws SQLException if the query failed
+     * @throws IOException if the file could not be written
+     */
+    public static long export(Connection con, Query query, Path file, int rowsPerBlock) throws SQLException, IOException {
+        if (file.getParent() != null)
+            Files.createDirectories(file.getParent());
+        Path temp = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+        long rows = 0;
+        try (ResultSet resultSet = query.executeQuery(con);
+             Writer writer = new Writer(Files.newOutputStream(temp), resultSet.getMetaData(), rowsPerBlock)) {
+            while (resultSet.next()) {
+                writer.write(resultSet);
+                rows++;
+            }
+            writer.finish();
+        } catch (SQLException | IOException | RuntimeException e) {
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException deleteFailure) {
+                e.addSuppressed(deleteFailure);
+            }
+            throw e;
+        }
+        try {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+        return rows;
+    }
+    
+    /**
+     * Reads the rows of a file and inserts them in batches.
+     * The insert statement must have one parameter for every exported column, in the same order.
+     * @param con the connection to insert with
+     * @param file the file to read from
+     * @param insert the insert statement, with one parameter per column
+     * @param chunkSize the maximum number of rows per batch
+     * @return the number of rows imported
+     * @throws SQLException if an insert failed
+     * @throws IOException if the file could not be read or is not a table archive
+     */
+    public static long importInto(Connection con, Path file, Query insert, int chunkSize) throws SQLException, IOException {
+        try (Reader reader = new Reader(Files.newInputStream(file))) {
+            List<Object[]> chunk = new ArrayList<>(chunkSize);
+            long rows = 0;
+            Object[] row;
+            while ((row = reader.next()) != null) {
+                chunk.add(row);
+                if (chunk.size() >= chunkSize) {
+                    insert.batch(chunk).with(Arrays::asList).executeUpdate(con);
+                    rows += chunk.size();
+                    chunk.clear();
+                }
+            }
+            if (!chunk.isEmpty()) {
+                insert.batch(chunk).with(Arrays::asList).executeUpdate(con);
+                rows += chunk.size();
+            }
+            return rows;
+        }
+    }
+    
+    /**
+     * Writes rows to a table archive one block at a time. The archive is only complete once {@link #finish()} has
+     * been called; closing the writer without finishing it leaves an archive which fails to read.
+     */
+    static class Writer implements Closeable {
+        
+        private final DataOutputStream out;
+        private final ColumnType[] types;
+        private final int rowsPerBlock;
+        private final Deflater deflater = new Deflater();
+        
+        private final ByteArrayOutputStream[] columnBytes;
+        private final DataOutputStream[] columns;
+        private final byte[][] nulls;
+        private int rows;
+        
+        Writer(OutputStream out, ResultSetMetaData metaData, int rowsPerBlock) throws SQLException, IOException {
+            this(out, columnNames(metaData), columnTypes(metaData), rowsPerBlock);
+        }
+        
+        Writer(OutputStream out, String[] names, ColumnType[] types, int rowsPerBlock) throws IOException {
+            if (rowsPerBlock <= 0 || rowsPerBlock > MAX_BLOCK_ROWS)
+                throw new IllegalArgumentException("Rows per block must be between 1 and " + MAX_BLOCK_ROWS);
+            this.out = new DataOutputStream(new BufferedOutputStream(out));
+            this.types = types;
+            this.rowsPerBlock = rowsPerBlock;
+            this.columnBytes = new ByteArrayOutputStream[types.length];
+            this.columns = new DataOutputStream[types.length];
+            this.nulls = new byte[types.length][(rowsPerBlock + 7) / 8];
+            for (int i = 0; i < types.length; i++) {
+                columnBytes[i] = new ByteArrayOutputStream();
+                columns[i] = new DataOutputStream(columnBytes[i]);
+            }
+            this.out.writeInt(MAGIC);
+            this.out.writeByte(VERSION);
+            this.out.writeInt(types.length);
+            for (int i = 0; i < types.length; i++) {
+                this.out.writeUTF(names[i]);
+                this.out.writeByte(types[i].ordinal());
+            }
+        }
+        
+        /**
+         * Writes the current row of a result set.
+         */
+        void write(ResultSet resultSet) throws SQLException, IOException {
+            for (int i = 0; i < types.length; i++) {
+                Object value = types[i].read(resultSet, i + 1);
+                if (value == null)
+                    nulls[i][rows >>> 3] |= 1 << (rows & 7);
+                else
+                    types[i].write(columns[i], value);
+            }
+            if (++rows == rowsPerBlock || bufferedBytes() >= BLOCK_FLUSH_BYTES)
+                flushBlock();
+        }
+        
+        private long bufferedBytes() {
+            long bytes = 0;
+            for (ByteArrayOutputStream column : columnBytes)
+                bytes += column.size();
+            return bytes;
+        }
+        
+        private void flushBlock() throws IOException {
+            if (rows == 0)
+                return;
+            ByteArrayOutputStream raw = new ByteArrayOutputStream();
+            int bitmapLength = (rows + 7) / 8;
+            for (int i = 0; i < types.length; i++) {
+                raw.write(nulls[i], 0, bitmapLength);
+                columnBytes[i].writeTo(raw);
+                columnBytes[i].reset();
+                Arrays.fill(nulls[i], (byte) 0);
+            }
+            byte[] input = raw.toByteArray();
+            if (input.length > MAX_BLOCK_BYTES)
+                throw new IOException("Row too large for a table archive block");
+            deflater.reset();
+            deflater.setInput(input);
+            deflater.finish();
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(input.length / 2 + 64);
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished())
+                compressed.write(buffer, 0, deflater.deflate(buffer));
+            out.writeInt(rows);
+            out.writeInt(input.length);
+            out.writeInt(compressed.size());
+            compressed.writeTo(out);
+            rows = 0;
+        }
+        
+        /**
+         * Writes the last block and the end of the archive.
+         */
+        void finish() throws IOException {
+            flushBlock();
+            out.writeInt(0); // End of archive
+            out.flush();
+        }
+        
+        @Override
+        public void close() throws IOException {
+            try {
+                deflater.end();
+            } finally {
+                out.close();
+            }
+        }
+        
+    }
+    
+    /**
+     * Reads the rows of a table archive one block at a time.
+     */
+    static class Reader implements Closeable {
+        
+        private final DataInputStream in;
+        private final String[] names;
+        private final ColumnType[] types;
+        private final Inflater inflater = new Inflater();
+        
+        private Object[][] block = new Object[0][];
+        private int position;
+        private boolean ended;
+        
+        Reader(InputStream in) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(in));
+            if (this.in.readInt() != MAGIC)
+                throw new IOException("Not a table archive");
+            int version = this.in.readUnsignedByte();
+            if (version != VERSION)
+                throw new IOException("Unsupported table archive version " + version);
+            int columnCount = this.in.readInt();
+            if (columnCount < 0 || columnCount > MAX_COLUMNS)
+                throw new IOException("Corrupt column count " + columnCount);
+            this.names = new String[columnCount];
+            this.types = new ColumnType[columnCount];
+            ColumnType[] values = ColumnType.values();
+            for (int i = 0; i < columnCount; i++) {
+                names[i] = this.in.readUTF();
+                int type = this.in.readUnsignedByte();
+                if (type >= values.length)
+                    throw new IOException("Unknown column type " + type);
+                types[i] = values[type];
+            }
+        }
+        
+        String[] getColumnNames() {
+            return names;
+        }
+        
+        /**
+         * @return the values of the next row, or {@code null} if there are no more rows
+         */
+        Object[] next() throws IOException {
+            if (position == block.length && !readBlock())
+                return null;
+            Object[] row = block[position];
+            block[position++] = null;
+            return row;
+        }
+        
+        private boolean readBlock() throws IOException {
+            if (ended)
+                return false;
+            int rows = in.readInt();
+            if (rows == 0) {
+                ended = true;
+                return false;
+            }
+            int rawLength = in.readInt();
+            int compressedLength = in.readInt();
+            // Check the header against the limits of the writer before allocating anything, so that a corrupt
+            // archive fails with an IOException rather than running out of memory
+            if (rows < 0 || rows > MAX_BLOCK_ROWS)
+                throw new IOException("Corrupt block row count " + rows);
+            if (rawLength < (long) types.length * ((rows + 7) / 8) || rawLength > MAX_BLOCK_BYTES)
+                throw new IOException("Corrupt block length " + rawLength);
+            if (compressedLength < 0 || compressedLength > MAX_BLOCK_BYTES
+                    || rawLength > (long) compressedLength * MAX_DEFLATE_RATIO + 64)
+                throw new IOException("Corrupt compressed block length " + compressedLength);
+            byte[] raw = new byte[rawLength];
+            byte[] compressed = new byte[compressedLength];
+            in.readFully(compressed);
+            inflater.reset();
+            inflater.setInput(compressed);
+            try {
+                int length = 0;
+                while (length < raw.length && !inflater.finished()) {
+                    int inflated = inflater.inflate(raw, length, raw.length - length);
+                    if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+                        break; // The compressed block ended early
+                    length += inflated;
+                }
+                if (length != raw.length)
+                    throw new IOException("Truncated block");
+            } catch (DataFormatException e) {
+                throw new IOException("Corrupt block", e);
+            }
+            DataInputStream blockIn = new DataInputStream(new ByteArrayInputStream(raw));
+            block = new Object[rows][types.length];
+            byte[] nulls = new byte[(rows + 7) / 8];
+            for (int column = 0; column < types.length; column++) {
+                blockIn.readFully(nulls);
+                for (int row = 0; row < rows; row++) {
+                    if ((nulls[row >>> 3] & (1 << (row & 7))) == 0)
+                        block[row][column] = types[column].read(blockIn);
+                }
+            }
+            position = 0;
+            return true;
+        }
+        
+        @Override
+        public void close() throws IOException {
+            inflater.end();
+            in.close();
+        }
+        
+    }
+    
+    private static String[] columnNames(ResultSetMetaData metaData) throws SQLException {
+        String[] names = new String[metaData.getColumnCount()];
+        for (int i = 0; i < names.length; i++)
+            names[i] = metaData.getColumnLabel(i + 1);
+        return names;
+    }
+    
+    private static ColumnType[] columnTypes(ResultSetMetaData metaData) throws SQLException {
+        ColumnType[] types = new ColumnType[metaData.getColumnCount()];
+        for (int i = 0; i < types.length; i++)
+            types[i] = ColumnType.of(metaData.getColumnType(i + 1));
+        return types;
+    }
+    
+}
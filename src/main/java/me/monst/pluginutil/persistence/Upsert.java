@@ -0,0 +1,140 @@
+package me.monst.pluginutil.persistence;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Inserts entities, updating the rows of those whose key already exists, with as few round trips as possible.
+ * <p>
+ * Rather than deleting and re-inserting rows, or selecting every row before deciding whether to update it, the
+ * entities are written with multi-row upsert statements in the {@link Dialect dialect} of the database: {@code ON
+ * DUPLICATE KEY UPDATE} for MySQL, {@code ON CONFLICT DO UPDATE} for PostgreSQL and SQLite, and {@code MERGE}
+ * otherwise. Every chunk of entities is sent as a single statement. The standard {@code MERGE} reads the column
+ * types of the table first, and requires the database to accept a {@code VALUES} list as its source, which
+ * rules out Derby.
+ * <pre>{@code
+ * Upsert<Account> upsert = new Upsert<Account>("accounts")
+ *         .key("account_id", Account::getId)
+ *         .column("balance", Account::getBalance)
+ *         .column("nickname", Account::getNickname);
+ * upsert.execute(con, accounts);
+ * }</pre>
+ * @param <T> the type of the entities
+ */
+public class Upsert<T> {
+    
+    private final String table;
+    private final List<String> keyColumns = new ArrayList<>(1);
+    private final List<Function<T, Object>> keyExtractors = new ArrayList<>(1);
+    private final List<String> columns = new ArrayList<>();
+    private final List<Function<T, Object>> columnExtractors = new ArrayList<>();
+    private int chunkSize = 500;
+    
+    /**
+     * Creates a new upsert into the given table.
+     * @param table the name of the table
+     */
+    public Upsert(String table) {
+        this.table = table;
+    }
+    
+    /**
+     * Adds a key column. The key columns together must have a primary key or unique constraint.
+     * @param name the name of the column
+     * @param extractor the function extracting the column value from an entity
+     * @return this upsert
+     */
+    public Upsert<T> key(String name, Function<T, Object> extractor) {
+        keyColumns.add(name);
+        keyExtractors.add(extractor);
+        return this;
+    }
+    
+    /**
+     * Adds a column, which is updated if the key of an entity already exists.
+     * @param name the name of the column
+     * @param extractor the function extracting the column value from an entity
+     * @return this upsert
+     */
+    public Upsert<T> column(String name, Function<T, Object> extractor) {
+        columns.add(name);
+        columnExtractors.add(extractor);
+        return this;
+    }
+    
+    /**
+     * Sets the maximum number of entities sent in one statement. The chunks are made smaller if necessary to stay
+     * within the parameter limit of the database. The default is 500.
+     * @param chunkSize the maximum number of entities per statement
+     * @return this upsert
+     */
+    public Upsert<T> chunkSize(int chunkSize) {
+        if (chunkSize <= 0)
+            throw new IllegalArgumentException("Chunk size must be positive");
+        this.chunkSize = chunkSize;
+        return this;
+    }
+    
+    /**
+     * Writes the entities, detecting the dialect of the database from the connection.
+     * @param con the connection
+     * @param entities the entities to write
+     * @return the number of entities written
+     * @throws SQLException if a statement failed
+     */
+    public int execute(Connection con, Collection<T> entities) throws SQLException {
+        return execute(con, Dialect.detect(con), entities);
+    }
+    
+    /**
+     * Writes the entities in the given dialect.
+     * If several entities have the same key, only the last of them is written.
+     * @param con the connection
+     * @param dialect the dialect of the database
+     * @param entities the entities to write
+     * @return the number of entities written
+     * @throws SQLException if a statement failed
+     */
+    public int execute(Connection con, Dialect dialect, Collection<T> entities) throws SQLException {
+        if (keyColumns.isEmpty())
+            throw new IllegalStateException("No key columns defined");
+        // A single statement may not affect the same row twice, so duplicates are removed up front
+        Map<List<Object>, T> byKey = new LinkedHashMap<>();
+        for (T entity : entities) {
+            List<Object> key = new ArrayList<>(keyExtractors.size());
+            for (Function<T, Object> extractor : keyExtractors)
+                key.add(extractor.apply(entity));
+            byKey.put(key, entity);
+        }
+        List<String> types = null;
+        if (dialect == Dialect.STANDARD) {
+            List<String> all = new ArrayList<>(keyColumns);
+            all.addAll(columns);
+            types = Dialect.columnTypes(con, table, all);
+        }
+        int columnCount = keyColumns.size() + columns.size();
+        int rowsPerChunk = Math.max(1, Math.min(chunkSize, dialect.maxParameters() / columnCount));
+        List<Object> params = new ArrayList<>(rowsPerChunk * columnCount);
+        int rows = 0;
+        int written = 0;
+        for (Map.Entry<List<Object>, T> entry : byKey.entrySet()) {
+            params.addAll(entry.getKey());
+            for (Function<T, Object> extractor : columnExtractors)
+                params.add(extractor.apply(entry.getValue()));
+            if (++rows == rowsPerChunk) {
+                Query.of(dialect.upsert(table, keyColumns, columns, types, rows)).with(params).executeUpdate(con);
+                written += rows;
+                rows = 0;
+                params.clear();
+            }
+        }
+        if (rows > 0) {
+            Query.of(dialect.upsert(table, keyColumns, columns, types, rows)).with(params).executeUpdate(con);
+            written += rows;
+        }
+        return written;
+    }
+    
+}
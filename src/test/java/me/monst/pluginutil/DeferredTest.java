@@ -0,0 +1,58 @@
+package me.monst.pluginutil;
+
+import org.bukkit.Bukkit;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DeferredTest {
+    
+    @TempDir
+    Path dir;
+    
+    @BeforeAll
+    static void installServer() {
+        TestServer.install();
+    }
+    
+    @Test
+    void settlesOnlyOnce() throws Exception {
+        Deferred<String> deferred = new Deferred<>(TestPlugin.create(dir));
+        assertFalse(deferred.isSettled());
+        assertTrue(deferred.resolve("first"));
+        assertFalse(deferred.resolve("second"));
+        assertFalse(deferred.reject(new Exception("late")));
+        assertTrue(deferred.isSettled());
+        assertEquals("first", TestServer.await(deferred));
+    }
+    
+    @Test
+    void runsEveryCallbackOnTheMainThread() throws Exception {
+        Deferred<String> deferred = new Deferred<>(TestPlugin.create(dir));
+        List<String> calls = Collections.synchronizedList(new ArrayList<>());
+        deferred.then(result -> calls.add("then " + result + " " + Bukkit.isPrimaryThread()))
+                .then(result -> calls.add("then again"))
+                .catchError(e -> calls.add("catch"))
+                .finallyDo(() -> calls.add("finally"));
+        deferred.resolve(null); // A null result is still a result
+        TestServer.drainMainThread();
+        assertEquals(Arrays.asList("then null true", "then again", "finally"), calls);
+    }
+    
+    @Test
+    void rejectsWithTheException() {
+        Deferred<String> deferred = new Deferred<>(TestPlugin.create(dir));
+        Exception exception = new Exception("failed");
+        deferred.reject(exception);
+        assertSame(exception, assertThrows(Exception.class, () -> TestServer.await(deferred)));
+    }
+    
+}
@@ -0,0 +1,26 @@
+package me.monst.pluginutil;
+
+import me.monst.pluginutil.persistence.Database;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Borrows connections from outside the persistence package, whose frames are skipped when looking for the code
+ * which borrowed a connection.
+ */
+public final class TestBorrower {
+    
+    private TestBorrower() {}
+    
+    /**
+     * Gets a connection from the database.
+     * @param database the database
+     * @return the connection
+     * @throws SQLException if no connection could be obtained
+     */
+    public static Connection borrow(Database database) throws SQLException {
+        return database.getConnection();
+    }
+    
+}
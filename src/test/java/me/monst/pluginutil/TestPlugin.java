@@ -0,0 +1,50 @@
+package me.monst.pluginutil;
+
+import org.bukkit.plugin.Plugin;
+
+import java.lang.reflect.Proxy;
+import java.nio.file.Path;
+import java.util.function.BooleanSupplier;
+import java.util.logging.Logger;
+
+/**
+ * Creates plugins for tests which only need a name, a logger and a data folder.
+ */
+public final class TestPlugin {
+    
+    private TestPlugin() {}
+    
+    /**
+     * Creates an enabled plugin with the given data folder. Every other method returns {@code null}.
+     * @param dataFolder the data folder of the plugin
+     * @return the plugin
+     */
+    public static Plugin create(Path dataFolder) {
+        return create(dataFolder, () -> true);
+    }
+    
+    /**
+     * Creates a plugin with the given data folder, which is enabled for as long as the given condition holds.
+     * Every other method returns {@code null}.
+     * @param dataFolder the data folder of the plugin
+     * @param enabled whether the plugin is enabled
+     * @return the plugin
+     */
+    public static Plugin create(Path dataFolder, BooleanSupplier enabled) {
+        Logger logger = Logger.getLogger("TestPlugin");
+        return (Plugin) Proxy.newProxyInstance(Plugin.class.getClassLoader(), new Class<?>[] { Plugin.class },
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getName": return "TestPlugin";
+                        case "getLogger": return logger;
+                        case "getDataFolder": return dataFolder.toFile();
+                        case "isEnabled": return enabled.getAsBoolean();
+                        case "hashCode": return System.identityHashCode(proxy);
+                        case "equals": return proxy == args[0];
+                        case "toString": return "TestPlugin";
+                        default: return null;
+                    }
+                });
+    }
+    
+}
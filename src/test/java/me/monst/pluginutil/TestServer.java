@@ -0,0 +1,137 @@
+package me.monst.pluginutil;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Server;
+import org.bukkit.scheduler.BukkitScheduler;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * A minimal server for tests which use the scheduler. Sync tasks run on a single "main" thread and async tasks on
+ * a small pool, with one tick lasting 50 milliseconds.
+ */
+public final class TestServer {
+    
+    private static final AtomicInteger TASK_IDS = new AtomicInteger();
+    private static volatile Thread mainThread;
+    private static final ScheduledExecutorService MAIN = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "Server thread");
+        thread.setDaemon(true);
+        mainThread = thread;
+        return thread;
+    });
+    private static final ScheduledExecutorService ASYNC = Executors.newScheduledThreadPool(4, runnable -> {
+        Thread thread = new Thread(runnable, "Craft Scheduler Thread");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    private TestServer() {}
+    
+    /**
+     * Installs the test server, unless it is installed already.
+     */
+    public static synchronized void install() {
+        if (Bukkit.getServer() != null)
+            return;
+        Logger logger = Logger.getLogger("TestServer");
+        BukkitScheduler scheduler = proxy(BukkitScheduler.class, TestServer::schedule);
+        Bukkit.setServer(proxy(Server.class, (method, args) -> {
+            switch (method.getName()) {
+                case "getLogger": return logger;
+                case "getName": return "TestServer";
+                case "getVersion": case "getBukkitVersion": return "test";
+                case "getScheduler": return scheduler;
+                case "isPrimaryThread": return Thread.currentThread() == mainThread;
+                default: return null;
+            }
+        }));
+    }
+    
+    /**
+     * Runs a task on the main thread and waits for it to complete.
+     * @param task the task
+     * @return the result of the task
+     * @param <T> the type of the result
+     * @throws Exception if the task failed
+     */
+    public static <T> T callOnMainThread(Callable<T> task) throws Exception {
+        try {
+            return MAIN.submit(task).get(10, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+    }
+    
+    /**
+     * Waits until every sync task that was due before this call has run.
+     * @throws Exception if waiting failed
+     */
+    public static void drainMainThread() throws Exception {
+        callOnMainThread(() -> null);
+    }
+    
+    /**
+     * Waits for a promise to be settled, returning its result or throwing its exception.
+     * @param promise the promise
+     * @return the result of the promise
+     * @param <T> the type of the result
+     * @throws Exception if the promise was rejected, or was not settled in time
+     */
+    public static <T> T await(Promise<T> promise) throws Exception {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        promise.then(future::complete).catchError(future::completeExceptionally);
+        try {
+            return future.get(10, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+    }
+    
+    private static Object schedule(Method method, Object[] args) {
+        if (args == null || args.length < 2 || !(args[1] instanceof Runnable))
+            throw new UnsupportedOperationException(method.toString());
+        Runnable task = (Runnable) args[1];
+        String name = method.getName();
+        ScheduledExecutorService executor = name.endsWith("Asynchronously") ? ASYNC : MAIN;
+        long delay = args.length > 2 ? (long) args[2] * 50 : 0;
+        Future<?> future;
+        if (name.startsWith("runTaskTimer"))
+            future = executor.scheduleAtFixedRate(task, delay, Math.max(1, (long) args[3]) * 50, TimeUnit.MILLISECONDS);
+        else
+            future = executor.schedule(task, delay, TimeUnit.MILLISECONDS);
+        int id = TASK_IDS.incrementAndGet();
+        return proxy(BukkitTask.class, (taskMethod, taskArgs) -> {
+            switch (taskMethod.getName()) {
+                case "getTaskId": return id;
+                case "cancel":
+                    future.cancel(false);
+                    return null;
+                case "isCancelled": return future.isCancelled();
+                case "isSync": return executor == MAIN;
+                default: return null;
+            }
+        });
+    }
+    
+    private interface Handler {
+        Object handle(Method method, Object[] args) throws Throwable;
+    }
+    
+    private static <T> T proxy(Class<T> type, Handler handler) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "hashCode": return System.identityHashCode(proxy);
+                case "equals": return proxy == args[0];
+                case "toString": return type.getSimpleName();
+                default: return handler.handle(method, args);
+            }
+        }));
+    }
+    
+}
@@ -0,0 +1,82 @@
+package me.monst.pluginutil;
+
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.Plugin;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TickBudgetedExecutorTest {
+    
+    @TempDir
+    Path dir;
+    
+    @BeforeAll
+    static void installServer() {
+        TestServer.install();
+    }
+    
+    /**
+     * Submits two slow tasks and then schedules a marker task, which runs between the two ticks of the executor if
+     * the first task used up the budget of its tick.
+     */
+    private List<String> runWithMarker(Duration budget) throws Exception {
+        Plugin plugin = TestPlugin.create(dir);
+        TickBudgetedExecutor executor = new TickBudgetedExecutor(plugin, budget);
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(3);
+        TestServer.callOnMainThread(() -> {
+            executor.execute(() -> sleepAndRecord(order, "first", done));
+            executor.execute(() -> sleepAndRecord(order, "second", done));
+            Bukkit.getScheduler().runTask(plugin, () -> {
+                order.add("next tick");
+                done.countDown();
+            });
+            return null;
+        });
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(0, executor.getPendingTasks());
+        return order;
+    }
+    
+    private static void sleepAndRecord(List<String> order, String name, CountDownLatch done) {
+        try {
+            Thread.sleep(5);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        assertTrue(Bukkit.isPrimaryThread());
+        order.add(name);
+        done.countDown();
+    }
+    
+    @Test
+    void carriesTasksOverWhenTheBudgetIsUsedUp() throws Exception {
+        assertEquals(Arrays.asList("first", "next tick", "second"), runWithMarker(Duration.ofNanos(1)));
+    }
+    
+    @Test
+    void runsTasksInOneTickWithinTheBudget() throws Exception {
+        assertEquals(Arrays.asList("first", "second", "next tick"), runWithMarker(Duration.ofSeconds(5)));
+    }
+    
+    @Test
+    void keepsRunningAfterATaskFails() throws Exception {
+        TickBudgetedExecutor executor = new TickBudgetedExecutor(TestPlugin.create(dir), Duration.ofSeconds(1));
+        CountDownLatch ran = new CountDownLatch(1);
+        executor.execute(() -> {
+            throw new IllegalStateException("Expected by the test");
+        });
+        executor.execute(ran::countDown);
+        assertTrue(ran.await(10, TimeUnit.SECONDS));
+    }
+    
+}
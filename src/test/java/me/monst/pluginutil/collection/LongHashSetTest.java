@@ -0,0 +1,36 @@
+package me.monst.pluginutil.collection;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LongHashSetTest {
+    
+    @Test
+    void addsRemovesAndGrows() {
+        LongHashSet set = new LongHashSet(2);
+        for (long value = -100; value <= 100; value++)
+            assertTrue(set.add(value));
+        assertFalse(set.add(0));
+        assertFalse(set.add(42));
+        assertEquals(201, set.size());
+        assertTrue(set.remove(0));
+        assertTrue(set.remove(-7));
+        assertFalse(set.contains(0));
+        assertFalse(set.contains(-7));
+        assertTrue(set.contains(100));
+        long[] values = set.toArray();
+        Arrays.sort(values);
+        assertEquals(199, values.length);
+        assertEquals(-100, values[0]);
+    }
+    
+    @Test
+    void rejectsExpectedSizesBeyondTheMaximumCapacity() {
+        assertThrows(IllegalArgumentException.class, () -> new LongHashSet(Integer.MAX_VALUE));
+        assertThrows(IllegalArgumentException.class, () -> new LongHashSet((1 << 29) + 1));
+    }
+    
+}
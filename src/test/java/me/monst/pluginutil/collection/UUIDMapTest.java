@@ -0,0 +1,71 @@
+package me.monst.pluginutil.collection;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UUIDMapTest {
+    
+    @Test
+    void behavesLikeAHashMap() {
+        UUIDMap<Integer> map = new UUIDMap<>(2);
+        Map<UUID, Integer> expected = new HashMap<>();
+        Random random = new Random(42);
+        List<UUID> keys = new ArrayList<>();
+        for (int i = 0; i < 500; i++)
+            keys.add(new UUID(random.nextInt(50), i % 7)); // Hand-made keys, which collide without mixing
+        for (int i = 0; i < 5000; i++) {
+            UUID key = keys.get(random.nextInt(keys.size()));
+            if (random.nextInt(3) == 0)
+                assertEquals(expected.remove(key), map.remove(key));
+            else
+                assertEquals(expected.put(key, i), map.put(key, i));
+            assertEquals(expected.size(), map.size());
+        }
+        for (UUID key : keys) {
+            assertEquals(expected.get(key), map.get(key));
+            assertEquals(expected.get(key), map.get(key.getMostSignificantBits(), key.getLeastSignificantBits()));
+            assertEquals(expected.containsKey(key), map.containsKey(key));
+        }
+        Map<UUID, Integer> visited = new HashMap<>();
+        map.forEach(visited::put);
+        assertEquals(expected, visited);
+    }
+    
+    @Test
+    void removingKeepsCollidingKeysReachable() {
+        UUIDMap<String> map = new UUIDMap<>();
+        List<UUID> keys = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            UUID key = new UUID(0, i);
+            keys.add(key);
+            map.put(key, "v" + i);
+        }
+        assertEquals("v2", map.remove(keys.get(2)));
+        assertNull(map.remove(keys.get(2)));
+        for (int i = 0; i < keys.size(); i++)
+            assertEquals(i == 2 ? null : "v" + i, map.get(keys.get(i)));
+    }
+    
+    @Test
+    void rejectsNullValuesAndHugeSizes() {
+        UUIDMap<String> map = new UUIDMap<>();
+        assertThrows(NullPointerException.class, () -> map.put(UUID.randomUUID(), null));
+        assertThrows(IllegalArgumentException.class, () -> new UUIDMap<String>(Integer.MAX_VALUE));
+        assertThrows(IllegalArgumentException.class, () -> new UUIDMap<String>((1 << 29) + 1));
+    }
+    
+    @Test
+    void clearRemovesEveryMapping() {
+        UUIDMap<String> map = new UUIDMap<>();
+        UUID key = UUID.randomUUID();
+        map.put(key, "value");
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertFalse(map.containsKey(key));
+        assertNull(map.put(key, "again"));
+    }
+    
+}
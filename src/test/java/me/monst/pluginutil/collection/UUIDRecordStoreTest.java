@@ -0,0 +1,76 @@
+package me.monst.pluginutil.collection;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UUIDRecordStoreTest {
+    
+    private static final int BALANCE = 0;
+    private static final int COUNTER = 8;
+    private static final int RECORD_SIZE = 12;
+    
+    @Test
+    void fieldsAreKeptPerKey() {
+        UUIDRecordStore store = new UUIDRecordStore(RECORD_SIZE, 4);
+        List<UUID> keys = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) { // Grows both the index and the buffer
+            UUID key = UUID.randomUUID();
+            keys.add(key);
+            store.putDouble(key, BALANCE, i * 1.5);
+            store.putInt(key, COUNTER, i);
+        }
+        assertEquals(1000, store.size());
+        for (int i = 0; i < keys.size(); i++) {
+            assertEquals(i * 1.5, store.getDouble(keys.get(i), BALANCE));
+            assertEquals(i, store.getInt(keys.get(i), COUNTER));
+        }
+    }
+    
+    @Test
+    void removedRecordsAreReusedZeroed() {
+        UUIDRecordStore store = new UUIDRecordStore(RECORD_SIZE, 4);
+        UUID first = UUID.randomUUID();
+        store.putLong(first, BALANCE, 42);
+        assertTrue(store.remove(first));
+        assertFalse(store.contains(first));
+        assertThrows(NoSuchElementException.class, () -> store.getLong(first, BALANCE));
+        UUID second = UUID.randomUUID();
+        store.putInt(second, COUNTER, 1);
+        assertEquals(0, store.getLong(second, BALANCE));
+        assertEquals(RECORD_SIZE * 4, store.getOffHeapBytes());
+    }
+    
+    @Test
+    void fieldsOutsideTheRecordAreRejected() {
+        UUIDRecordStore store = new UUIDRecordStore(RECORD_SIZE, 4);
+        UUID key = UUID.randomUUID();
+        UUID neighbour = UUID.randomUUID();
+        store.putLong(key, BALANCE, 1);
+        store.putLong(neighbour, BALANCE, 2);
+        assertThrows(IndexOutOfBoundsException.class, () -> store.putLong(key, COUNTER, 3)); // 8 + 8 > 12
+        assertThrows(IndexOutOfBoundsException.class, () -> store.putInt(key, RECORD_SIZE, 3));
+        assertThrows(IndexOutOfBoundsException.class, () -> store.putDouble(key, -1, 3));
+        assertThrows(IndexOutOfBoundsException.class, () -> store.getLong(key, 5));
+        assertThrows(IndexOutOfBoundsException.class, () -> store.getInt(key, -4));
+        assertThrows(IndexOutOfBoundsException.class, () -> store.getDouble(key, 10));
+        assertEquals(1, store.getLong(key, BALANCE));
+        assertEquals(2, store.getLong(neighbour, BALANCE));
+        store.putInt(key, COUNTER, 7); // Exactly fills the record
+        assertEquals(7, store.getInt(key, COUNTER));
+    }
+    
+    @Test
+    void rejectedWritesDoNotCreateRecords() {
+        UUIDRecordStore store = new UUIDRecordStore(RECORD_SIZE, 4);
+        UUID key = UUID.randomUUID();
+        assertThrows(IndexOutOfBoundsException.class, () -> store.putLong(key, RECORD_SIZE, 1));
+        assertFalse(store.contains(key));
+    }
+    
+}
@@ -0,0 +1,129 @@
+package me.monst.pluginutil.configuration;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChangeBatchTest {
+    
+    private static class Root extends ConfigurationBranch {
+        
+        private final IntConfigurationValue size = addChild(new IntConfigurationValue("size", 1));
+        private final Limits limits = addChild(new Limits());
+        
+        private Root() {
+            super("root");
+        }
+        
+    }
+    
+    /**
+     * Feeds itself its defaults first and then the data, so that every value below it is changed twice in one batch.
+     */
+    private static class Limits extends ConfigurationBranch {
+        
+        private final IntConfigurationValue min = addChild(new IntConfigurationValue("min", 0));
+        private final IntConfigurationValue max = addChild(new IntConfigurationValue("max", 10));
+        private boolean failing;
+        
+        private Limits() {
+            super("limits");
+        }
+        
+        @Override
+        protected void feed(Object object) {
+            super.feed(null);
+            super.feed(object);
+            if (failing)
+                throw new IllegalStateException("Failed halfway");
+        }
+        
+    }
+    
+    private static Map<String, Object> data(int size, int min, int max) {
+        Map<String, Object> limits = new LinkedHashMap<>();
+        limits.put("min", min);
+        limits.put("max", max);
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("size", size);
+        data.put("limits", limits);
+        return data;
+    }
+    
+    @Test
+    void notifiesOncePerFeed() {
+        Root root = new Root();
+        List<List<ConfigurationValue<?>>> rootChanges = new ArrayList<>();
+        List<List<ConfigurationValue<?>>> limitChanges = new ArrayList<>();
+        List<String> sizeChanges = new ArrayList<>();
+        root.addListener(rootChanges::add);
+        root.limits.addListener(limitChanges::add);
+        root.size.addListener((oldValue, newValue) -> sizeChanges.add(oldValue + " -> " + newValue));
+        root.feed(data(2, 5, 10));
+        assertEquals(Collections.singletonList(Arrays.asList(root.size, root.limits.min)), rootChanges);
+        assertEquals(Collections.singletonList(Collections.singletonList(root.limits.min)), limitChanges);
+        assertEquals(Collections.singletonList("1 -> 2"), sizeChanges);
+    }
+    
+    @Test
+    void ignoresValuesWhichChangeBack() {
+        Root root = new Root();
+        root.feed(data(1, 5, 20));
+        List<List<ConfigurationValue<?>>> changes = new ArrayList<>();
+        root.addListener(changes::add);
+        root.limits.min.addListener((oldValue, newValue) -> fail("Reset to its default and back within one feed"));
+        root.feed(data(1, 5, 30)); // The nested feed resets min and max to their defaults before setting them again
+        assertEquals(Collections.singletonList(Collections.singletonList(root.limits.max)), changes);
+        root.feed(data(1, 5, 30));
+        assertEquals(1, changes.size());
+    }
+    
+    @Test
+    void notifiesAfterTheOutermostFeed() {
+        Root root = new Root();
+        List<String> seen = new ArrayList<>();
+        root.limits.max.addListener((oldValue, newValue) -> seen.add(root.size.getInt() + ", " + root.limits.max.getInt()));
+        root.feed(data(3, 0, 40)); // size is fed before limits, but listeners see the whole tree applied
+        assertEquals(Collections.singletonList("3, 40"), seen);
+    }
+    
+    @Test
+    void notifiesOfValuesSetBeforeTheFeedFailed() {
+        Root root = new Root();
+        root.enableSnapshots();
+        List<List<ConfigurationValue<?>>> changes = new ArrayList<>();
+        List<String> minChanges = new ArrayList<>();
+        root.addListener(changes::add);
+        root.limits.min.addListener((oldValue, newValue) -> minChanges.add(oldValue + " -> " + newValue));
+        root.limits.failing = true;
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> root.feed(data(2, 5, 10)));
+        assertEquals("Failed halfway", e.getMessage());
+        assertEquals(2, root.size.getInt()); // Set before the failure, and kept
+        assertEquals(5, root.limits.min.getInt());
+        assertEquals(Collections.singletonList(Arrays.asList(root.size, root.limits.min)), changes);
+        assertEquals(Collections.singletonList("0 -> 5"), minChanges);
+        assertEquals(1, root.snapshot().get(root.size)); // Not published, since the tree may be half-applied
+        root.limits.failing = false;
+        root.feed(data(3, 5, 10)); // A new batch is started after the failed one
+        assertEquals(Arrays.asList(Arrays.asList(root.size, root.limits.min), Collections.singletonList(root.size)),
+                changes);
+        assertEquals(3, root.snapshot().get(root.size));
+    }
+    
+    @Test
+    void keepsNotifyingAfterAListenerThrows() throws Exception {
+        Root root = new Root();
+        List<Integer> notified = new ArrayList<>();
+        root.size.addListener((oldValue, newValue) -> {
+            throw new IllegalStateException("Broken listener");
+        });
+        root.size.addListener((oldValue, newValue) -> notified.add(newValue));
+        root.addListener(changed -> notified.add(-changed.size()));
+        root.feed(data(2, 0, 10));
+        root.size.feed("4");
+        assertEquals(Arrays.asList(2, -1, 4, -1), notified);
+    }
+    
+}
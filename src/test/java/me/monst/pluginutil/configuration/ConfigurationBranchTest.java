@@ -0,0 +1,133 @@
+package me.monst.pluginutil.configuration;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConfigurationBranchTest {
+    
+    private static class Root extends ConfigurationBranch {
+        
+        private final IntConfigurationValue size = addChild(new IntConfigurationValue("size", 1));
+        private final Legacy legacy = addChild(new Legacy());
+        
+        private Root() {
+            super("root");
+        }
+        
+    }
+    
+    /**
+     * Accepts the value under its old key as well, which a plain branch would ignore.
+     */
+    private static class Legacy extends ConfigurationBranch {
+        
+        private final IntConfigurationValue limit = addChild(new IntConfigurationValue("limit", 10));
+        private int feeds;
+        
+        private Legacy() {
+            super("legacy");
+        }
+        
+        @Override
+        protected void feed(Object object) {
+            feeds++;
+            if (object instanceof Map && ((Map<?, ?>) object).containsKey("max")) {
+                Map<Object, Object> map = new HashMap<>((Map<?, ?>) object);
+                map.putIfAbsent("limit", map.get("max"));
+                object = map;
+            }
+            super.feed(object);
+        }
+        
+    }
+    
+    private static Map<String, Object> data(int size, String limitKey, int limit) {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("size", size);
+        data.put("legacy", Collections.singletonMap(limitKey, limit));
+        return data;
+    }
+    
+    @Test
+    void reportsOnlyChangedValues() {
+        Root root = new Root();
+        assertEquals(Arrays.asList(root.size, root.legacy.limit), root.feedChanges(data(2, "limit", 20)));
+        assertEquals(Collections.singletonList(root.size), root.feedChanges(data(3, "limit", 20)));
+        assertEquals(Collections.emptyList(), root.feedChanges(data(3, "limit", 20)));
+    }
+    
+    @Test
+    void feedsBranchesThroughTheirOverride() {
+        Root root = new Root();
+        assertFalse(root.overridesFeed());
+        assertTrue(root.legacy.overridesFeed());
+        assertEquals(Collections.singletonList(root.legacy.limit), root.feedChanges(data(1, "max", 30)));
+        assertEquals(30, root.legacy.limit.getInt());
+        assertEquals(1, root.legacy.feeds);
+        assertEquals(Collections.emptyList(), root.feedChanges(data(1, "max", 30)));
+    }
+    
+    private static ConfigurationBranch branch(String key, ConfigurationNode... children) {
+        ConfigurationBranch branch = new ConfigurationBranch(key) {};
+        for (ConfigurationNode child : children)
+            branch.addChild(child);
+        return branch;
+    }
+    
+    @Test
+    void replacingASubtreeReindexesIt() {
+        Root root = new Root();
+        ConfigurationBranch database = root.addChild(branch("database",
+                branch("pool", new IntConfigurationValue("size", 4)), new IntConfigurationValue("port", 3306)));
+        assertNotNull(root.getNode("database.pool.size"));
+        ConfigurationBranch replacement = root.addChild(branch("database", new IntConfigurationValue("port", 5432)));
+        assertNull(root.getNode("database.pool"));
+        assertNull(root.getNode("database.pool.size"));
+        assertSame(replacement, root.getNode("database"));
+        assertSame(replacement.getChild("port"), root.getNode("database.port"));
+        assertEquals(new TreeSet<>(Arrays.asList("database", "database.port", "legacy", "legacy.limit", "size")),
+                root.getPaths(""));
+        database.addChild(new IntConfigurationValue("timeout", 30)); // Detached, so no longer indexed by the root
+        assertNull(root.getNode("database.timeout"));
+    }
+    
+    @Test
+    void addingBelowAnAttachedBranchUpdatesEveryAncestor() {
+        Root root = new Root();
+        ConfigurationBranch pool = branch("pool");
+        ConfigurationBranch database = root.addChild(branch("database", pool));
+        IntConfigurationValue max = pool.addChild(new IntConfigurationValue("max", 8));
+        assertSame(max, pool.getNode("max"));
+        assertSame(max, database.getNode("pool.max"));
+        assertSame(max, root.getNode("database.pool.max"));
+        IntConfigurationValue replaced = pool.addChild(new IntConfigurationValue("max", 16));
+        assertSame(replaced, root.getNode("database.pool.max"));
+    }
+    
+    @Test
+    void enumeratesPathsByPrefix() {
+        Root root = new Root();
+        root.addChild(branch("database", branch("pool", new IntConfigurationValue("size", 4)),
+                new IntConfigurationValue("port", 3306), new IntConfigurationValue("portal", 0)));
+        root.addChild(branch("database-backup", new IntConfigurationValue("port", 3307)));
+        assertEquals(Arrays.asList("database.pool", "database.pool.size", "database.port", "database.portal"),
+                new ArrayList<>(root.getPaths("database.p")));
+        assertEquals(Arrays.asList("database.port", "database.portal"), new ArrayList<>(root.getPaths("database.port")));
+        assertEquals(Collections.emptySet(), root.getPaths("x"));
+        assertThrows(UnsupportedOperationException.class, () -> root.getPaths("").clear());
+    }
+    
+    @Test
+    void rejectsDottedKeysAndUnindexedChildren() {
+        Root root = new Root();
+        assertThrows(IllegalArgumentException.class, () -> root.addChild(new IntConfigurationValue("pool.size", 4)));
+        assertNull(root.getChild("pool.size"));
+        assertThrows(UnsupportedOperationException.class,
+                () -> root.getChildren().put("port", new IntConfigurationValue("port", 3306)));
+        assertEquals(Arrays.asList("size", "legacy"), new ArrayList<>(root.getChildren().keySet()));
+    }
+    
+}
@@ -0,0 +1,70 @@
+package me.monst.pluginutil.configuration;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConfigurationSnapshotTest {
+    
+    private static class Root extends ConfigurationBranch {
+        
+        private final IntConfigurationValue min = addChild(new IntConfigurationValue("min", 0));
+        private final IntConfigurationValue max = addChild(new IntConfigurationValue("max", 0));
+        
+        private Root() {
+            super("root");
+        }
+        
+    }
+    
+    private static Map<String, Object> data(int value) {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("min", value);
+        data.put("max", value);
+        return data;
+    }
+    
+    @Test
+    void mustBeEnabledBeforeUse() {
+        Root root = new Root();
+        assertThrows(IllegalStateException.class, root::snapshot);
+        root.feed(data(1));
+        root.enableSnapshots();
+        ConfigurationSnapshot first = root.snapshot();
+        assertEquals(1, first.get(root.min));
+        root.enableSnapshots(); // Already enabled, so the published snapshot is kept
+        assertSame(first, root.snapshot());
+        root.feed(data(2));
+        assertEquals(2, root.snapshot().get(root.max));
+        assertEquals(1, first.get(root.max));
+    }
+    
+    @Test
+    void readersNeverSeeAHalfAppliedReload() throws Exception {
+        Root root = new Root();
+        root.enableSnapshots();
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<String> torn = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            while (!done.get()) {
+                ConfigurationSnapshot snapshot = root.snapshot();
+                int min = snapshot.get(root.min), max = snapshot.get(root.max);
+                if (min != max)
+                    torn.set(min + " != " + max);
+            }
+        });
+        reader.start();
+        for (int i = 1; i <= 20000; i++)
+            root.feed(data(i));
+        done.set(true);
+        reader.join();
+        assertNull(torn.get());
+        assertEquals(20000, root.snapshot().get(root.min));
+    }
+    
+}
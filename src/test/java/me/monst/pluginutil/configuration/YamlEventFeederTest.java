@@ -0,0 +1,101 @@
+package me.monst.pluginutil.configuration;
+
+import me.monst.pluginutil.TestPlugin;
+import me.monst.pluginutil.configuration.transform.CollectionTransformer;
+import me.monst.pluginutil.configuration.transform.IntTransformer;
+import me.monst.pluginutil.configuration.transform.MapTransformer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class YamlEventFeederTest {
+    
+    @TempDir
+    Path dir;
+    
+    private static class Root extends ConfigurationBranch {
+        
+        private final IntConfigurationValue size = addChild(new IntConfigurationValue("size", 1));
+        private final ConfigurationValue<List<Integer>> ids = addChild(new ConfigurationValue<>("ids",
+                Collections.emptyList(), new CollectionTransformer<>(new IntTransformer(), ArrayList::new)));
+        private final ConfigurationValue<Map<Integer, Integer>> prices = addChild(new ConfigurationValue<>("prices",
+                Collections.emptyMap(), new MapTransformer<>(LinkedHashMap::new, new IntTransformer(), new IntTransformer())));
+        private final Legacy legacy = addChild(new Legacy());
+        
+        private Root() {
+            super("root");
+        }
+        
+    }
+    
+    /**
+     * Accepts the value under its old key as well, which only works if the override is called.
+     */
+    private static class Legacy extends ConfigurationBranch {
+        
+        private final IntConfigurationValue limit = addChild(new IntConfigurationValue("limit", 10));
+        
+        private Legacy() {
+            super("legacy");
+        }
+        
+        @Override
+        protected void feed(Object object) {
+            if (object instanceof Map && ((Map<?, ?>) object).containsKey("max")) {
+                Map<Object, Object> map = new HashMap<>((Map<?, ?>) object);
+                map.putIfAbsent("limit", map.get("max"));
+                object = map;
+            }
+            super.feed(object);
+        }
+        
+    }
+    
+    private Root feed(String yaml) throws Exception {
+        Path path = dir.resolve("data.yml");
+        Files.write(path, yaml.getBytes(StandardCharsets.UTF_8));
+        Root root = new Root();
+        new YamlFile(TestPlugin.create(dir), path).feedStreaming(root);
+        return root;
+    }
+    
+    @Test
+    void streamsCollectionsAndMappings() throws Exception {
+        Root root = feed("unknown:\n  deep: [1, 2, {a: b}]\nsize: 5\nids: [3, 1, 2]\nprices:\n  1: 10\n  2: 20\n");
+        assertEquals(5, root.size.getInt());
+        assertEquals(Arrays.asList(3, 1, 2), root.ids.get());
+        Map<Integer, Integer> prices = new LinkedHashMap<>();
+        prices.put(1, 10);
+        prices.put(2, 20);
+        assertEquals(prices, root.prices.get());
+    }
+    
+    @Test
+    void feedsMissingKeysAsNull() throws Exception {
+        Root root = feed("ids: [4]\n");
+        assertEquals(1, root.size.getInt());
+        assertEquals(Collections.emptyMap(), root.prices.get());
+        assertEquals(10, root.legacy.limit.getInt());
+    }
+    
+    @Test
+    void feedsBranchesThroughTheirOverride() throws Exception {
+        assertEquals(30, feed("legacy:\n  max: 30\n").legacy.limit.getInt());
+        assertEquals(40, feed("legacy:\n  limit: 40\n").legacy.limit.getInt());
+    }
+    
+    @Test
+    void resolvesOnlyAliasesToComposedData() throws Exception {
+        Root root = feed("size: &size 7\nprices: {1: *size}\n");
+        assertEquals(Collections.singletonMap(1, 7), root.prices.get());
+        root = feed("skipped: &size 7\nsize: *size\n"); // Skipped data is never composed, so the alias is null
+        assertEquals(1, root.size.getInt());
+    }
+    
+}
@@ -0,0 +1,141 @@
+package me.monst.pluginutil.configuration;
+
+import me.monst.pluginutil.Promise;
+import me.monst.pluginutil.TestPlugin;
+import me.monst.pluginutil.TestServer;
+import org.bukkit.Bukkit;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class YamlFileTest {
+    
+    @TempDir
+    Path dir;
+    
+    @BeforeAll
+    static void installServer() {
+        TestServer.install();
+    }
+    
+    private YamlFile file(String yaml) throws Exception {
+        Path path = dir.resolve("config.yml");
+        Files.write(path, yaml.getBytes(StandardCharsets.UTF_8));
+        return new YamlFile(TestPlugin.create(dir), path);
+    }
+    
+    @Test
+    @SuppressWarnings("unchecked")
+    void returnsACopyOfTheCachedData() throws Exception {
+        YamlFile file = file("worlds:\n  - world\n  - nether\nlimits:\n  size: 3\n");
+        Map<String, Object> first = (Map<String, Object>) file.load();
+        ((List<Object>) first.get("worlds")).add("end");
+        ((Map<String, Object>) first.get("limits")).put("size", 4);
+        first.remove("worlds");
+        Map<String, Object> second = (Map<String, Object>) file.load();
+        assertNotSame(first, second);
+        assertEquals(Arrays.asList("world", "nether"), second.get("worlds"));
+        assertEquals(3, ((Map<?, ?>) second.get("limits")).get("size"));
+        assertTrue(file.getSavedParseNanos() >= 0);
+    }
+    
+    @Test
+    void parsesAgainWhenTheFileChanges() throws Exception {
+        YamlFile file = file("a: 1\n");
+        assertEquals(1, ((Map<?, ?>) file.load()).get("a"));
+        Files.write(file.getPath(), "a: 22\n".getBytes(StandardCharsets.UTF_8));
+        assertEquals(22, ((Map<?, ?>) file.load()).get("a"));
+    }
+    
+    private static Map<String, Object> data(int value) {
+        return Collections.singletonMap("a", value);
+    }
+    
+    private String content(YamlFile file) throws Exception {
+        return new String(Files.readAllBytes(file.getPath()), StandardCharsets.UTF_8).trim();
+    }
+    
+    /**
+     * Occupies every async thread of the test server until the returned latch is counted down, so that async tasks
+     * scheduled in the meantime only start afterwards.
+     */
+    private CountDownLatch blockAsyncThreads() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(4);
+        for (int i = 0; i < 4; i++) {
+            Bukkit.getScheduler().runTaskAsynchronously(TestPlugin.create(dir), () -> {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException ignored) {}
+            });
+        }
+        started.await();
+        return release;
+    }
+    
+    @Test
+    void saveSupersedesPendingAsyncSaves() throws Exception {
+        YamlFile file = file("a: 0\n");
+        CountDownLatch release = blockAsyncThreads();
+        Promise<Void> pending;
+        try {
+            pending = file.saveAsync(data(1));
+            file.save(data(2));
+            assertEquals("a: 2", content(file));
+        } finally {
+            release.countDown();
+        }
+        assertNull(TestServer.await(pending)); // Settled by the synchronous save
+        assertEquals("a: 2", content(file));
+        file.saveAsync(data(3)); // The async writer still runs, but must not write the superseded data
+        TestServer.await(file.saveAsync(data(4)));
+        TestServer.drainMainThread();
+        assertEquals("a: 4", content(file));
+    }
+    
+    @Test
+    void flushWritesPendingAsyncSaves() throws Exception {
+        YamlFile file = file("a: 0\n");
+        CountDownLatch release = blockAsyncThreads();
+        Promise<Void> pending;
+        try {
+            pending = file.saveAsync(data(1));
+            file.saveAsync(data(2));
+            TestServer.callOnMainThread(() -> {
+                file.flush();
+                return null;
+            });
+            assertEquals("a: 2", content(file));
+        } finally {
+            release.countDown();
+        }
+        assertNull(TestServer.await(pending));
+        file.flush(); // Nothing pending
+        assertEquals("a: 2", content(file));
+    }
+    
+    @Test
+    void savesOnTheCallingThreadOnceDisabled() throws Exception {
+        AtomicBoolean enabled = new AtomicBoolean(false);
+        Path path = dir.resolve("config.yml");
+        YamlFile file = new YamlFile(TestPlugin.create(dir, enabled::get), path);
+        AtomicBoolean saved = new AtomicBoolean();
+        file.saveAsync(data(5)).then(result -> saved.set(true));
+        assertTrue(saved.get());
+        assertEquals("a: 5", content(file));
+    }
+    
+}
@@ -0,0 +1,52 @@
+package me.monst.pluginutil.configuration;
+
+import me.monst.pluginutil.TestPlugin;
+import me.monst.pluginutil.TestServer;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class YamlFileWatcherTest {
+    
+    @TempDir
+    Path dir;
+    
+    @BeforeAll
+    static void installServer() {
+        TestServer.install();
+    }
+    
+    private static void write(Path path, String yaml) throws Exception {
+        Files.write(path, yaml.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    @Test
+    void keepsWatchingAfterMalformedYaml() throws Exception {
+        Path path = dir.resolve("config.yml");
+        write(path, "a: 1\n");
+        YamlFile file = new YamlFile(TestPlugin.create(dir), path);
+        assertEquals(Collections.singletonMap("a", 1), file.load());
+        BlockingQueue<Object> reloads = new LinkedBlockingQueue<>();
+        file.watch(Duration.ofMillis(50), reloads::add);
+        try {
+            write(path, "a: [1, 2\n");
+            assertNull(reloads.poll(1, TimeUnit.SECONDS));
+            write(path, "a: 2\n");
+            assertEquals(Collections.singletonMap("a", 2), reloads.poll(10, TimeUnit.SECONDS));
+        } finally {
+            file.unwatch();
+        }
+    }
+    
+}
@@ -0,0 +1,157 @@
+package me.monst.pluginutil.configuration;
+
+import me.monst.pluginutil.TestPlugin;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class YamlSnapshotTest {
+    
+    private static final byte[] HASH = { 1, 2, 3, 4 };
+    
+    @TempDir
+    Path dir;
+    
+    private static Map<Object, Object> sample() {
+        Map<Object, Object> nested = new LinkedHashMap<>();
+        nested.put("enabled", true);
+        nested.put("disabled", false);
+        nested.put("missing", null);
+        nested.put(7, "integer key");
+        Map<Object, Object> data = new LinkedHashMap<>();
+        data.put("int", 42);
+        data.put("long", 1L << 40);
+        data.put("big", new BigInteger("123456789012345678901234567890"));
+        data.put("double", -0.5);
+        data.put("string", "h\u00e9llo");
+        data.put("list", Arrays.asList(1, "two", null, Collections.singletonList(3)));
+        data.put("set", new LinkedHashSet<>(Arrays.asList("a", "b")));
+        data.put("date", new Date(1_600_000_000_000L));
+        data.put("nested", nested);
+        return data;
+    }
+    
+    @Test
+    @SuppressWarnings("unchecked")
+    void roundTripsEveryType() throws IOException {
+        Path file = dir.resolve("data.snapshot");
+        Map<Object, Object> data = sample();
+        data.put("binary", new byte[] { 9, 8, 7 });
+        YamlSnapshot.write(file, HASH, data);
+        Map<Object, Object> read = (Map<Object, Object>) YamlSnapshot.read(file, HASH);
+        assertArrayEquals(new byte[] { 9, 8, 7 }, (byte[]) read.remove("binary"));
+        data.remove("binary");
+        assertEquals(data, read);
+        assertEquals(new ArrayList<>(data.keySet()), new ArrayList<>(read.keySet()));
+        assertTrue(read.get("set") instanceof Set);
+    }
+    
+    @Test
+    void roundTripsNullData() throws IOException {
+        Path file = dir.resolve("data.snapshot");
+        YamlSnapshot.write(file, HASH, null);
+        assertNull(YamlSnapshot.read(file, HASH));
+    }
+    
+    @Test
+    void isMissingForOtherYamlOrNoFile() throws IOException {
+        Path file = dir.resolve("data.snapshot");
+        assertSame(YamlSnapshot.MISSING, YamlSnapshot.read(file, HASH));
+        YamlSnapshot.write(file, HASH, sample());
+        assertSame(YamlSnapshot.MISSING, YamlSnapshot.read(file, new byte[] { 4, 3, 2, 1 }));
+        Files.write(file, "not a snapshot".getBytes(StandardCharsets.UTF_8));
+        assertSame(YamlSnapshot.MISSING, YamlSnapshot.read(file, HASH));
+    }
+    
+    @Test
+    void rejectsUnsupportedTypesWithoutTouchingTheFile() throws IOException {
+        Path file = dir.resolve("data.snapshot");
+        YamlSnapshot.write(file, HASH, sample());
+        byte[] before = Files.readAllBytes(file);
+        assertThrows(IllegalArgumentException.class,
+                () -> YamlSnapshot.write(file, HASH, Collections.singletonMap("object", new Object())));
+        assertArrayEquals(before, Files.readAllBytes(file));
+    }
+    
+    @Test
+    void failsOnCorruptData() throws IOException {
+        Path file = dir.resolve("data.snapshot");
+        YamlSnapshot.write(file, HASH, sample());
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 5));
+        assertThrows(IOException.class, () -> YamlSnapshot.read(file, HASH));
+        byte[] negative = Arrays.copyOf(bytes, 10 + HASH.length + 4); // Header, map tag and a negative size
+        negative[6 + HASH.length] = 8;
+        Arrays.fill(negative, 7 + HASH.length, negative.length, (byte) 0xff);
+        Files.write(file, negative);
+        assertThrows(IOException.class, () -> YamlSnapshot.read(file, HASH));
+    }
+    
+    /**
+     * Writes a snapshot of the given hash whose data is the given raw bytes.
+     */
+    private Path rawSnapshot(int... data) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0x50555953);
+        out.writeByte(1);
+        out.writeByte(HASH.length);
+        out.write(HASH);
+        for (int b : data)
+            out.writeByte(b);
+        Path file = dir.resolve("raw.snapshot");
+        Files.write(file, bytes.toByteArray());
+        return file;
+    }
+    
+    @Test
+    void rejectsSizesBeyondTheEndOfTheFile() throws IOException {
+        int map = 8, list = 9, string = 7, bigInteger = 5;
+        assertEquals(Collections.singletonList(null), YamlSnapshot.read(rawSnapshot(list, 0, 0, 0, 1, 0), HASH));
+        for (int tag : new int[] { map, list, string }) // Sizes of 2^31 - 1 elements or bytes
+            assertThrows(IOException.class, () -> YamlSnapshot.read(rawSnapshot(tag, 0x7f, 0xff, 0xff, 0xff, 0), HASH));
+        assertThrows(IOException.class, () -> YamlSnapshot.read(rawSnapshot(list, 0, 0, 0, 2, 0), HASH));
+        assertThrows(IOException.class, () -> YamlSnapshot.read(rawSnapshot(map, 0, 0, 0, 1, 0), HASH));
+        assertThrows(IOException.class, () -> YamlSnapshot.read(rawSnapshot(bigInteger, 0, 0, 0, 0), HASH));
+    }
+    
+    @Test
+    void rejectsDeepNesting() throws IOException {
+        int[] nested = new int[5 * 100_000];
+        for (int i = 0; i < nested.length; i += 5) {
+            nested[i] = 9; // A list holding only the next list
+            nested[i + 4] = 1;
+        }
+        Path file = rawSnapshot(nested);
+        assertThrows(IOException.class, () -> YamlSnapshot.read(file, HASH));
+    }
+    
+    @Test
+    void yamlFileLoadsThroughTheSnapshot() throws IOException {
+        Path path = dir.resolve("config.yml");
+        Files.write(path, "limits:\n  size: 3\nworlds: [world, nether]\n".getBytes(StandardCharsets.UTF_8));
+        YamlFile file = new YamlFile(TestPlugin.create(dir), path);
+        file.setSnapshotCaching(true);
+        Object parsed = file.load();
+        Path snapshot = dir.resolve(".config.yml.snapshot");
+        assertTrue(Files.exists(snapshot));
+        YamlFile restarted = new YamlFile(TestPlugin.create(dir), path);
+        restarted.setSnapshotCaching(true);
+        assertEquals(parsed, restarted.load());
+        Files.write(snapshot, new byte[] { 0x50, 0x55 }); // Unreadable, so the YAML is parsed instead
+        YamlFile again = new YamlFile(TestPlugin.create(dir), path);
+        again.setSnapshotCaching(true);
+        assertEquals(parsed, again.load());
+    }
+    
+}
@@ -0,0 +1,68 @@
+package me.monst.pluginutil.configuration.transform;
+
+import me.monst.pluginutil.configuration.exception.ArgumentParseException;
+import me.monst.pluginutil.configuration.exception.UnreadableValueException;
+import me.monst.pluginutil.configuration.exception.ValueOutOfBoundsException;
+import me.monst.pluginutil.configuration.validation.DoubleBound;
+import me.monst.pluginutil.configuration.validation.IntBound;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PrimitiveTransformerTest {
+    
+    @Test
+    void widensIntegralNumbersWithinRange() throws Exception {
+        IntTransformer ints = new IntTransformer();
+        assertEquals(7, ints.convertInt(7L));
+        assertEquals(7, ints.convertInt(7.0));
+        assertEquals(-7, ints.convertInt(BigInteger.valueOf(-7)));
+        assertEquals(Integer.MIN_VALUE, ints.convertInt((long) Integer.MIN_VALUE));
+        LongTransformer longs = new LongTransformer();
+        assertEquals(7L, longs.convertLong((short) 7));
+        assertEquals(1L << 40, longs.convertLong((double) (1L << 40)));
+        assertEquals(Long.MAX_VALUE, longs.convertLong(BigInteger.valueOf(Long.MAX_VALUE)));
+        assertEquals(Long.MIN_VALUE, longs.convertLong(-0x1p63));
+    }
+    
+    @Test
+    void rejectsNumbersOutOfRangeOrWithAFraction() {
+        IntTransformer ints = new IntTransformer();
+        assertThrows(UnreadableValueException.class, () -> ints.convertInt(Integer.MAX_VALUE + 1L));
+        assertThrows(UnreadableValueException.class, () -> ints.convertInt(1.5));
+        assertThrows(UnreadableValueException.class, () -> ints.convertInt(Double.NaN));
+        LongTransformer longs = new LongTransformer();
+        assertThrows(UnreadableValueException.class, () -> longs.convertLong(0x1p63));
+        assertThrows(UnreadableValueException.class, () -> longs.convertLong(Double.POSITIVE_INFINITY));
+        assertThrows(UnreadableValueException.class, () -> longs.convertLong(BigInteger.ONE.shiftLeft(63)));
+    }
+    
+    @Test
+    void boundsAreAppliedAfterWidening() {
+        IntTransformer ints = new IntTransformer().boundedInt(IntBound.atMost(10));
+        ValueOutOfBoundsException e = assertThrows(ValueOutOfBoundsException.class, () -> ints.convertInt(20L));
+        assertEquals(Integer.valueOf(10), e.getReplacement());
+    }
+    
+    @Test
+    void nanPassesDoubleBounds() {
+        DoubleBound bound = DoubleBound.atLeast(0).and(DoubleBound.atMost(1));
+        assertTrue(Double.isNaN(bound.replace(Double.NaN)));
+        assertDoesNotThrow(() -> bound.validate(Double.NaN));
+        assertEquals(0, bound.replace(-1));
+        assertEquals(1, bound.replace(2));
+    }
+    
+    @Test
+    void nanIsNotAReadableDouble() throws Exception {
+        DoubleTransformer doubles = new DoubleTransformer().boundedDouble(DoubleBound.atLeast(0));
+        assertThrows(UnreadableValueException.class, () -> doubles.convertDouble(Double.NaN));
+        assertThrows(UnreadableValueException.class, () -> doubles.convertDouble(".nan"));
+        assertThrows(ArgumentParseException.class, () -> doubles.parseDouble("NaN"));
+        assertEquals(0.0, doubles.parseDouble("-3"));
+        assertEquals(2.5, doubles.convertDouble(2.5f));
+    }
+    
+}
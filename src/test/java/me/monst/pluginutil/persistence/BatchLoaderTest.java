@@ -0,0 +1,113 @@
+package me.monst.pluginutil.persistence;
+
+import me.monst.pluginutil.Promise;
+import me.monst.pluginutil.TestPlugin;
+import me.monst.pluginutil.TestServer;
+import org.bukkit.plugin.Plugin;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchLoaderTest {
+    
+    private static final Query NAMES = Query.of("SELECT id, name FROM players WHERE id IN (%s)");
+    
+    @TempDir
+    Path dir;
+    
+    private H2Database database;
+    private final AtomicInteger queries = new AtomicInteger();
+    
+    @BeforeAll
+    static void installServer() {
+        TestServer.install();
+    }
+    
+    @BeforeEach
+    void setUp() throws SQLException {
+        database = new H2Database();
+        database.execute("CREATE TABLE players (id INT PRIMARY KEY, name VARCHAR(16))");
+        database.execute("INSERT INTO players VALUES (1, 'alice'), (2, 'bob'), (3, 'carol')");
+    }
+    
+    @AfterEach
+    void tearDown() {
+        database.shutdown();
+    }
+    
+    private BatchLoader<Integer, String[]> loader(Reconstructor<String[]> reconstructor, int maxBatchSize) {
+        Plugin plugin = TestPlugin.create(dir);
+        ConnectionProvider counting = () -> {
+            queries.incrementAndGet();
+            return database.getConnection();
+        };
+        return new BatchLoader<>(plugin, counting, NAMES, reconstructor, row -> Integer.valueOf(row[0]), maxBatchSize, 1);
+    }
+    
+    private static String[] row(ResultSet rs, Connection con) throws SQLException {
+        return new String[] { rs.getString(1), rs.getString(2) };
+    }
+    
+    @Test
+    void coalescesKeysOfOneWindowIntoOneQuery() throws Exception {
+        BatchLoader<Integer, String[]> loader = loader(BatchLoaderTest::row, 100);
+        Promise<String[]>[] promises = TestServer.callOnMainThread(() -> {
+            @SuppressWarnings("unchecked")
+            Promise<String[]>[] loads = new Promise[] { loader.load(1), loader.load(2), loader.load(1) };
+            return loads;
+        });
+        assertSame(promises[0], promises[2]);
+        assertEquals("alice", TestServer.await(promises[0])[1]);
+        assertEquals("bob", TestServer.await(promises[1])[1]);
+        assertEquals(1, queries.get());
+    }
+    
+    @Test
+    void resolvesMissingKeysWithNull() throws Exception {
+        BatchLoader<Integer, String[]> loader = loader(BatchLoaderTest::row, 100);
+        Promise<String[]> found = loader.load(3);
+        Promise<String[]> missing = loader.load(99);
+        loader.flush();
+        assertEquals("carol", TestServer.await(found)[1]);
+        assertNull(TestServer.await(missing));
+        assertEquals(1, queries.get());
+    }
+    
+    @Test
+    void sendsAFullBatchAtOnce() throws Exception {
+        BatchLoader<Integer, String[]> loader = loader(BatchLoaderTest::row, 2);
+        Promise<String[]> first = loader.load(1);
+        Promise<String[]> second = loader.load(2);
+        Promise<String[]> third = loader.load(3);
+        assertEquals("alice", TestServer.await(first)[1]);
+        assertEquals("bob", TestServer.await(second)[1]);
+        assertEquals("carol", TestServer.await(third)[1]); // Sent by the window, in a second query
+        assertEquals(2, queries.get());
+    }
+    
+    @Test
+    void rejectsTheWholeBatchIfARowCannotBeRead() throws Exception {
+        BatchLoader<Integer, String[]> loader = loader((rs, con) -> {
+            if (rs.getInt(1) == 2)
+                throw new IllegalStateException("Unreadable row");
+            return row(rs, con);
+        }, 100);
+        Promise<String[]> readable = loader.load(1);
+        Promise<String[]> unreadable = loader.load(2);
+        Promise<String[]> missing = loader.load(99);
+        loader.flush();
+        for (Promise<String[]> promise : new Promise[] { readable, unreadable, missing })
+            assertEquals("Unreadable row", assertThrows(IllegalStateException.class, () -> TestServer.await(promise)).getMessage());
+    }
+    
+}
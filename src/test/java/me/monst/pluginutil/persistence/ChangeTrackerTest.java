@@ -0,0 +1,109 @@
+package me.monst.pluginutil.persistence;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChangeTrackerTest {
+    
+    private H2Database database;
+    private ChangeTracker<Account> tracker;
+    
+    private static class Account {
+        
+        private final int id;
+        private int balance;
+        
+        private Account(int id, int balance) {
+            this.id = id;
+            this.balance = balance;
+        }
+        
+    }
+    
+    @BeforeEach
+    void setUp() throws SQLException {
+        database = new H2Database();
+        database.execute("CREATE TABLE accounts (id INT PRIMARY KEY, balance INT)");
+        database.execute("INSERT INTO accounts VALUES (1, 100)");
+        tracker = new ChangeTracker<Account>("accounts")
+                .key("id", account -> account.id)
+                .column("balance", account -> account.balance);
+    }
+    
+    @AfterEach
+    void tearDown() {
+        database.shutdown();
+    }
+    
+    private Account load() throws SQLException {
+        return database.read(con -> Query.of("SELECT * FROM accounts WHERE id = 1").asOne(con,
+                tracker.tracking((resultSet, c) -> new Account(resultSet.getInt("id"), resultSet.getInt("balance")))));
+    }
+    
+    private int balance() throws SQLException {
+        return database.read(con -> Query.of("SELECT balance FROM accounts WHERE id = 1").asOne(con, Integer.class));
+    }
+    
+    private int save(List<Account> accounts) throws SQLException {
+        try (Connection con = database.getConnection()) {
+            return tracker.save(con, accounts);
+        }
+    }
+    
+    @Test
+    void savesOnlyChangedEntities() throws SQLException {
+        Account account = load();
+        List<Account> accounts = Collections.singletonList(account);
+        assertEquals(0, save(accounts));
+        account.balance = 150;
+        assertEquals(1, save(accounts));
+        assertEquals(150, balance());
+        assertFalse(tracker.isChanged(account));
+    }
+    
+    @Test
+    void rolledBackChangesAreSavedAgain() throws SQLException {
+        Account account = load();
+        account.balance = 150;
+        List<Account> accounts = Collections.singletonList(account);
+        try (Connection con = database.getConnection()) {
+            con.setAutoCommit(false);
+            tracker.stage(con, accounts);
+            con.rollback();
+        }
+        assertEquals(100, balance());
+        assertTrue(tracker.isChanged(account));
+        assertEquals(1, save(accounts));
+        assertEquals(150, balance());
+    }
+    
+    @Test
+    void stagedChangesAreSnapshottedAfterCommit() throws SQLException {
+        Account account = load();
+        account.balance = 150;
+        try (Connection con = database.getConnection()) {
+            con.setAutoCommit(false);
+            ChangeTracker<Account>.Staged staged = tracker.stage(con, Collections.singletonList(account));
+            con.commit();
+            staged.committed();
+        }
+        assertFalse(tracker.isChanged(account));
+    }
+    
+    @Test
+    void saveRefusesCallersTransaction() throws SQLException {
+        try (Connection con = database.getConnection()) {
+            con.setAutoCommit(false);
+            assertThrows(IllegalStateException.class, () -> tracker.save(con, Collections.emptyList()));
+        }
+    }
+    
+}
@@ -0,0 +1,128 @@
+package me.monst.pluginutil.persistence;
+
+import me.monst.pluginutil.Promise;
+import me.monst.pluginutil.TestPlugin;
+import me.monst.pluginutil.TestServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GroupCommitWriterTest {
+    
+    @TempDir
+    Path dir;
+    
+    private H2Database database;
+    private GroupCommitWriter writer;
+    private final AtomicInteger commits = new AtomicInteger();
+    
+    @BeforeAll
+    static void installServer() {
+        TestServer.install();
+    }
+    
+    @BeforeEach
+    void setUp() throws SQLException {
+        database = new H2Database();
+        database.execute("CREATE TABLE events (id INT PRIMARY KEY)");
+    }
+    
+    @AfterEach
+    void tearDown() {
+        if (writer != null)
+            writer.shutdown(Duration.ofSeconds(5));
+        database.shutdown();
+    }
+    
+    /**
+     * Creates a writer whose connections count their commits, and throw from the given method once they have
+     * committed, after really calling it.
+     */
+    private GroupCommitWriter writer(Duration window, String failingAfterCommit) {
+        ConnectionProvider provider = () -> {
+            Connection con = database.getConnection();
+            boolean[] committed = new boolean[1];
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[] { Connection.class }, (proxy, method, args) -> {
+                        Object result;
+                        try {
+                            result = method.invoke(con, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                        if (method.getName().equals("commit")) {
+                            commits.incrementAndGet();
+                            committed[0] = true;
+                        } else if (committed[0] && method.getName().equals(failingAfterCommit)) {
+                            throw new SQLException(failingAfterCommit + " failed");
+                        }
+                        return result;
+                    });
+        };
+        writer = new GroupCommitWriter(TestPlugin.create(dir), provider, window, 100);
+        return writer;
+    }
+    
+    private static ConnectionFunction<Integer> insert(int id) {
+        return con -> Query.of("INSERT INTO events VALUES (?)").with(id).executeUpdate(con);
+    }
+    
+    private int count() throws SQLException {
+        long count = database.read(con -> Query.of("SELECT COUNT(*) FROM events").asOne(con, Long.class));
+        return (int) count;
+    }
+    
+    @Test
+    void commitsAGroupOnceAndRejectsOnlyTheFailingWrite() throws Exception {
+        GroupCommitWriter writer = writer(Duration.ofMillis(200), null);
+        Promise<Integer> first = writer.submit(insert(1));
+        Promise<Integer> duplicate = writer.submit(insert(1));
+        Promise<Integer> second = writer.submit(insert(2));
+        assertEquals(1, TestServer.await(first));
+        assertEquals(1, TestServer.await(second));
+        assertThrows(SQLException.class, () -> TestServer.await(duplicate));
+        assertEquals(1, commits.get());
+        assertEquals(2, count());
+    }
+    
+    @Test
+    void resolvesCommittedWritesWhenResettingAutoCommitFails() throws Exception {
+        GroupCommitWriter writer = writer(Duration.ZERO, "setAutoCommit");
+        assertEquals(1, TestServer.await(writer.submit(insert(1))));
+        assertEquals(1, count());
+    }
+    
+    @Test
+    void resolvesCommittedWritesWhenClosingFails() throws Exception {
+        GroupCommitWriter writer = writer(Duration.ZERO, "close");
+        assertEquals(1, TestServer.await(writer.submit(insert(1))));
+        assertEquals(1, count());
+    }
+    
+    @Test
+    void rejectsAPartialGroupWhenInterrupted() throws Exception {
+        GroupCommitWriter writer = writer(Duration.ofSeconds(30), null);
+        Promise<Integer> collected = writer.submit(insert(1));
+        Thread.sleep(200); // Let the writer take the write and start waiting for the rest of its group
+        Field thread = GroupCommitWriter.class.getDeclaredField("thread");
+        thread.setAccessible(true);
+        ((Thread) thread.get(writer)).interrupt();
+        SQLException e = assertThrows(SQLException.class, () -> TestServer.await(collected));
+        assertEquals("Group commit writer was interrupted", e.getMessage());
+        assertEquals(0, count());
+    }
+    
+}
@@ -0,0 +1,49 @@
+package me.monst.pluginutil.persistence;
+
+import org.h2.jdbcx.JdbcDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A fresh in-memory H2 database for a single test.
+ */
+class H2Database implements Database {
+    
+    private static final AtomicInteger COUNTER = new AtomicInteger();
+    
+    private final JdbcDataSource dataSource = new JdbcDataSource();
+    
+    H2Database() {
+        this("LEGACY");
+    }
+    
+    H2Database(String mode) {
+        dataSource.setURL("jdbc:h2:mem:test" + COUNTER.incrementAndGet() + ";MODE=" + mode + ";DB_CLOSE_DELAY=-1");
+    }
+    
+    @Override
+    public void reload() {
+        
+    }
+    
+    @Override
+    public void shutdown() {
+        try (Connection con = getConnection(); Statement stmt = con.createStatement()) {
+            stmt.execute("SHUTDOWN");
+        } catch (SQLException ignored) {}
+    }
+    
+    @Override
+    public DataSource getDataSource() {
+        return dataSource;
+    }
+    
+    void execute(String sql) throws SQLException {
+        write(con -> Query.of(sql).execute(con));
+    }
+    
+}
@@ -0,0 +1,140 @@
+package me.monst.pluginutil.persistence;
+
+import me.monst.pluginutil.TestPlugin;
+import me.monst.pluginutil.TestServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.*;
+import java.util.function.BooleanSupplier;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InvalidationChannelTest {
+    
+    @TempDir
+    Path dir;
+    
+    private H2Database database;
+    private final List<InvalidationChannel> channels = new ArrayList<>();
+    
+    @BeforeAll
+    static void installServer() {
+        TestServer.install();
+    }
+    
+    @BeforeEach
+    void setUp() {
+        database = new H2Database();
+    }
+    
+    @AfterEach
+    void tearDown() {
+        channels.forEach(InvalidationChannel::stop);
+        database.shutdown();
+    }
+    
+    /**
+     * Starts a node subscribed to the "players" cache, recording the keys it invalidates.
+     */
+    private List<String> node(InvalidationChannel[] channel) throws SQLException {
+        List<String> invalidated = Collections.synchronizedList(new ArrayList<>());
+        InvalidationChannel node = new InvalidationChannel(TestPlugin.create(dir), database, "invalidations",
+                Duration.ofMillis(50), Duration.ofHours(1));
+        node.subscribe("players", invalidated::add);
+        node.start();
+        channels.add(node);
+        if (channel != null)
+            channel[0] = node;
+        return invalidated;
+    }
+    
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "Timed out");
+            Thread.sleep(20);
+        }
+    }
+    
+    private void insert(long id, String key) throws SQLException {
+        database.execute("INSERT INTO invalidations (id, cache_name, cache_key, created_at) VALUES ("
+                + id + ", 'players', '" + key + "', " + System.currentTimeMillis() + ")");
+    }
+    
+    @Test
+    void deliversInvalidationsToEveryNode() throws Exception {
+        InvalidationChannel[] publisher = new InvalidationChannel[1];
+        List<String> local = node(publisher);
+        List<String> remote = node(null);
+        database.write(publisher[0].invalidating(con -> null, "players", "alice", null));
+        assertEquals(Arrays.asList("alice", null), local.subList(0, 2)); // Right away, before the commit
+        awaitTrue(() -> remote.size() == 2 && local.size() == 4); // And once more when polled back
+        assertEquals(Arrays.asList("alice", null), remote);
+    }
+    
+    @Test
+    void looksUpSkippedIdsAgain() throws Exception {
+        List<String> remote = node(null);
+        insert(3, "third");
+        awaitTrue(() -> remote.contains("third")); // Ids 1 and 2 are skipped, as if their transactions were still open
+        insert(2, "second");
+        insert(1, "first");
+        awaitTrue(() -> remote.size() == 3);
+        assertTrue(remote.containsAll(Arrays.asList("first", "second")));
+    }
+    
+    @Test
+    void warnsAboutGapsTooLargeToTrack() throws Exception {
+        List<String> remote = node(null);
+        List<String> warnings = Collections.synchronizedList(new ArrayList<>());
+        Handler handler = new Handler() {
+            @Override
+            public void publish(LogRecord record) {
+                warnings.add(record.getMessage());
+            }
+            
+            @Override
+            public void flush() {}
+            
+            @Override
+            public void close() {}
+        };
+        Logger logger = Logger.getLogger("TestPlugin");
+        logger.addHandler(handler);
+        try {
+            insert(5000, "far");
+            awaitTrue(() -> remote.contains("far"));
+            assertTrue(warnings.stream().anyMatch(message -> message.startsWith("Skipped 4999 cache invalidation ids")),
+                    warnings.toString());
+        } finally {
+            logger.removeHandler(handler);
+        }
+    }
+    
+    @Test
+    void limitsRowsPortably() throws SQLException {
+        assertEquals("LIMIT ?", Dialect.H2.limitClause());
+        assertEquals("FETCH FIRST ? ROWS ONLY", Dialect.STANDARD.limitClause());
+        H2Database standard = new H2Database("REGULAR");
+        try {
+            standard.execute("CREATE TABLE numbers (n INT)");
+            standard.execute("INSERT INTO numbers VALUES (1), (2), (3)");
+            int[] first = standard.read(Query.of("SELECT n FROM numbers ORDER BY n " + Dialect.STANDARD.limitClause())
+                    .with(2)::asIntArray);
+            assertArrayEquals(new int[] { 1, 2 }, first);
+        } finally {
+            standard.shutdown();
+        }
+    }
+    
+}
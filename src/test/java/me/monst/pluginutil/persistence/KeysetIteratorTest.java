@@ -0,0 +1,101 @@
+package me.monst.pluginutil.persistence;
+
+import me.monst.pluginutil.TestPlugin;
+import me.monst.pluginutil.TestServer;
+import me.monst.pluginutil.TickBudgetedExecutor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KeysetIteratorTest {
+    
+    private static final Query PAGE = Query.of("SELECT id FROM items WHERE kind = ? AND id > ? ORDER BY id LIMIT ?");
+    
+    @TempDir
+    Path dir;
+    
+    private H2Database database;
+    
+    @BeforeEach
+    void setUp() throws SQLException {
+        database = new H2Database();
+        database.execute("CREATE TABLE items (id INT PRIMARY KEY, kind VARCHAR(8))");
+    }
+    
+    @AfterEach
+    void tearDown() {
+        database.shutdown();
+    }
+    
+    private void insert(String kind, int from, int to) throws SQLException {
+        for (int id = from; id <= to; id++)
+            database.execute("INSERT INTO items VALUES (" + id + ", '" + kind + "')");
+    }
+    
+    private static KeysetIterator<Integer> iterator(String kind, int pageSize) {
+        return new KeysetIterator<>(PAGE, (rs, con) -> rs.getInt(1), id -> id, 0, pageSize).with(kind);
+    }
+    
+    private List<List<Integer>> pages(KeysetIterator<Integer> iterator) throws SQLException {
+        List<List<Integer>> pages = new ArrayList<>();
+        try (Connection con = database.getConnection()) {
+            while (iterator.hasNext())
+                pages.add(iterator.next(con));
+        }
+        return pages;
+    }
+    
+    @Test
+    void stopsAfterAShortPage() throws SQLException {
+        insert("a", 1, 7);
+        insert("b", 8, 9);
+        assertEquals(Arrays.asList(Arrays.asList(1, 2, 3), Arrays.asList(4, 5, 6), Collections.singletonList(7)),
+                pages(iterator("a", 3)));
+    }
+    
+    @Test
+    void fetchesAnEmptyPageAfterAFullLastPage() throws SQLException {
+        insert("a", 1, 6);
+        KeysetIterator<Integer> iterator = iterator("a", 3);
+        assertEquals(Arrays.asList(Arrays.asList(1, 2, 3), Arrays.asList(4, 5, 6), Collections.emptyList()),
+                pages(iterator));
+        assertFalse(iterator.hasNext());
+        try (Connection con = database.getConnection()) {
+            assertEquals(Collections.emptyList(), iterator.next(con));
+        }
+    }
+    
+    @Test
+    void handlesAnEmptyTable() throws SQLException {
+        KeysetIterator<Integer> iterator = iterator("a", 3);
+        assertEquals(Collections.singletonList(Collections.emptyList()), pages(iterator));
+        assertFalse(iterator.hasNext());
+    }
+    
+    @Test
+    void rejectsNonPositivePageSizes() {
+        assertThrows(IllegalArgumentException.class, () -> iterator("a", 0));
+    }
+    
+    @Test
+    void scansAsynchronouslyAndAppliesResultsInOrder() throws Exception {
+        TestServer.install();
+        insert("a", 1, 10);
+        TickBudgetedExecutor mainThread = new TickBudgetedExecutor(TestPlugin.create(dir), Duration.ofMillis(1));
+        List<Integer> applied = Collections.synchronizedList(new ArrayList<>());
+        int rows = TestServer.await(iterator("a", 4).scanAsync(TestPlugin.create(dir), database::getConnection,
+                (page, con) -> page, applied::add, mainThread));
+        assertEquals(10, rows);
+        assertEquals(Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8, 9, 10), applied);
+    }
+    
+}
@@ -0,0 +1,78 @@
+package me.monst.pluginutil.persistence;
+
+import me.monst.pluginutil.TestBorrower;
+import me.monst.pluginutil.TestPlugin;
+import me.monst.pluginutil.log.Debugger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LeakDetectingDatabaseTest {
+    
+    @TempDir
+    Path dir;
+    
+    private final StringWriter log = new StringWriter();
+    private LeakDetectingDatabase database;
+    
+    @BeforeEach
+    void setUp() {
+        database = new LeakDetectingDatabase(TestPlugin.create(dir), new H2Database(),
+                Debugger.printingTo(new PrintWriter(log)), Duration.ofMillis(50));
+    }
+    
+    @AfterEach
+    void tearDown() {
+        database.shutdown();
+    }
+    
+    private long count(String text) {
+        return Arrays.stream(log.toString().split("\n")).filter(line -> line.contains(text)).count();
+    }
+    
+    @Test
+    void reportsLeakedConnectionsWithTheirBorrowSite() throws Exception {
+        Connection leaked = TestBorrower.borrow(database);
+        TestBorrower.borrow(database).close();
+        Thread.sleep(100);
+        database.check();
+        database.check(); // Reported only once
+        String site = "borrowed at " + TestBorrower.class.getName() + ".borrow(TestBorrower.java:";
+        assertEquals(1, count("Connection held for"), log::toString);
+        assertEquals(1, count(site), log::toString);
+        assertEquals(1, count("Connection borrowed here"), log::toString); // Followed by the whole stack trace
+        List<LeakDetectingDatabase.Borrower> borrowers = database.getBorrowers();
+        assertEquals(1, borrowers.size());
+        assertTrue(borrowers.get(0).getBorrowSite().startsWith(TestBorrower.class.getName() + ".borrow("));
+        assertEquals(Thread.currentThread().getName(), borrowers.get(0).getThreadName());
+        assertTrue(borrowers.get(0).getHoldTime().toMillis() >= 100);
+        leaked.close();
+        assertEquals(1, count("Connection " + site.replace("TestBorrower.java:", "")), log::toString);
+        assertEquals(1, count("was closed after"), log::toString);
+        assertEquals(0, database.getBorrowers().size());
+    }
+    
+    @Test
+    void closedConnectionsAreNotReported() throws Exception {
+        try (Connection con = TestBorrower.borrow(database)) {
+            assertFalse(con.isClosed());
+            assertEquals(1, database.getBorrowers().size());
+        }
+        Thread.sleep(100);
+        database.check();
+        database.report();
+        assertEquals("", log.toString().replaceAll(".*0 connection\\(s\\) currently borrowed\\s*", ""));
+    }
+    
+}
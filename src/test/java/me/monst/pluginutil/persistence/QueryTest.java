@@ -0,0 +1,97 @@
+package me.monst.pluginutil.persistence;
+
+import me.monst.pluginutil.collection.LongHashSet;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueryTest {
+    
+    private H2Database database;
+    
+    @BeforeEach
+    void setUp() throws SQLException {
+        database = new H2Database();
+        database.execute("CREATE TABLE numbers (id INT PRIMARY KEY, n BIGINT)");
+        database.execute("INSERT INTO numbers VALUES (1, 10), (2, NULL), (3, 30)");
+    }
+    
+    @AfterEach
+    void tearDown() {
+        database.shutdown();
+    }
+    
+    @Test
+    void primitiveArraysRejectNulls() {
+        Query query = Query.of("SELECT n FROM numbers ORDER BY id");
+        assertThrows(SQLException.class, () -> database.read(query::asLongArray));
+        assertThrows(SQLException.class, () -> database.read(query::asIntArray));
+        assertThrows(SQLException.class, () -> database.read(query::asDoubleArray));
+    }
+    
+    @Test
+    void primitiveArraysReplaceNullsWithDefault() throws SQLException {
+        Query query = Query.of("SELECT n FROM numbers ORDER BY id");
+        assertArrayEquals(new long[] { 10, -1, 30 }, database.read(con -> query.asLongArray(con, -1)));
+        assertArrayEquals(new int[] { 10, 0, 30 }, database.read(con -> query.asIntArray(con, 0)));
+        assertArrayEquals(new double[] { 10, 0.5, 30 }, database.read(con -> query.asDoubleArray(con, 0.5)));
+    }
+    
+    @Test
+    void primitiveArraysKeepRowOrder() throws SQLException {
+        Query query = Query.of("SELECT id FROM numbers ORDER BY id DESC");
+        assertArrayEquals(new int[] { 3, 2, 1 }, database.read(query::asIntArray));
+    }
+    
+    @Test
+    void longSetSkipsNullsAndDuplicates() throws SQLException {
+        database.execute("INSERT INTO numbers VALUES (4, 10), (5, 0)");
+        LongHashSet set = database.read(Query.of("SELECT n FROM numbers")::asLongSet);
+        assertEquals(3, set.size());
+        assertTrue(set.contains(10));
+        assertTrue(set.contains(30));
+        assertTrue(set.contains(0));
+    }
+    
+    @Test
+    void parameterizedTimeoutCreatesACopy() throws SQLException {
+        ParameterizedQuery query = Query.of("SELECT n FROM numbers WHERE id = ?").with(3);
+        ParameterizedQuery copy = query.timeout(Duration.ofSeconds(5));
+        assertNotSame(query, copy);
+        assertNull(query.timeout);
+        assertEquals(Duration.ofSeconds(5), copy.timeout);
+        long n = database.read(con -> copy.asOne(con, Long.class));
+        assertEquals(30, n);
+    }
+    
+    @Test
+    void timeoutStatesAreCounted() {
+        Statement stmt = (Statement) Proxy.newProxyInstance(Statement.class.getClassLoader(),
+                new Class<?>[] { Statement.class }, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "hashCode": return System.identityHashCode(proxy);
+                        case "equals": return proxy == args[0];
+                        default: return null;
+                    }
+                });
+        Query query = Query.of("SELECT 1");
+        long before = Query.getTimeoutCount();
+        for (String state : new String[] { "HYT00", "57014", "42000" })
+            assertThrows(SQLException.class, () -> query.track(stmt, () -> {
+                throw new SQLException("Failed", state);
+            }));
+        assertThrows(SQLTimeoutException.class, () -> query.track(stmt, () -> {
+            throw new SQLTimeoutException("Timed out");
+        }));
+        assertEquals(before + 3, Query.getTimeoutCount());
+    }
+    
+}
@@ -0,0 +1,126 @@
+package me.monst.pluginutil.persistence;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReplicatedDatabaseTest {
+    
+    private H2Database primary;
+    private H2Database replica;
+    private ReplicatedDatabase database;
+    
+    @BeforeEach
+    void setUp() throws SQLException {
+        primary = new H2Database();
+        replica = new H2Database();
+        primary.execute("CREATE TABLE source (name VARCHAR(16))");
+        primary.execute("INSERT INTO source VALUES ('primary')");
+        replica.execute("CREATE TABLE source (name VARCHAR(16))");
+        replica.execute("INSERT INTO source VALUES ('replica')");
+        database = new ReplicatedDatabase(primary, Collections.singletonList(replica.getDataSource()), Duration.ofMinutes(1));
+    }
+    
+    @AfterEach
+    void tearDown() {
+        primary.shutdown();
+        replica.shutdown();
+    }
+    
+    private String source(ConnectionProvider provider) throws SQLException {
+        try (Connection con = provider.getConnection()) {
+            return Query.of("SELECT name FROM source").asOne(con, String.class);
+        }
+    }
+    
+    @Test
+    void readsGoToReplicaAndWritesToPrimary() throws SQLException {
+        assertEquals("replica", database.read(con -> Query.of("SELECT name FROM source").asOne(con, String.class)));
+        assertEquals("primary", database.write(con -> Query.of("SELECT name FROM source").asOne(con, String.class)));
+    }
+    
+    @Test
+    void transactionReadsSeeItsOwnWrites() throws SQLException {
+        String read = database.transaction(con -> {
+            Query.of("UPDATE source SET name = 'written'").executeUpdate(con);
+            return database.read(readCon -> Query.of("SELECT name FROM source").asOne(readCon, String.class));
+        });
+        assertEquals("written", read);
+        assertEquals("written", source(primary));
+    }
+    
+    @Test
+    void failedTransactionIsRolledBack() {
+        assertThrows(SQLException.class, () -> database.transaction(con -> {
+            Query.of("UPDATE source SET name = 'written'").executeUpdate(con);
+            throw new SQLException("failure");
+        }));
+        assertDoesNotThrow(() -> assertEquals("primary", source(primary)));
+    }
+    
+    @Test
+    void unhealthyReplicaFallsBackToPrimary() throws SQLException {
+        DataSource broken = (DataSource) Proxy.newProxyInstance(DataSource.class.getClassLoader(),
+                new Class<?>[] { DataSource.class }, (proxy, method, args) -> {
+                    throw new SQLException("unreachable");
+                });
+        ReplicatedDatabase fallback = new ReplicatedDatabase(primary, Arrays.asList(broken), Duration.ofMinutes(1));
+        assertEquals("primary", fallback.read(con -> Query.of("SELECT name FROM source").asOne(con, String.class)));
+        assertEquals(0, fallback.getHealthyReplicas());
+    }
+    
+    /**
+     * A primary whose connections fail the given method, such as {@code rollback}.
+     */
+    private Database failing(String failingMethod) {
+        return new H2Database() {
+            @Override
+            public Connection getConnection() throws SQLException {
+                Connection con = primary.getConnection();
+                return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                        new Class<?>[] { Connection.class }, (proxy, method, args) -> {
+                            if (method.getName().equals(failingMethod) && !Boolean.FALSE.equals(args == null ? null : args[0]))
+                                throw new SQLException(failingMethod + " failed");
+                            try {
+                                return method.invoke(con, args);
+                            } catch (InvocationTargetException e) {
+                                throw e.getCause();
+                            }
+                        });
+            }
+        };
+    }
+    
+    @Test
+    void rollbackFailureIsSuppressedByOriginalException() {
+        ReplicatedDatabase replicated = new ReplicatedDatabase(failing("rollback"), Collections.emptyList(), Duration.ZERO);
+        SQLException thrown = assertThrows(SQLException.class, () -> replicated.transaction(con -> {
+            throw new SQLException("original");
+        }));
+        assertEquals("original", thrown.getMessage());
+        assertEquals("rollback failed", thrown.getSuppressed()[0].getMessage());
+    }
+    
+    @Test
+    void autoCommitResetFailureIsSuppressedByOriginalException() {
+        // Only setAutoCommit(true) fails, so that the transaction can still begin
+        ReplicatedDatabase replicated = new ReplicatedDatabase(failing("setAutoCommit"), Collections.emptyList(), Duration.ZERO);
+        IllegalStateException thrown = assertThrows(IllegalStateException.class, () -> replicated.transaction(con -> {
+            throw new IllegalStateException("original");
+        }));
+        assertEquals("original", thrown.getMessage());
+        assertEquals("setAutoCommit failed", thrown.getSuppressed()[0].getMessage());
+    }
+    
+}
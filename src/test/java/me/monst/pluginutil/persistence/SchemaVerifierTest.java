@@ -0,0 +1,147 @@
+package me.monst.pluginutil.persistence;
+
+import me.monst.pluginutil.TestPlugin;
+import org.bukkit.plugin.Plugin;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SchemaVerifierTest {
+    
+    @TempDir
+    Path dir;
+    
+    private H2Database database;
+    private Plugin plugin;
+    
+    @BeforeEach
+    void setUp() {
+        database = new H2Database();
+        plugin = TestPlugin.create(dir);
+    }
+    
+    @AfterEach
+    void tearDown() {
+        database.shutdown();
+    }
+    
+    private SchemaVerifier accounts() {
+        return new SchemaVerifier(plugin, database)
+                .table("accounts", Query.of("CREATE TABLE accounts (account_id INT PRIMARY KEY, balance INT)"),
+                        "account_id", "balance");
+    }
+    
+    private SchemaVerifier banks() {
+        return new SchemaVerifier(plugin, database)
+                .table("banks", Query.of("CREATE TABLE banks (bank_id INT PRIMARY KEY, name VARCHAR(32))"),
+                        "bank_id", "name");
+    }
+    
+    /**
+     * Verifies the schema, returning the severe messages logged while doing so.
+     */
+    private static List<String> verifyLogging(SchemaVerifier verifier) throws SQLException {
+        List<String> errors = new ArrayList<>();
+        Handler handler = new Handler() {
+            @Override
+            public void publish(LogRecord record) {
+                errors.add(record.getMessage());
+            }
+            
+            @Override
+            public void flush() {}
+            
+            @Override
+            public void close() {}
+        };
+        Logger logger = Logger.getLogger("TestPlugin");
+        logger.addHandler(handler);
+        try {
+            verifier.verify();
+        } finally {
+            logger.removeHandler(handler);
+        }
+        return errors;
+    }
+    
+    @Test
+    void recreatesTablesDroppedAfterVerification() throws SQLException {
+        assertEquals(Collections.singleton("accounts"), accounts().verify());
+        assertEquals(Collections.emptySet(), accounts().verify());
+        database.execute("DROP TABLE accounts");
+        assertEquals(Collections.singleton("accounts"), accounts().verify()); // Despite the stored fingerprint
+    }
+    
+    @Test
+    void verifiersKeepTheirOwnFingerprint() throws Exception {
+        accounts().verify();
+        banks().verify();
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(2, files.filter(file -> file.getFileName().toString().startsWith(".schema-fingerprint-"))
+                    .count());
+        }
+        database.execute("ALTER TABLE accounts DROP COLUMN balance");
+        assertEquals(Collections.emptyList(), verifyLogging(accounts())); // Still trusted after banks were verified
+        try (Stream<Path> files = Files.list(dir)) {
+            files.forEach(file -> file.toFile().delete());
+        }
+        assertEquals(Collections.singletonList("Table accounts is missing column balance!"),
+                verifyLogging(accounts()));
+    }
+    
+    @Test
+    void warmUpNeverExceedsThePoolSize() {
+        Semaphore pool = new Semaphore(2);
+        AtomicInteger open = new AtomicInteger(), maxOpen = new AtomicInteger();
+        Database limited = new H2Database() {
+            @Override
+            public Connection getConnection() throws SQLException {
+                try {
+                    if (!pool.tryAcquire(2, TimeUnit.SECONDS))
+                        throw new SQLException("Connection pool exhausted");
+                } catch (InterruptedException e) {
+                    throw new SQLException(e);
+                }
+                maxOpen.accumulateAndGet(open.incrementAndGet(), Math::max);
+                Connection con = super.getConnection();
+                return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                        new Class<?>[] { Connection.class }, (proxy, method, args) -> {
+                            if (method.getName().equals("close")) {
+                                open.decrementAndGet();
+                                pool.release();
+                            }
+                            try {
+                                return method.invoke(con, args);
+                            } catch (InvocationTargetException e) {
+                                throw e.getCause();
+                            }
+                        });
+            }
+        };
+        SchemaVerifier verifier = new SchemaVerifier(plugin, limited).poolSize(2);
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> verifier.warmUp(8));
+        assertEquals(2, maxOpen.get());
+        assertEquals(0, open.get());
+        assertThrows(IllegalArgumentException.class, () -> verifier.poolSize(0));
+    }
+    
+}
@@ -0,0 +1,100 @@
+package me.monst.pluginutil.persistence;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShardedDatabaseTest {
+    
+    private H2Database east;
+    private H2Database west;
+    private ShardedDatabase sharded;
+    
+    @BeforeEach
+    void setUp() throws SQLException {
+        east = new H2Database();
+        west = new H2Database();
+        for (H2Database shard : Arrays.asList(east, west))
+            shard.execute("CREATE TABLE players (id UUID PRIMARY KEY)");
+        sharded = new ShardedDatabase(shards(east, west), 64);
+    }
+    
+    @AfterEach
+    void tearDown() {
+        sharded.shutdown();
+    }
+    
+    private static Map<String, Database> shards(Database east, Database west) {
+        Map<String, Database> shards = new LinkedHashMap<>();
+        shards.put("east", east);
+        shards.put("west", west);
+        return shards;
+    }
+    
+    private static List<UUID> keys() {
+        Random random = new Random(42);
+        List<UUID> keys = new ArrayList<>();
+        for (int i = 0; i < 200; i++)
+            keys.add(new UUID(random.nextLong(), random.nextLong()));
+        return keys;
+    }
+    
+    @Test
+    void routingIsStableAcrossInstancesAndShardOrder() {
+        Map<String, Database> reversed = new LinkedHashMap<>();
+        reversed.put("west", west);
+        reversed.put("east", east);
+        ShardedDatabase again = new ShardedDatabase(reversed, 64);
+        for (UUID key : keys())
+            assertSame(sharded.getShard(key), again.getShard(key));
+    }
+    
+    @Test
+    void keysAreSpreadOverBothShards() {
+        Set<Database> used = new HashSet<>();
+        for (UUID key : keys())
+            used.add(sharded.getShard(key));
+        assertEquals(2, used.size());
+    }
+    
+    @Test
+    void addingAShardOnlyMovesKeysToIt() {
+        Map<String, Database> grown = shards(east, west);
+        H2Database north = new H2Database();
+        grown.put("north", north);
+        ShardedDatabase larger = new ShardedDatabase(grown, 64);
+        for (UUID key : keys()) {
+            Database shard = larger.getShard(key);
+            if (shard != north)
+                assertSame(sharded.getShard(key), shard);
+        }
+        north.shutdown();
+    }
+    
+    @Test
+    void writesLandOnTheRoutedShardAndScatterMergesThem() throws SQLException {
+        List<UUID> keys = keys();
+        for (UUID key : keys)
+            sharded.onShard(key, con -> Query.of("INSERT INTO players VALUES (?)").with(key).executeUpdate(con));
+        for (UUID key : keys) {
+            H2Database shard = (H2Database) sharded.getShard(key);
+            assertTrue(shard.read(con -> Query.of("SELECT id FROM players WHERE id = ?").with(key)
+                    .asOptional(con, UUID.class)).isPresent());
+        }
+        List<UUID> all = sharded.scatter(con -> Query.of("SELECT id FROM players").asList(con, UUID.class));
+        assertEquals(new HashSet<>(keys), new HashSet<>(all));
+        assertEquals(keys.size(), all.size());
+    }
+    
+    @Test
+    void rejectsInvalidConfiguration() {
+        assertThrows(IllegalArgumentException.class, () -> new ShardedDatabase(Collections.emptyMap(), 64));
+        assertThrows(IllegalArgumentException.class, () -> new ShardedDatabase(shards(east, west), 0));
+    }
+    
+}
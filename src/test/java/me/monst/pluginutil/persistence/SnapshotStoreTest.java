@@ -0,0 +1,63 @@
+package me.monst.pluginutil.persistence;
+
+import me.monst.pluginutil.TestPlugin;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnapshotStoreTest {
+    
+    @TempDir
+    Path dir;
+    
+    private H2Database database;
+    
+    @BeforeEach
+    void setUp() throws SQLException {
+        database = new H2Database();
+        database.execute("CREATE TABLE ranks (id INT PRIMARY KEY, name VARCHAR(16))");
+        database.execute("INSERT INTO ranks VALUES (1, 'member'), (2, 'admin')");
+    }
+    
+    @AfterEach
+    void tearDown() {
+        database.shutdown();
+    }
+    
+    private static List<String> ranks(SnapshotStore store, String name) throws SQLException {
+        return store.asList(name, Query.of("SELECT name FROM ranks ORDER BY id"), (resultSet, con) -> resultSet.getString(1));
+    }
+    
+    @Test
+    void servesTheStoredSnapshot() throws SQLException {
+        Path file = dir.resolve("snapshots.dat");
+        SnapshotStore store = new SnapshotStore(TestPlugin.create(dir), database, file);
+        assertEquals(Arrays.asList("member", "admin"), ranks(store, "ranks"));
+        assertTrue(store.contains("ranks"));
+        assertTrue(Files.exists(file));
+        database.execute("DELETE FROM ranks");
+        assertEquals(Arrays.asList("member", "admin"), ranks(store, "ranks")); // Not run on the database again
+        assertEquals(Arrays.asList(), ranks(store, "other")); // Stored next to the first one
+        assertEquals(Arrays.asList("member", "admin"), ranks(store, "ranks"));
+    }
+    
+    @Test
+    void failsLoudlyIfTheFileCannotBeReplaced() throws Exception {
+        Path file = dir.resolve("snapshots.dat");
+        Files.createDirectories(file.resolve("blocked")); // A non-empty directory cannot be replaced by a file
+        SnapshotStore store = new SnapshotStore(TestPlugin.create(dir), database, file);
+        assertThrows(SQLException.class, () -> ranks(store, "ranks"));
+        assertFalse(store.contains("ranks"));
+        assertFalse(Files.exists(dir.resolve("snapshots.dat.tmp")));
+    }
+    
+}
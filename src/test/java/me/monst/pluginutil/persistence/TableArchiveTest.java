@@ -0,0 +1,150 @@
+package me.monst.pluginutil.persistence;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.*;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TableArchiveTest {
+    
+    @TempDir
+    Path dir;
+    
+    private H2Database database;
+    
+    @BeforeEach
+    void setUp() throws SQLException {
+        database = new H2Database();
+        for (String table : new String[] { "accounts", "restored" })
+            database.execute("CREATE TABLE " + table + " (id INT PRIMARY KEY, owner VARCHAR(36), balance DECIMAL(12, 2), "
+                    + "ratio DOUBLE, frozen BOOLEAN, opened TIMESTAMP, data VARBINARY(16))");
+        for (int i = 1; i <= 100; i++) {
+            int id = i;
+            database.write(con -> Query.of("INSERT INTO accounts VALUES (?, ?, ?, ?, ?, ?, ?)")
+                    .with(id, id % 7 == 0 ? null : "owner" + id, new BigDecimal(id + ".25"), id / 3.0, id % 2 == 0,
+                            id % 5 == 0 ? null : new Timestamp(1_600_000_000_000L + id * 1000L), new byte[] { (byte) id })
+                    .executeUpdate(con));
+        }
+    }
+    
+    @AfterEach
+    void tearDown() {
+        database.shutdown();
+    }
+    
+    private List<String> rows(String table) throws SQLException {
+        return database.read(con -> Query.of("SELECT * FROM " + table + " ORDER BY id").asList(con, (resultSet, c) -> {
+            StringBuilder row = new StringBuilder();
+            for (int i = 1; i <= resultSet.getMetaData().getColumnCount(); i++) {
+                Object value = resultSet.getObject(i);
+                row.append(value instanceof byte[] ? java.util.Arrays.toString((byte[]) value) : value).append('|');
+            }
+            return row.toString();
+        }));
+    }
+    
+    private long export(String sql, Path file) throws SQLException {
+        return database.read(con -> {
+            try {
+                return TableArchive.export(con, Query.of(sql), file, 16); // Several blocks
+            } catch (IOException e) {
+                throw new SQLException(e);
+            }
+        });
+    }
+    
+    private long temporaryFiles() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(".tmp")).count();
+        }
+    }
+    
+    @Test
+    void roundTripsAllRowsAndNulls() throws SQLException, IOException {
+        Path file = dir.resolve("archives").resolve("accounts.bin");
+        assertEquals(100, export("SELECT * FROM accounts", file));
+        try (Stream<Path> files = Files.list(file.getParent())) {
+            assertEquals(1, files.count()); // No temporary file left behind
+        }
+        long imported = database.write(con -> {
+            try {
+                return TableArchive.importInto(con, file, Query.of("INSERT INTO restored VALUES (?, ?, ?, ?, ?, ?, ?)"), 30);
+            } catch (IOException e) {
+                throw new SQLException(e);
+            }
+        });
+        assertEquals(100, imported);
+        assertEquals(rows("accounts"), rows("restored"));
+    }
+    
+    @Test
+    void failedExportKeepsThePreviousFile() throws SQLException, IOException {
+        Path file = dir.resolve("accounts.bin");
+        Files.write(file, new byte[] { 1, 2, 3 });
+        try (Connection con = database.getConnection()) {
+            assertThrows(SQLException.class,
+                    () -> TableArchive.export(con, Query.of("SELECT * FROM missing"), file, 16));
+            Query.of("SET LAZY_QUERY_EXECUTION TRUE").execute(con); // Fail while reading rows, after some blocks
+            assertThrows(SQLException.class,
+                    () -> TableArchive.export(con, Query.of("SELECT id / (id - 50) FROM accounts"), file, 16));
+        }
+        assertArrayEquals(new byte[] { 1, 2, 3 }, Files.readAllBytes(file));
+        assertEquals(0, temporaryFiles());
+    }
+    
+    @Test
+    void leavesOtherFilesNamedLikeTheTemporaryFileAlone() throws SQLException, IOException {
+        Path other = dir.resolve("accounts.bin.tmp");
+        Files.write(other, new byte[] { 1, 2, 3 });
+        assertEquals(100, export("SELECT * FROM accounts", dir.resolve("accounts.bin")));
+        assertArrayEquals(new byte[] { 1, 2, 3 }, Files.readAllBytes(other));
+        assertEquals(1, temporaryFiles());
+    }
+    
+    @Test
+    void rejectsCorruptSizesBeforeAllocating() throws SQLException, IOException {
+        Path file = dir.resolve("ids.bin");
+        export("SELECT id AS i FROM accounts", file);
+        byte[] archive = Files.readAllBytes(file);
+        int columnCount = 4 + 1, rows = columnCount + 4 + 2 + 1 + 1; // Magic and version, then one column named I
+        int[][] corruptions = {
+                { columnCount, Integer.MAX_VALUE },
+                { columnCount, -1 },
+                { rows, -1 },
+                { rows, Integer.MAX_VALUE },
+                { rows + 4, Integer.MAX_VALUE }, // Uncompressed length
+                { rows + 4, -1 },
+                { rows + 8, Integer.MAX_VALUE }, // Compressed length
+                { rows + 8, 1 }, // Too short to inflate to the uncompressed length
+        };
+        for (int[] corruption : corruptions) {
+            byte[] corrupt = archive.clone();
+            ByteBuffer.wrap(corrupt).putInt(corruption[0], corruption[1]);
+            assertThrows(IOException.class, () -> {
+                try (TableArchive.Reader reader = new TableArchive.Reader(new ByteArrayInputStream(corrupt))) {
+                    while (reader.next() != null);
+                }
+            }, () -> "Offset " + corruption[0] + " = " + corruption[1]);
+        }
+        try (TableArchive.Reader reader = new TableArchive.Reader(new ByteArrayInputStream(archive))) {
+            assertArrayEquals(new String[] { "I" }, reader.getColumnNames());
+            int count = 0;
+            while (reader.next() != null)
+                count++;
+            assertEquals(100, count);
+        }
+    }
+    
+}
@@ -0,0 +1,161 @@
+package me.monst.pluginutil.persistence;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.sqlite.SQLiteDataSource;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UpsertTest {
+    
+    private final List<AutoCloseable> resources = new ArrayList<>();
+    
+    private static class Account {
+        
+        private final int id;
+        private final long balance;
+        private final String nickname;
+        
+        private Account(int id, long balance, String nickname) {
+            this.id = id;
+            this.balance = balance;
+            this.nickname = nickname;
+        }
+        
+    }
+    
+    private final Upsert<Account> upsert = new Upsert<Account>("accounts")
+            .key("id", account -> account.id)
+            .column("balance", account -> account.balance)
+            .column("nickname", account -> account.nickname);
+    
+    @AfterEach
+    void tearDown() throws Exception {
+        for (AutoCloseable resource : resources)
+            resource.close();
+    }
+    
+    /**
+     * Opens a connection to an empty database speaking the given dialect. MySQL is run on H2 in its compatibility
+     * mode. H2 does not support {@code ON CONFLICT DO UPDATE}, so PostgreSQL is covered by SQLite, which is sent the
+     * same statement.
+     */
+    private Connection connect(Dialect dialect) throws Exception {
+        Connection con;
+        switch (dialect) {
+            case SQLITE:
+                Path file = Files.createTempFile("upsert", ".db");
+                resources.add(() -> Files.deleteIfExists(file));
+                SQLiteDataSource dataSource = new SQLiteDataSource();
+                dataSource.setUrl("jdbc:sqlite:" + file);
+                con = dataSource.getConnection();
+                break;
+            default:
+                H2Database database = new H2Database(dialect == Dialect.MYSQL ? "MySQL" : "REGULAR");
+                resources.add(database::shutdown);
+                con = database.getConnection();
+        }
+        resources.add(0, con);
+        Query.of("CREATE TABLE accounts (id INT PRIMARY KEY, balance BIGINT, nickname VARCHAR(32))").execute(con);
+        return con;
+    }
+    
+    /**
+     * Wraps a connection to count the statements prepared on it.
+     */
+    private static Connection counting(Connection con, AtomicInteger statements) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[] { Connection.class },
+                (proxy, method, args) -> {
+                    if (method.getName().equals("prepareStatement"))
+                        statements.incrementAndGet();
+                    try {
+                        return method.invoke(con, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+    
+    private static List<String> rows(Connection con) throws SQLException {
+        return Query.of("SELECT id, balance, nickname FROM accounts ORDER BY id")
+                .asList(con, (resultSet, c) -> resultSet.getInt(1) + ":" + resultSet.getLong(2) + ":" + resultSet.getString(3));
+    }
+    
+    @ParameterizedTest
+    @EnumSource(value = Dialect.class, names = "POSTGRESQL", mode = EnumSource.Mode.EXCLUDE)
+    void insertsNewRows(Dialect dialect) throws Exception {
+        Connection con = connect(dialect);
+        int written = upsert.execute(con, dialect, Arrays.asList(new Account(1, 10, "a"), new Account(2, 20, null)));
+        assertEquals(2, written);
+        assertEquals(Arrays.asList("1:10:a", "2:20:null"), rows(con));
+    }
+    
+    @ParameterizedTest
+    @EnumSource(value = Dialect.class, names = "POSTGRESQL", mode = EnumSource.Mode.EXCLUDE)
+    void updatesExistingRows(Dialect dialect) throws Exception {
+        Connection con = connect(dialect);
+        upsert.execute(con, dialect, Arrays.asList(new Account(1, 10, "a"), new Account(2, 20, "b")));
+        upsert.execute(con, dialect, Arrays.asList(new Account(2, 25, null), new Account(3, 30, "c"),
+                new Account(3, 35, "c"))); // The last duplicate wins
+        assertEquals(Arrays.asList("1:10:a", "2:25:null", "3:35:c"), rows(con));
+    }
+    
+    @ParameterizedTest
+    @EnumSource(value = Dialect.class, names = "POSTGRESQL", mode = EnumSource.Mode.EXCLUDE)
+    void updatesKeyOnlyTables(Dialect dialect) throws Exception {
+        Connection con = connect(dialect);
+        Upsert<Account> keysOnly = new Upsert<Account>("accounts").key("id", account -> account.id);
+        keysOnly.execute(con, dialect, Arrays.asList(new Account(1, 0, null), new Account(2, 0, null)));
+        keysOnly.execute(con, dialect, Arrays.asList(new Account(2, 0, null), new Account(3, 0, null)));
+        assertEquals(Arrays.asList("1:0:null", "2:0:null", "3:0:null"), rows(con));
+    }
+    
+    @ParameterizedTest
+    @EnumSource(value = Dialect.class, names = "POSTGRESQL", mode = EnumSource.Mode.EXCLUDE)
+    void chunksAtTheParameterLimit(Dialect dialect) throws Exception {
+        Connection con = connect(dialect);
+        int rowsPerChunk = dialect.maxParameters() / 3;
+        int count = rowsPerChunk * 2 + 1;
+        List<Account> accounts = new ArrayList<>();
+        for (int id = 0; id < count; id++)
+            accounts.add(new Account(id, id, "n" + id));
+        AtomicInteger statements = new AtomicInteger();
+        int written = upsert.chunkSize(Integer.MAX_VALUE).execute(counting(con, statements), dialect, accounts);
+        assertEquals(count, written);
+        assertEquals(3, statements.get());
+        assertEquals(count, rows(con).size());
+    }
+    
+    @Test
+    void postgresqlIsSentTheSqliteStatement() {
+        List<String> keys = Collections.singletonList("id");
+        List<String> columns = Arrays.asList("balance", "nickname");
+        assertEquals(Dialect.SQLITE.upsert("accounts", keys, columns, null, 3),
+                Dialect.POSTGRESQL.upsert("accounts", keys, columns, null, 3));
+    }
+    
+    @Test
+    void standardMergeCastsParameters() throws Exception {
+        Connection con = connect(Dialect.STANDARD);
+        List<String> all = Arrays.asList("id", "balance", "nickname");
+        List<String> types = Dialect.columnTypes(con, "accounts", all);
+        assertEquals(Arrays.asList("INTEGER", "BIGINT", "CHARACTER VARYING(32)"), types);
+        String sql = Dialect.STANDARD.upsert("accounts", all.subList(0, 1), all.subList(1, 3), types, 1);
+        assertTrue(sql.contains("(CAST(? AS INTEGER), CAST(? AS BIGINT), CAST(? AS CHARACTER VARYING(32)))"), sql);
+    }
+    
+}